@@ -1,23 +1,21 @@
 package com.ivisit.backend.controller;
 
-import com.ivisit.backend.model.Visitor;
-import com.ivisit.backend.model.VisitorLog;
-import com.ivisit.backend.model.VisitorLogEntry;
-import com.ivisit.backend.repository.VisitorLogEntryRepository;
-import com.ivisit.backend.repository.VisitorLogRepository;
-import com.ivisit.backend.repository.VisitorRepository;
-import com.ivisit.backend.service.ArchiveService;
+import com.ivisit.backend.service.ArchiveRunService;
+import com.ivisit.backend.service.ExportJobService;
+import com.ivisit.backend.service.ExportJobService.ExportJob;
+import com.ivisit.backend.service.ExportProgress;
+import com.ivisit.backend.service.ExportService;
 import com.lowagie.text.DocumentException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -28,19 +26,24 @@ import java.util.*;
 public class ArchiveController {
 
     @Autowired
-    private VisitorRepository visitorRepository;
+    private ExportService exportService;
 
     @Autowired
-    private VisitorLogRepository visitorLogRepository;
+    private ArchiveRunService archiveRunService;
 
     @Autowired
-    private VisitorLogEntryRepository visitorLogEntryRepository;
-
-    @Autowired
-    private ArchiveService archiveService;
+    private ExportJobService exportJobService;
+
+    /**
+     * Nightly archive run: config, checkpoint, last run and running totals.
+     */
+    @GetMapping("/job-status")
+    public ResponseEntity<Map<String, Object>> getArchiveJobStatus() {
+        return ResponseEntity.ok(archiveRunService.getStatus());
+    }
 
     @GetMapping("/visitors/export")
-    public ResponseEntity<Resource> exportArchivedVisitorsCsv(
+    public ResponseEntity<StreamingResponseBody> exportArchivedVisitorsCsv(
             @RequestParam(value = "from", required = false)
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
             @RequestParam(value = "to", required = false)
@@ -59,26 +62,19 @@ public class ArchiveController {
             toTs = Timestamp.valueOf(startOfNextDay);
         }
 
-        List<Visitor> visitors = visitorRepository.findArchivedInRange(fromTs, toTs);
-        byte[] csvBytes = archiveService.buildArchivedVisitorsCsv(visitors);
-
-        if (csvBytes.length == 0) {
-            String headerOnly = "visitorID,visitorName,visitorType,gender,idType,idNumber,dateOfBirth,createdAt,archived,archivedAt\n";
-            csvBytes = headerOnly.getBytes(StandardCharsets.UTF_8);
-        }
-
-        ByteArrayResource resource = new ByteArrayResource(csvBytes);
+        final Timestamp from = fromTs;
+        final Timestamp to = toTs;
+        StreamingResponseBody body = out -> exportService.writeArchivedVisitorsCsv(from, to, out);
         String filename = buildVisitorsFilename(fromDate, toDate);
 
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
                 .contentType(MediaType.parseMediaType("text/csv;charset=UTF-8"))
-                .contentLength(csvBytes.length)
-                .body(resource);
+                .body(body);
     }
 
     @GetMapping("/logs/export")
-    public ResponseEntity<Resource> exportArchivedLogsCsv(
+    public ResponseEntity<StreamingResponseBody> exportArchivedLogsCsv(
             @RequestParam(value = "from", required = false)
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
             @RequestParam(value = "to", required = false)
@@ -94,22 +90,15 @@ public class ArchiveController {
             toTs = Timestamp.valueOf(toDate.plusDays(1).atStartOfDay());
         }
 
-        List<VisitorLog> logs = visitorLogRepository.findArchivedInRange(fromTs, toTs);
-        byte[] csvBytes = archiveService.buildArchivedLogsCsv(logs);
-
-        if (csvBytes.length == 0) {
-            String headerOnly = "visitorLogID,visitorID,purposeOfVisit,passLabel,activeStart,activeEnd,firstLocation,lastLocation,archived,archivedAt\n";
-            csvBytes = headerOnly.getBytes(StandardCharsets.UTF_8);
-        }
-
-        ByteArrayResource resource = new ByteArrayResource(csvBytes);
+        final Timestamp from = fromTs;
+        final Timestamp to = toTs;
+        StreamingResponseBody body = out -> exportService.writeArchivedLogsCsv(from, to, out);
         String filename = buildLogsFilename(fromDate, toDate);
 
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
                 .contentType(MediaType.parseMediaType("text/csv;charset=UTF-8"))
-                .contentLength(csvBytes.length)
-                .body(resource);
+                .body(body);
     }
 
     private String buildLogsFilename(LocalDate from, LocalDate to) {
@@ -130,7 +119,7 @@ public class ArchiveController {
     }
 
     @GetMapping("/entries/export")
-    public ResponseEntity<Resource> exportArchivedEntriesCsv(
+    public ResponseEntity<StreamingResponseBody> exportArchivedEntriesCsv(
             @RequestParam(value = "from", required = false)
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
             @RequestParam(value = "to", required = false)
@@ -146,22 +135,15 @@ public class ArchiveController {
             toTs = Timestamp.valueOf(toDate.plusDays(1).atStartOfDay());
         }
 
-        List<VisitorLogEntry> entries = visitorLogEntryRepository.findArchivedInRange(fromTs, toTs);
-        byte[] csvBytes = archiveService.buildArchivedEntriesCsv(entries);
-
-        if (csvBytes.length == 0) {
-            String headerOnly = "visitorLogEntryID,visitorLogID,stationName,guardName,passLabel,timestamp,archived,archivedAt\n";
-            csvBytes = headerOnly.getBytes(StandardCharsets.UTF_8);
-        }
-
-        ByteArrayResource resource = new ByteArrayResource(csvBytes);
+        final Timestamp from = fromTs;
+        final Timestamp to = toTs;
+        StreamingResponseBody body = out -> exportService.writeArchivedEntriesCsv(from, to, out);
         String filename = buildEntriesFilename(fromDate, toDate);
 
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
                 .contentType(MediaType.parseMediaType("text/csv;charset=UTF-8"))
-                .contentLength(csvBytes.length)
-                .body(resource);
+                .body(body);
     }
 
     private String buildEntriesFilename(LocalDate from, LocalDate to) {
@@ -199,12 +181,12 @@ public class ArchiveController {
     }
 
     @GetMapping("/report")
-    public ResponseEntity<Resource> exportArchiveReportPdf(
+    public ResponseEntity<StreamingResponseBody> exportArchiveReportPdf(
             @RequestParam(value = "from", required = false)
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
             @RequestParam(value = "to", required = false)
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate
-    ) throws DocumentException {
+    ) {
         Timestamp fromTs = null;
         Timestamp toTs = null;
 
@@ -215,20 +197,46 @@ public class ArchiveController {
             toTs = Timestamp.valueOf(toDate.plusDays(1).atStartOfDay());
         }
 
-        List<Visitor> visitors = visitorRepository.findArchivedInRange(fromTs, toTs);
-        List<VisitorLog> logs = visitorLogRepository.findArchivedInRange(fromTs, toTs);
-        List<VisitorLogEntry> entries = visitorLogEntryRepository.findArchivedInRange(fromTs, toTs);
-
-        byte[] pdfBytes = archiveService.buildArchiveReportPdf(visitors, logs, entries, fromDate, toDate);
-
-        ByteArrayResource resource = new ByteArrayResource(pdfBytes);
+        final Timestamp from = fromTs;
+        final Timestamp to = toTs;
+        StreamingResponseBody body = out -> {
+            try {
+                exportService.exportArchiveReportPdf(from, to, fromDate, toDate, out, ExportProgress.NONE);
+            } catch (DocumentException e) {
+                throw new IOException("Failed to generate archive report", e);
+            }
+        };
         String filename = buildReportFilename(fromDate, toDate);
 
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
                 .contentType(MediaType.APPLICATION_PDF)
-                .contentLength(pdfBytes.length)
-                .body(resource);
+                .body(body);
+    }
+
+    /**
+     * Same report as /report, built in the background. Returns the job status;
+     * poll /api/export-jobs/{jobId} and fetch its downloadUrl when DONE.
+     */
+    @PostMapping("/report/jobs")
+    public ResponseEntity<?> submitArchiveReportJob(
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate
+    ) {
+        Timestamp fromTs = fromDate != null ? Timestamp.valueOf(fromDate.atStartOfDay()) : null;
+        Timestamp toTs = toDate != null ? Timestamp.valueOf(toDate.plusDays(1).atStartOfDay()) : null;
+
+        try {
+            ExportJob job = exportJobService.submitArchiveReport(
+                    fromTs, toTs, fromDate, toDate, buildReportFilename(fromDate, toDate));
+            return ResponseEntity.accepted().body(exportJobService.toStatus(job));
+        } catch (RuntimeException e) {
+            Map<String, Object> error = new HashMap<String, Object>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+        }
     }
 
     private String buildReportFilename(LocalDate from, LocalDate to) {
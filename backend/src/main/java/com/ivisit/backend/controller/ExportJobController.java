@@ -0,0 +1,78 @@
+package com.ivisit.backend.controller;
+
+import com.ivisit.backend.service.ExportJobService;
+import com.ivisit.backend.service.ExportJobService.ExportJob;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Status, download and cancellation for background exports.
+ * Jobs are submitted from the owning controllers (/api/archive/report/jobs,
+ * /api/visitors/export/pdf/jobs).
+ */
+@RestController
+@RequestMapping("/api/export-jobs")
+public class ExportJobController {
+
+    @Autowired
+    private ExportJobService exportJobService;
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<?> getStatus(@PathVariable String jobId) {
+        ExportJob job = exportJobService.getJob(jobId);
+        if (job == null) {
+            return notFound(jobId);
+        }
+        return ResponseEntity.ok(exportJobService.toStatus(job));
+    }
+
+    @GetMapping("/{jobId}/download")
+    public ResponseEntity<?> download(@PathVariable String jobId) {
+        ExportJob job = exportJobService.getJob(jobId);
+        if (job == null) {
+            return notFound(jobId);
+        }
+        if (!ExportJobService.DONE.equals(job.getStatus())) {
+            Map<String, Object> error = new HashMap<String, Object>();
+            error.put("error", "Export is not ready (status " + job.getStatus() + ")");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        }
+
+        FileSystemResource resource = new FileSystemResource(job.getFile());
+        if (!resource.exists()) {
+            return notFound(jobId);
+        }
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + job.getFilename() + "\"")
+                .contentType(MediaType.parseMediaType(job.getContentType()))
+                .body(resource);
+    }
+
+    @DeleteMapping("/{jobId}")
+    public ResponseEntity<?> cancel(@PathVariable String jobId) {
+        if (!exportJobService.cancel(jobId)) {
+            return notFound(jobId);
+        }
+        ExportJob job = exportJobService.getJob(jobId);
+        if (job == null) {
+            // finished job was discarded
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.ok(exportJobService.toStatus(job));
+    }
+
+    private ResponseEntity<?> notFound(String jobId) {
+        Map<String, Object> error = new HashMap<String, Object>();
+        error.put("error", "Export job not found: " + jobId);
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+    }
+}
@@ -1,24 +1,169 @@
 package com.ivisit.backend.controller;
 
 import com.ivisit.backend.dto.RfidScanRequest;
+import com.ivisit.backend.dto.RfidScanResultDTO;
+import com.ivisit.backend.service.PassLookupCacheService;
+import com.ivisit.backend.service.RfidScanService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.annotation.*;
 
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
 @RestController
 @RequestMapping("/api/helper")
 public class HelperRfidController {
 
     private static final Logger log = LoggerFactory.getLogger(HelperRfidController.class);
 
+    private static final int MAX_BATCH_SIZE = 200;
+
+    @Autowired
+    private RfidScanService rfidScanService;
+
+    @Autowired
+    private PassLookupCacheService passLookupCacheService;
+
+    /**
+     * Records a card tap from a station helper.
+     * Always 200 with a verdict for card-level outcomes (unknown, denied, ...);
+     * 400 only when the request itself is unusable, 500 when the scan could not be
+     * recorded and should be sent again.
+     */
     @PostMapping("/rfid-scan")
     public ResponseEntity<?> handleRfidScan(@RequestBody RfidScanRequest request) {
-        // For now: log the incoming data so we know RFID -> backend works
-        log.info("RFID scan received: uid={}, stationId={}, scannedAt={}",
-                request.getUid(), request.getStationId(), request.getScannedAt());
+        Object result;
+        try {
+            result = processOne(request);
+        } catch (RuntimeException e) {
+            return serverError(request, e);
+        }
+        if (result instanceof RfidScanResultDTO) {
+            return ResponseEntity.ok(result);
+        }
+        return ResponseEntity.badRequest().body(result);
+    }
+
+    /**
+     * Batch form of /rfid-scan for helpers that queue taps while offline.
+     * Scans are processed in order, each in its own transaction; give every scan a
+     * scanId so the batch can be resent safely after a timeout.
+     * Response: { results: [verdict | {scanId, error}] } in request order, where
+     * {scanId, error} means the scan can never be recorded and resending it won't help.
+     * Only transient failures (database unreachable, lock timeouts) fail the whole
+     * batch with a 500; scans before it are already stored and come back as
+     * duplicates when the batch is resent.
+     */
+    @PostMapping("/rfid-scans")
+    public ResponseEntity<?> handleRfidScanBatch(@RequestBody List<RfidScanRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            Map<String, Object> error = new HashMap<String, Object>();
+            error.put("error", "No scans in batch");
+            return ResponseEntity.badRequest().body(error);
+        }
+        if (requests.size() > MAX_BATCH_SIZE) {
+            Map<String, Object> error = new HashMap<String, Object>();
+            error.put("error", "Batch too large (max " + MAX_BATCH_SIZE + " scans)");
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        List<Object> results = new ArrayList<>(requests.size());
+        for (RfidScanRequest request : requests) {
+            try {
+                results.add(processOne(request));
+            } catch (RuntimeException e) {
+                return serverError(request, e);
+            }
+        }
+
+        Map<String, Object> response = new HashMap<String, Object>();
+        response.put("results", results);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Returns the verdict, or an error map when the scan can never be recorded.
+     * Transient failures (database down, lock timeouts) are thrown so the caller retries.
+     */
+    private Object processOne(RfidScanRequest request) {
+        try {
+            RfidScanResultDTO result = rfidScanService.processScan(request);
+            log.debug("RFID scan uid={} station={} lane={} -> {}",
+                    request.getUid(), request.getStationId(), request.getLane(), result.getAction());
+            return result;
+        } catch (DataIntegrityViolationException e) {
+            // lost the race against a concurrent resend of the same scanId
+            Optional<RfidScanResultDTO> replay = rfidScanService.findProcessedScan(request.getScanId());
+            if (replay.isPresent()) {
+                return replay.get();
+            }
+            // the other writer has committed by now (the unique index waits for it),
+            // so this row breaks a constraint on its own
+            log.error("RFID scan could not be stored: uid={}, stationId={}",
+                    request.getUid(), request.getStationId(), e);
+            return errorFor(request, "Scan could not be stored");
+        } catch (RfidScanService.InvalidScanException e) {
+            log.warn("RFID scan rejected: uid={}, stationId={}: {}",
+                    request.getUid(), request.getStationId(), e.getMessage());
+            return errorFor(request, e.getMessage());
+        } catch (RuntimeException e) {
+            if (isTransient(e)) {
+                throw e;
+            }
+            log.error("RFID scan failed: uid={}, stationId={}", request.getUid(), request.getStationId(), e);
+            return errorFor(request, "Scan could not be processed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Failures that can clear up on their own, so the same scan may succeed later.
+     */
+    private boolean isTransient(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof TransientDataAccessException
+                    || t instanceof RecoverableDataAccessException
+                    || t instanceof DataAccessResourceFailureException
+                    || t instanceof CannotCreateTransactionException
+                    || t instanceof SQLTransientException
+                    || t instanceof SQLRecoverableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Map<String, Object> errorFor(RfidScanRequest request, String message) {
+        Map<String, Object> error = new HashMap<String, Object>();
+        error.put("scanId", request.getScanId());
+        error.put("error", message);
+        return error;
+    }
 
+    private ResponseEntity<Map<String, Object>> serverError(RfidScanRequest request, RuntimeException e) {
+        log.error("RFID scan failed: uid={}, stationId={}", request.getUid(), request.getStationId(), e);
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(errorFor(request, "Scan could not be recorded, retry later"));
+    }
 
-        return ResponseEntity.ok().build();
+    /**
+     * Hit/miss/eviction counters for the UID lookup cache.
+     */
+    @GetMapping("/uid-cache/stats")
+    public ResponseEntity<Map<String, Object>> getUidCacheStats() {
+        return ResponseEntity.ok(passLookupCacheService.getStats());
     }
 }
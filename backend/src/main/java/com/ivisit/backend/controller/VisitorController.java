@@ -1,5 +1,6 @@
 package com.ivisit.backend.controller;
 
+import com.ivisit.backend.dto.ArchiveResultDTO;
 import com.ivisit.backend.dto.ArchiveVisitorsRequest;
 import com.ivisit.backend.dto.VisitorDTO;
 import com.ivisit.backend.dto.VisitorRegistrationResponse;
@@ -144,9 +145,9 @@ public class VisitorController {
         }
 
         try {
-            visitorService.archiveVisitors(request.getVisitorIds());
-            return ResponseEntity.ok("Visitors archived successfully");
-        } catch (IOException e) {
+            ArchiveResultDTO result = visitorService.archiveVisitors(request.getVisitorIds());
+            return ResponseEntity.ok(result);
+        } catch (RuntimeException e) {
             e.printStackTrace();
             return ResponseEntity.internalServerError()
                     .body("Failed to archive visitors: " + e.getMessage());
@@ -2,16 +2,27 @@ package com.ivisit.backend.controller;
 
 import com.ivisit.backend.dto.VisitorLogDTO;
 import com.ivisit.backend.dto.VisitorLogEntryDTO;
+import com.ivisit.backend.dto.VisitorLogPageDTO;
 import com.ivisit.backend.dto.CreateVisitorLogWithAccessRequest;
 import com.ivisit.backend.model.Station;
 import com.ivisit.backend.model.VisitorLog;
 import com.ivisit.backend.model.VisitorPass;
+import com.ivisit.backend.service.LiveEventService;
+import com.ivisit.backend.service.OccupancyIndexService;
 import com.ivisit.backend.service.VisitorLogService;
 import com.ivisit.backend.service.VisitorLogEntryService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -25,6 +36,12 @@ public class VisitorLogController {
     @Autowired
     private VisitorLogEntryService visitorLogEntryService;
 
+    @Autowired
+    private OccupancyIndexService occupancyIndexService;
+
+    @Autowired
+    private LiveEventService liveEventService;
+
     /**
      * Check in a visitor (create a new VisitorLog)
      */
@@ -134,6 +151,35 @@ public class VisitorLogController {
         return ResponseEntity.ok(dtos);
     }
 
+    /**
+     * Visitors currently on site, in total and per station (station of their latest entry).
+     * Served from the in-memory occupancy index.
+     */
+    @GetMapping("/occupancy")
+    public ResponseEntity<Map<String, Object>> getOccupancy() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("total", occupancyIndexService.getActiveCount());
+        response.put("stations", occupancyIndexService.getStationOccupancy());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Live feed of entries, check-ins and check-outs (Server-Sent Events).
+     * Pass stationId to only receive events relevant to that station.
+     * On a "resync" event the client should reload /entries and /active.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> stream(@RequestParam(value = "stationId", required = false) Long stationId) {
+        try {
+            SseEmitter emitter = liveEventService.subscribe(stationId);
+            return ResponseEntity.ok(emitter);
+        } catch (RuntimeException e) {
+            Map<String, Object> error = new HashMap<String, Object>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+        }
+    }
+
     /**
      * Get all visitor logs (both active and inactive) as DTOs
      */
@@ -143,16 +189,63 @@ public class VisitorLogController {
         return ResponseEntity.ok(dtos);
     }
 
+    /**
+     * Cursor-paginated LogBook (newest first). Prefer this over /all, which returns every log.
+     * Example: GET /api/visitorLog/page?limit=50&from=2025-01-01&to=2025-01-31&stationId=2
+     * Next page: repeat the same query with cursor=<nextCursor from the previous response>.
+     */
+    @GetMapping("/page")
+    public ResponseEntity<VisitorLogPageDTO> getLogsPage(
+            @RequestParam(value = "cursor", required = false) Long cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @RequestParam(value = "stationId", required = false) Long stationId,
+            @RequestParam(value = "purpose", required = false) String purpose,
+            @RequestParam(value = "archived", required = false) Boolean archived,
+            @RequestParam(value = "name", required = false) String namePrefix
+    ) {
+        VisitorLogPageDTO page = visitorLogService.getLogsPage(
+                cursor,
+                limit != null ? limit : 0,
+                fromDate,
+                toDate,
+                stationId,
+                purpose,
+                archived,
+                namePrefix
+        );
+        return ResponseEntity.ok(page);
+    }
+
     /**
      * Get recent log entries (flattened) for activity feed.
      * Example: GET /api/visitorLog/entries?limit=50
+     * Older pages: GET /api/visitorLog/entries?limit=50&before=2025-01-01T08:00:00Z&beforeId=123
+     * (before/beforeId are the timestamp and entryId of the last entry already shown)
      */
     @GetMapping("/entries")
-    public ResponseEntity<List<VisitorLogEntryDTO>> getEntries(
-            @RequestParam(value = "limit", required = false) Integer limit
+    public ResponseEntity<?> getEntries(
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "before", required = false) String before,
+            @RequestParam(value = "beforeId", required = false) Long beforeId
     ) {
         int usedLimit = (limit != null && limit > 0) ? limit : 100;
-        List<VisitorLogEntryDTO> dtos = visitorLogEntryService.getRecentEntries(usedLimit);
+
+        Timestamp beforeTs = null;
+        if (before != null && !before.trim().isEmpty()) {
+            try {
+                beforeTs = Timestamp.from(Instant.parse(before.trim()));
+            } catch (DateTimeParseException e) {
+                Map<String, Object> error = new HashMap<>();
+                error.put("error", "Invalid 'before' timestamp; expected ISO-8601 instant.");
+                return ResponseEntity.badRequest().body(error);
+            }
+        }
+
+        List<VisitorLogEntryDTO> dtos = visitorLogEntryService.getRecentEntries(usedLimit, beforeTs, beforeId);
         return ResponseEntity.ok(dtos);
     }
 
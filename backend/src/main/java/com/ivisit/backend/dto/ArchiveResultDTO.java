@@ -0,0 +1,34 @@
+package com.ivisit.backend.dto;
+
+import java.sql.Timestamp;
+
+/**
+ * Row counts from one archival run; every flagged row shares archivedAt.
+ */
+public class ArchiveResultDTO {
+    private Timestamp archivedAt;
+    private int visitors;
+    private int logs;
+    private int entries;
+
+    public ArchiveResultDTO() {}
+
+    public ArchiveResultDTO(Timestamp archivedAt, int visitors, int logs, int entries) {
+        this.archivedAt = archivedAt;
+        this.visitors = visitors;
+        this.logs = logs;
+        this.entries = entries;
+    }
+
+    public Timestamp getArchivedAt() { return archivedAt; }
+    public void setArchivedAt(Timestamp archivedAt) { this.archivedAt = archivedAt; }
+
+    public int getVisitors() { return visitors; }
+    public void setVisitors(int visitors) { this.visitors = visitors; }
+
+    public int getLogs() { return logs; }
+    public void setLogs(int logs) { this.logs = logs; }
+
+    public int getEntries() { return entries; }
+    public void setEntries(int entries) { this.entries = entries; }
+}
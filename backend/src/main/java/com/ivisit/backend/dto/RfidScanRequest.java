@@ -2,9 +2,21 @@ package com.ivisit.backend.dto;
 
 public class RfidScanRequest {
 
+    private String scanId; // client-generated idempotency key; resends reuse it
     private String uid;
     private String stationId;
     private String scannedAt; // ISO string for now
+    private String direction; // "IN" (default) or "OUT" for exit gates
+    private String lane; // helper reader lane, e.g. "entry" / "exit"
+    private Long guardAccountId; // optional; defaults to a guard assigned to the station
+
+    public String getScanId() {
+        return scanId;
+    }
+
+    public void setScanId(String scanId) {
+        this.scanId = scanId;
+    }
 
     public String getUid() {
         return uid;
@@ -29,4 +41,28 @@ public class RfidScanRequest {
     public void setScannedAt(String scannedAt) {
         this.scannedAt = scannedAt;
     }
+
+    public String getDirection() {
+        return direction;
+    }
+
+    public void setDirection(String direction) {
+        this.direction = direction;
+    }
+
+    public String getLane() {
+        return lane;
+    }
+
+    public void setLane(String lane) {
+        this.lane = lane;
+    }
+
+    public Long getGuardAccountId() {
+        return guardAccountId;
+    }
+
+    public void setGuardAccountId(Long guardAccountId) {
+        this.guardAccountId = guardAccountId;
+    }
 }
@@ -0,0 +1,148 @@
+package com.ivisit.backend.dto;
+
+import java.util.List;
+
+/**
+ * Verdict for one RFID tap, with enough context for the gate to act
+ * (open / refuse / show the visitor) without another round trip.
+ */
+public class RfidScanResultDTO {
+
+    public static final String ENTRY_RECORDED = "ENTRY_RECORDED";
+    public static final String CHECKED_OUT = "CHECKED_OUT";
+    public static final String DENIED = "DENIED";
+    public static final String UNKNOWN_PASS = "UNKNOWN_PASS";
+    public static final String NO_ACTIVE_LOG = "NO_ACTIVE_LOG";
+
+    private String scanId;
+    private Boolean duplicate; // true when this scanId was already processed
+    private String action;
+    private Boolean allowed;
+    private String message;
+
+    private Long stationId;
+    private String stationName;
+
+    private Long passId;
+    private String passNo;
+    private String passStatus;
+
+    private Long visitorLogId;
+    private Long entryId;
+    private Long visitorId;
+    private String visitorName;
+    private String visitorType;
+    private List<String> allowedStations;
+
+    public String getScanId() {
+        return scanId;
+    }
+    public void setScanId(String scanId) {
+        this.scanId = scanId;
+    }
+
+    public Boolean getDuplicate() {
+        return duplicate;
+    }
+    public void setDuplicate(Boolean duplicate) {
+        this.duplicate = duplicate;
+    }
+
+    public String getAction() {
+        return action;
+    }
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    public Boolean getAllowed() {
+        return allowed;
+    }
+    public void setAllowed(Boolean allowed) {
+        this.allowed = allowed;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public Long getStationId() {
+        return stationId;
+    }
+    public void setStationId(Long stationId) {
+        this.stationId = stationId;
+    }
+
+    public String getStationName() {
+        return stationName;
+    }
+    public void setStationName(String stationName) {
+        this.stationName = stationName;
+    }
+
+    public Long getPassId() {
+        return passId;
+    }
+    public void setPassId(Long passId) {
+        this.passId = passId;
+    }
+
+    public String getPassNo() {
+        return passNo;
+    }
+    public void setPassNo(String passNo) {
+        this.passNo = passNo;
+    }
+
+    public String getPassStatus() {
+        return passStatus;
+    }
+    public void setPassStatus(String passStatus) {
+        this.passStatus = passStatus;
+    }
+
+    public Long getVisitorLogId() {
+        return visitorLogId;
+    }
+    public void setVisitorLogId(Long visitorLogId) {
+        this.visitorLogId = visitorLogId;
+    }
+
+    public Long getEntryId() {
+        return entryId;
+    }
+    public void setEntryId(Long entryId) {
+        this.entryId = entryId;
+    }
+
+    public Long getVisitorId() {
+        return visitorId;
+    }
+    public void setVisitorId(Long visitorId) {
+        this.visitorId = visitorId;
+    }
+
+    public String getVisitorName() {
+        return visitorName;
+    }
+    public void setVisitorName(String visitorName) {
+        this.visitorName = visitorName;
+    }
+
+    public String getVisitorType() {
+        return visitorType;
+    }
+    public void setVisitorType(String visitorType) {
+        this.visitorType = visitorType;
+    }
+
+    public List<String> getAllowedStations() {
+        return allowedStations;
+    }
+    public void setAllowedStations(List<String> allowedStations) {
+        this.allowedStations = allowedStations;
+    }
+}
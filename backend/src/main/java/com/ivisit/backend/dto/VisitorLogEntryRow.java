@@ -0,0 +1,39 @@
+package com.ivisit.backend.dto;
+
+import java.sql.Timestamp;
+import java.util.Date;
+
+/**
+ * Flat projection of a VisitorLogEntry (station + guard names only),
+ * used to resolve first/latest locations for a page of logs in one query.
+ */
+public class VisitorLogEntryRow {
+    private final Long visitorLogID;
+    private final Long visitorLogEntryID;
+    private final Timestamp timestamp;
+    private final String stationName;
+    private final String guardName;
+
+    public VisitorLogEntryRow(Long visitorLogID, Long visitorLogEntryID, Date timestamp,
+                              String stationName, String guardName) {
+        this.visitorLogID = visitorLogID;
+        this.visitorLogEntryID = visitorLogEntryID;
+        this.timestamp = toTimestamp(timestamp);
+        this.stationName = stationName;
+        this.guardName = guardName;
+    }
+
+    public Long getVisitorLogID() { return visitorLogID; }
+    public Long getVisitorLogEntryID() { return visitorLogEntryID; }
+    public Timestamp getTimestamp() { return timestamp; }
+    public String getStationName() { return stationName; }
+    public String getGuardName() { return guardName; }
+
+    // Hibernate hands timestamp columns to constructor expressions typed as java.util.Date
+    private static Timestamp toTimestamp(Date date) {
+        if (date == null || date instanceof Timestamp) {
+            return (Timestamp) date;
+        }
+        return new Timestamp(date.getTime());
+    }
+}
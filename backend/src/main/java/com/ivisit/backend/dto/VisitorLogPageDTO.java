@@ -0,0 +1,38 @@
+package com.ivisit.backend.dto;
+
+import java.util.List;
+
+public class VisitorLogPageDTO {
+    private List<VisitorLogDTO> items;
+    private Long nextCursor; // null when there are no more pages
+    private Boolean hasMore;
+
+    public VisitorLogPageDTO() {}
+
+    public VisitorLogPageDTO(List<VisitorLogDTO> items, Long nextCursor, Boolean hasMore) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    public List<VisitorLogDTO> getItems() {
+        return items;
+    }
+    public void setItems(List<VisitorLogDTO> items) {
+        this.items = items;
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+    public void setNextCursor(Long nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public Boolean getHasMore() {
+        return hasMore;
+    }
+    public void setHasMore(Boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,77 @@
+package com.ivisit.backend.dto;
+
+import java.sql.Timestamp;
+import java.util.Date;
+
+/**
+ * Flat read-only projection of a VisitorLog with the visitor/pass columns
+ * and first/latest entry details (via VisitorLog's entry pointers) the LogBook needs. Filled by a JPQL constructor expression, so no entities
+ * (and no lazy collections) are loaded.
+ */
+public class VisitorLogRow {
+    private final Long visitorLogID;
+    private final Long visitorID;
+    private final String visitorName;
+    private final String idType;
+    private final Long passID;
+    private final String passDisplayCode;
+    private final String passNumber;
+    private final Timestamp activeStart;
+    private final String purposeOfVisit;
+    private final Boolean archived;
+    private final Timestamp archivedAt;
+    private final String firstStationName;
+    private final Long latestStationID;
+    private final String latestStationName;
+    private final String latestGuardName;
+    private final Timestamp latestEntryAt;
+
+    public VisitorLogRow(Long visitorLogID, Long visitorID, String visitorName, String idType,
+                         Long passID, String passDisplayCode, String passNumber,
+                         Date activeStart, String purposeOfVisit,
+                         Boolean archived, Date archivedAt,
+                         String firstStationName, Long latestStationID, String latestStationName,
+                         String latestGuardName, Date latestEntryAt) {
+        this.visitorLogID = visitorLogID;
+        this.visitorID = visitorID;
+        this.visitorName = visitorName;
+        this.idType = idType;
+        this.passID = passID;
+        this.passDisplayCode = passDisplayCode;
+        this.passNumber = passNumber;
+        this.activeStart = toTimestamp(activeStart);
+        this.purposeOfVisit = purposeOfVisit;
+        this.archived = archived;
+        this.archivedAt = toTimestamp(archivedAt);
+        this.firstStationName = firstStationName;
+        this.latestStationID = latestStationID;
+        this.latestStationName = latestStationName;
+        this.latestGuardName = latestGuardName;
+        this.latestEntryAt = toTimestamp(latestEntryAt);
+    }
+
+    public Long getVisitorLogID() { return visitorLogID; }
+    public Long getVisitorID() { return visitorID; }
+    public String getVisitorName() { return visitorName; }
+    public String getIdType() { return idType; }
+    public Long getPassID() { return passID; }
+    public String getPassDisplayCode() { return passDisplayCode; }
+    public String getPassNumber() { return passNumber; }
+    public Timestamp getActiveStart() { return activeStart; }
+    public String getPurposeOfVisit() { return purposeOfVisit; }
+    public Boolean getArchived() { return archived; }
+    public Timestamp getArchivedAt() { return archivedAt; }
+    public String getFirstStationName() { return firstStationName; }
+    public Long getLatestStationID() { return latestStationID; }
+    public String getLatestStationName() { return latestStationName; }
+    public String getLatestGuardName() { return latestGuardName; }
+    public Timestamp getLatestEntryAt() { return latestEntryAt; }
+
+    // Hibernate hands timestamp columns to constructor expressions typed as java.util.Date
+    private static Timestamp toTimestamp(Date date) {
+        if (date == null || date instanceof Timestamp) {
+            return (Timestamp) date;
+        }
+        return new Timestamp(date.getTime());
+    }
+}
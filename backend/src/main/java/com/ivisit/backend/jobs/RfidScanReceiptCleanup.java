@@ -0,0 +1,37 @@
+package com.ivisit.backend.jobs;
+
+import com.ivisit.backend.repository.RfidScanReceiptRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Scan receipts only need to outlive the helper's resend window; drop old ones nightly.
+ */
+@Component
+public class RfidScanReceiptCleanup {
+
+    private static final Logger log = LoggerFactory.getLogger(RfidScanReceiptCleanup.class);
+
+    @Autowired
+    private RfidScanReceiptRepository receiptRepository;
+
+    @Value("${app.rfid.receipt-retention-days:7}")
+    private int retentionDays;
+
+    @Scheduled(cron = "0 15 3 * * ?")
+    public void purgeOldReceipts() {
+        Timestamp cutoff = Timestamp.from(Instant.now().minus(retentionDays, ChronoUnit.DAYS));
+        int deleted = receiptRepository.deleteReceivedBefore(cutoff);
+        if (deleted > 0) {
+            log.info("Purged {} RFID scan receipts older than {} days", deleted, retentionDays);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.ivisit.backend.jobs;
+
+import com.ivisit.backend.dto.VisitorLogEntryRow;
+import com.ivisit.backend.repository.VisitorLogEntryRepository;
+import com.ivisit.backend.repository.VisitorLogRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One-off backfill for VisitorLog.firstEntryID / latestEntryID on logs written
+ * before those columns existed. Runs at startup, chunked, and is a no-op once
+ * every log with entries has its pointers.
+ */
+@Component
+public class VisitorLogEntryPointerBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(VisitorLogEntryPointerBackfill.class);
+
+    private static final int CHUNK_SIZE = 500;
+
+    @Autowired
+    private VisitorLogRepository visitorLogRepository;
+
+    @Autowired
+    private VisitorLogEntryRepository visitorLogEntryRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillEntryPointers() {
+        long afterId = 0L;
+        int updated = 0;
+
+        while (true) {
+            List<Long> logIds = visitorLogRepository.findLogIdsMissingEntryPointers(
+                    afterId, PageRequest.of(0, CHUNK_SIZE));
+            if (logIds.isEmpty()) {
+                break;
+            }
+
+            // rows are ordered by (log, timestamp, id): first seen = first entry, last seen = latest
+            Map<Long, Long> firstByLog = new LinkedHashMap<>();
+            Map<Long, Long> latestByLog = new HashMap<>();
+            for (VisitorLogEntryRow row : visitorLogEntryRepository.findEntryRowsForLogs(logIds)) {
+                firstByLog.putIfAbsent(row.getVisitorLogID(), row.getVisitorLogEntryID());
+                latestByLog.put(row.getVisitorLogID(), row.getVisitorLogEntryID());
+            }
+
+            for (Map.Entry<Long, Long> e : firstByLog.entrySet()) {
+                updated += visitorLogRepository.updateEntryPointers(
+                        e.getKey(), e.getValue(), latestByLog.get(e.getKey()));
+            }
+
+            afterId = logIds.get(logIds.size() - 1);
+        }
+
+        if (updated > 0) {
+            log.info("Backfilled first/latest entry pointers on {} visitor logs", updated);
+        }
+    }
+}
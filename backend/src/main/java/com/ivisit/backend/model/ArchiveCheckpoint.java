@@ -0,0 +1,99 @@
+package com.ivisit.backend.model;
+
+import javax.persistence.*;
+import java.sql.Timestamp;
+
+/**
+ * Where the nightly archive run stopped, so a run cut short by its time budget
+ * (or a crash) resumes after the last visitor it finished. One row per job.
+ */
+@Entity
+public class ArchiveCheckpoint {
+
+    @Id
+    @Column(length = 64)
+    private String jobName;
+
+    // last visitorId whose chunk was committed; 0 = start from the beginning
+    private Long lastVisitorId;
+
+    private Timestamp updatedAt;
+
+    // summary of the most recent run
+    private Timestamp lastRunStartedAt;
+    private Timestamp lastRunFinishedAt;
+    private String lastRunOutcome;
+    private Integer lastRunVisitors;
+    private Integer lastRunLogs;
+    private Integer lastRunEntries;
+
+    public ArchiveCheckpoint() {}
+
+    public ArchiveCheckpoint(String jobName) {
+        this.jobName = jobName;
+        this.lastVisitorId = 0L;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+    public void setJobName(String jobName) {
+        this.jobName = jobName;
+    }
+
+    public Long getLastVisitorId() {
+        return lastVisitorId;
+    }
+    public void setLastVisitorId(Long lastVisitorId) {
+        this.lastVisitorId = lastVisitorId;
+    }
+
+    public Timestamp getUpdatedAt() {
+        return updatedAt;
+    }
+    public void setUpdatedAt(Timestamp updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public Timestamp getLastRunStartedAt() {
+        return lastRunStartedAt;
+    }
+    public void setLastRunStartedAt(Timestamp lastRunStartedAt) {
+        this.lastRunStartedAt = lastRunStartedAt;
+    }
+
+    public Timestamp getLastRunFinishedAt() {
+        return lastRunFinishedAt;
+    }
+    public void setLastRunFinishedAt(Timestamp lastRunFinishedAt) {
+        this.lastRunFinishedAt = lastRunFinishedAt;
+    }
+
+    public String getLastRunOutcome() {
+        return lastRunOutcome;
+    }
+    public void setLastRunOutcome(String lastRunOutcome) {
+        this.lastRunOutcome = lastRunOutcome;
+    }
+
+    public Integer getLastRunVisitors() {
+        return lastRunVisitors;
+    }
+    public void setLastRunVisitors(Integer lastRunVisitors) {
+        this.lastRunVisitors = lastRunVisitors;
+    }
+
+    public Integer getLastRunLogs() {
+        return lastRunLogs;
+    }
+    public void setLastRunLogs(Integer lastRunLogs) {
+        this.lastRunLogs = lastRunLogs;
+    }
+
+    public Integer getLastRunEntries() {
+        return lastRunEntries;
+    }
+    public void setLastRunEntries(Integer lastRunEntries) {
+        this.lastRunEntries = lastRunEntries;
+    }
+}
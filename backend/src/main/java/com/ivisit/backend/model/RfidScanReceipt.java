@@ -0,0 +1,129 @@
+package com.ivisit.backend.model;
+
+import javax.persistence.*;
+import java.sql.Timestamp;
+
+/**
+ * One processed helper scan, keyed by the client-generated scanId.
+ * Lets helpers resend scans after a network blip without creating duplicate entries;
+ * a replay gets the original verdict back.
+ */
+@Entity
+@Table(indexes = {@Index(name = "idx_rfid_scan_receipt_received_at", columnList = "receivedAt")})
+public class RfidScanReceipt {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long receiptId;
+
+    @Column(nullable = false, unique = true, length = 64)
+    private String scanId;
+
+    private String uid;
+    private Long stationId;
+    private String lane;
+
+    // RfidScanResultDTO action (ENTRY_RECORDED, CHECKED_OUT, DENIED, ...)
+    private String action;
+    private Boolean allowed;
+    private String message;
+
+    private Long passId;
+    private Long visitorLogId;
+    private Long entryId;
+
+    private Timestamp receivedAt;
+
+    public RfidScanReceipt() {}
+
+    public RfidScanReceipt(String scanId, String uid, Long stationId, Timestamp receivedAt) {
+        this.scanId = scanId;
+        this.uid = uid;
+        this.stationId = stationId;
+        this.receivedAt = receivedAt;
+    }
+
+    public Long getReceiptId() {
+        return receiptId;
+    }
+    public void setReceiptId(Long receiptId) {
+        this.receiptId = receiptId;
+    }
+
+    public String getScanId() {
+        return scanId;
+    }
+    public void setScanId(String scanId) {
+        this.scanId = scanId;
+    }
+
+    public String getUid() {
+        return uid;
+    }
+    public void setUid(String uid) {
+        this.uid = uid;
+    }
+
+    public Long getStationId() {
+        return stationId;
+    }
+    public void setStationId(Long stationId) {
+        this.stationId = stationId;
+    }
+
+    public String getLane() {
+        return lane;
+    }
+    public void setLane(String lane) {
+        this.lane = lane;
+    }
+
+    public String getAction() {
+        return action;
+    }
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    public Boolean getAllowed() {
+        return allowed;
+    }
+    public void setAllowed(Boolean allowed) {
+        this.allowed = allowed;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public Long getPassId() {
+        return passId;
+    }
+    public void setPassId(Long passId) {
+        this.passId = passId;
+    }
+
+    public Long getVisitorLogId() {
+        return visitorLogId;
+    }
+    public void setVisitorLogId(Long visitorLogId) {
+        this.visitorLogId = visitorLogId;
+    }
+
+    public Long getEntryId() {
+        return entryId;
+    }
+    public void setEntryId(Long entryId) {
+        this.entryId = entryId;
+    }
+
+    public Timestamp getReceivedAt() {
+        return receivedAt;
+    }
+    public void setReceivedAt(Timestamp receivedAt) {
+        this.receivedAt = receivedAt;
+    }
+}
@@ -38,6 +38,12 @@ public class VisitorLog {
     @OneToMany(mappedBy = "visitorLog", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<VisitorLogEntry> visitorLogEntries;
 
+    // Denormalized pointers to the earliest / most recent entry, kept up to date on every
+    // entry write so reads don't have to load and sort visitorLogEntries.
+    // Plain ids (no FK) because entries can be cascade-deleted together with their Station.
+    private Long firstEntryID;
+    private Long latestEntryID;
+
     public VisitorLog() {}
 
     public VisitorLog(Visitor visitor, VisitorPass visitorPass, Timestamp activeStart, Timestamp activeEnd) {
@@ -117,4 +123,18 @@ public class VisitorLog {
     public void setArchivedAt(Timestamp archivedAt) {
         this.archivedAt = archivedAt;
     }
+
+    public Long getFirstEntryID() {
+        return firstEntryID;
+    }
+    public void setFirstEntryID(Long firstEntryID) {
+        this.firstEntryID = firstEntryID;
+    }
+
+    public Long getLatestEntryID() {
+        return latestEntryID;
+    }
+    public void setLatestEntryID(Long latestEntryID) {
+        this.latestEntryID = latestEntryID;
+    }
 }
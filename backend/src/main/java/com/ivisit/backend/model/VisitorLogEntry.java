@@ -4,6 +4,9 @@ import javax.persistence.*;
 import java.sql.Timestamp;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_visitor_log_entry_timestamp", columnList = "timestamp")
+})
 public class VisitorLogEntry {
 
     @Id
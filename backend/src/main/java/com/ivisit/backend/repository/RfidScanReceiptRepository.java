@@ -0,0 +1,23 @@
+package com.ivisit.backend.repository;
+
+import com.ivisit.backend.model.RfidScanReceipt;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.Optional;
+
+@Repository
+public interface RfidScanReceiptRepository extends JpaRepository<RfidScanReceipt, Long> {
+
+    Optional<RfidScanReceipt> findByScanId(String scanId);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RfidScanReceipt r WHERE r.receivedAt < :cutoff")
+    int deleteReceivedBefore(@Param("cutoff") Timestamp cutoff);
+}
@@ -1,13 +1,19 @@
 package com.ivisit.backend.repository;
 
+import com.ivisit.backend.dto.VisitorLogEntryRow;
 import com.ivisit.backend.model.VisitorLogEntry;
 import com.ivisit.backend.model.VisitorLog;
 import com.ivisit.backend.model.Station;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -22,4 +28,94 @@ public interface VisitorLogEntryRepository extends JpaRepository<VisitorLogEntry
             "AND (:from IS NULL OR COALESCE(e.archivedAt, e.timestamp) >= :from) " +
             "AND (:to IS NULL   OR COALESCE(e.archivedAt, e.timestamp) < :to)")
     List<VisitorLogEntry> findArchivedInRange(Timestamp from, Timestamp to);
+
+    @Query("SELECT COUNT(e) FROM VisitorLogEntry e " +
+            "WHERE e.archived = TRUE " +
+            "AND (:from IS NULL OR COALESCE(e.archivedAt, e.timestamp) >= :from) " +
+            "AND (:to IS NULL   OR COALESCE(e.archivedAt, e.timestamp) < :to)")
+    long countArchivedInRange(@Param("from") Timestamp from, @Param("to") Timestamp to);
+
+
+    // Export scroll: same filter as findArchivedInRange, one keyset page (id > afterId) at a time
+    @Query("SELECT e FROM VisitorLogEntry e " +
+            "JOIN FETCH e.visitorLog l " +
+            "LEFT JOIN FETCH l.visitor " +
+            "LEFT JOIN FETCH l.visitorPass " +
+            "JOIN FETCH e.station " +
+            "JOIN FETCH e.userAccount " +
+            "WHERE e.archived = TRUE " +
+            "AND (:from IS NULL OR COALESCE(e.archivedAt, e.timestamp) >= :from) " +
+            "AND (:to IS NULL   OR COALESCE(e.archivedAt, e.timestamp) < :to) " +
+            "AND e.visitorLogEntryID > :afterId " +
+            "ORDER BY e.visitorLogEntryID")
+    List<VisitorLogEntry> findArchivedPage(@Param("from") Timestamp from,
+                                           @Param("to") Timestamp to,
+                                           @Param("afterId") Long afterId,
+                                           Pageable pageable);
+
+    // Selection export: entries of the given visitors' logs, one keyset page at a time
+    @Query("SELECT e FROM VisitorLogEntry e " +
+            "JOIN FETCH e.visitorLog l " +
+            "LEFT JOIN FETCH l.visitor v " +
+            "LEFT JOIN FETCH l.visitorPass " +
+            "JOIN FETCH e.station " +
+            "JOIN FETCH e.userAccount " +
+            "WHERE v.visitorID IN :visitorIds " +
+            "AND e.visitorLogEntryID > :afterId " +
+            "ORDER BY e.visitorLogEntryID")
+    List<VisitorLogEntry> findByVisitorIdsPage(@Param("visitorIds") Collection<Long> visitorIds,
+                                               @Param("afterId") Long afterId,
+                                               Pageable pageable);
+
+
+    // Activity feed: newest first, limited by the database (Pageable carries the limit only)
+    @Query("SELECT e FROM VisitorLogEntry e " +
+            "JOIN FETCH e.visitorLog l " +
+            "JOIN FETCH l.visitor " +
+            "LEFT JOIN FETCH l.visitorPass " +
+            "JOIN FETCH e.station " +
+            "JOIN FETCH e.userAccount " +
+            "ORDER BY e.timestamp DESC, e.visitorLogEntryID DESC")
+    List<VisitorLogEntry> findRecent(Pageable pageable);
+
+    // Activity feed keyset page: entries strictly older than the (timestamp, id) cursor
+    @Query("SELECT e FROM VisitorLogEntry e " +
+            "JOIN FETCH e.visitorLog l " +
+            "JOIN FETCH l.visitor " +
+            "LEFT JOIN FETCH l.visitorPass " +
+            "JOIN FETCH e.station " +
+            "JOIN FETCH e.userAccount " +
+            "WHERE e.timestamp < :before " +
+            "   OR (e.timestamp = :before AND e.visitorLogEntryID < :beforeId) " +
+            "ORDER BY e.timestamp DESC, e.visitorLogEntryID DESC")
+    List<VisitorLogEntry> findRecentBefore(@Param("before") Timestamp before,
+                                           @Param("beforeId") Long beforeId,
+                                           Pageable pageable);
+
+    // Station/guard names of every entry for a page of logs, oldest first per log
+    @Query("SELECT new com.ivisit.backend.dto.VisitorLogEntryRow(" +
+            "e.visitorLog.visitorLogID, e.visitorLogEntryID, e.timestamp, s.stationName, u.username) " +
+            "FROM VisitorLogEntry e JOIN e.station s JOIN e.userAccount u " +
+            "WHERE e.visitorLog.visitorLogID IN :logIds " +
+            "ORDER BY e.visitorLog.visitorLogID, e.timestamp, e.visitorLogEntryID")
+    List<VisitorLogEntryRow> findEntryRowsForLogs(@Param("logIds") List<Long> logIds);
+
+    // Station/guard names for specific entries, e.g. the first/latest entry pointers of a batch of logs
+    @Query("SELECT new com.ivisit.backend.dto.VisitorLogEntryRow(" +
+            "e.visitorLog.visitorLogID, e.visitorLogEntryID, e.timestamp, s.stationName, u.username) " +
+            "FROM VisitorLogEntry e JOIN e.station s JOIN e.userAccount u " +
+            "WHERE e.visitorLogEntryID IN :entryIds")
+    List<VisitorLogEntryRow> findEntryRowsByIds(@Param("entryIds") Collection<Long> entryIds);
+
+    // Bulk archival: every entry of the given logs
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE VisitorLogEntry e SET e.archived = TRUE, e.archivedAt = :archivedAt " +
+            "WHERE e.visitorLog.visitorLogID IN :logIds")
+    int markArchivedByLogIds(@Param("logIds") Collection<Long> logIds, @Param("archivedAt") Timestamp archivedAt);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE VisitorLogEntry e SET e.archived = TRUE, e.archivedAt = :archivedAt WHERE e.visitorLogEntryID IN :ids")
+    int markArchived(@Param("ids") Collection<Long> ids, @Param("archivedAt") Timestamp archivedAt);
 }
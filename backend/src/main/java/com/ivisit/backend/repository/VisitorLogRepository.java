@@ -1,17 +1,37 @@
 package com.ivisit.backend.repository;
 
+import com.ivisit.backend.dto.VisitorLogRow;
 import com.ivisit.backend.model.VisitorLog;
 import com.ivisit.backend.model.Visitor;
 import com.ivisit.backend.model.VisitorPass;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface VisitorLogRepository extends JpaRepository<VisitorLog, Long> {
+
+    // Shared projection for LogBook reads (see VisitorLogRow); callers append WHERE/ORDER BY
+    String LOG_ROW_SELECT = "SELECT new com.ivisit.backend.dto.VisitorLogRow(" +
+            "l.visitorLogID, v.visitorID, v.visitorName, v.idType, " +
+            "p.passID, p.displayCode, p.passNumber, " +
+            "l.activeStart, l.purposeOfVisit, l.archived, l.archivedAt, " +
+            "fs.stationName, ls.stationID, ls.stationName, lu.username, le.timestamp) " +
+            "FROM VisitorLog l JOIN l.visitor v LEFT JOIN l.visitorPass p " +
+            "LEFT JOIN VisitorLogEntry fe ON fe.visitorLogEntryID = l.firstEntryID " +
+            "LEFT JOIN fe.station fs " +
+            "LEFT JOIN VisitorLogEntry le ON le.visitorLogEntryID = l.latestEntryID " +
+            "LEFT JOIN le.station ls " +
+            "LEFT JOIN le.userAccount lu ";
+
     List<VisitorLog> findByVisitor(Visitor visitor);
     List<VisitorLog> findByVisitorPass(VisitorPass visitorPass);
     List<VisitorLog> findByActiveEndIsNull(); // for active logs
@@ -19,10 +39,114 @@ public interface VisitorLogRepository extends JpaRepository<VisitorLog, Long> {
     List<VisitorLog> findByVisitorAndArchivedFalseOrArchivedIsNull(Visitor visitor);
     List<VisitorLog> findByArchivedTrue();
     List<VisitorLog> findByVisitorAndActiveEndIsNull(Visitor visitor);
+    List<VisitorLog> findByVisitorPassAndActiveEndIsNull(VisitorPass visitorPass);
 
     @Query("SELECT l FROM VisitorLog l " +
             "WHERE l.archived = TRUE " +
             "AND (:from IS NULL OR COALESCE(l.archivedAt, l.activeEnd, l.activeStart) >= :from) " +
             "AND (:to IS NULL   OR COALESCE(l.archivedAt, l.activeEnd, l.activeStart) < :to)")
     List<VisitorLog> findArchivedInRange(Timestamp from, Timestamp to);
+
+    @Query("SELECT COUNT(l) FROM VisitorLog l " +
+            "WHERE l.archived = TRUE " +
+            "AND (:from IS NULL OR COALESCE(l.archivedAt, l.activeEnd, l.activeStart) >= :from) " +
+            "AND (:to IS NULL   OR COALESCE(l.archivedAt, l.activeEnd, l.activeStart) < :to)")
+    long countArchivedInRange(@Param("from") Timestamp from, @Param("to") Timestamp to);
+
+
+    // Export scroll: same filter as findArchivedInRange, one keyset page (id > afterId) at a time
+    @Query("SELECT l FROM VisitorLog l " +
+            "LEFT JOIN FETCH l.visitor " +
+            "LEFT JOIN FETCH l.visitorPass " +
+            "WHERE l.archived = TRUE " +
+            "AND (:from IS NULL OR COALESCE(l.archivedAt, l.activeEnd, l.activeStart) >= :from) " +
+            "AND (:to IS NULL   OR COALESCE(l.archivedAt, l.activeEnd, l.activeStart) < :to) " +
+            "AND l.visitorLogID > :afterId " +
+            "ORDER BY l.visitorLogID")
+    List<VisitorLog> findArchivedPage(@Param("from") Timestamp from,
+                                      @Param("to") Timestamp to,
+                                      @Param("afterId") Long afterId,
+                                      Pageable pageable);
+
+    // Selection export: logs of the given visitors (archived or not), one keyset page at a time
+    @Query("SELECT l FROM VisitorLog l " +
+            "LEFT JOIN FETCH l.visitor v " +
+            "LEFT JOIN FETCH l.visitorPass " +
+            "WHERE v.visitorID IN :visitorIds " +
+            "AND l.visitorLogID > :afterId " +
+            "ORDER BY l.visitorLogID")
+    List<VisitorLog> findByVisitorIdsPage(@Param("visitorIds") Collection<Long> visitorIds,
+                                          @Param("afterId") Long afterId,
+                                          Pageable pageable);
+
+
+    // LogBook page: newest log first, keyset on visitorLogID, every filter optional.
+    // purposePattern/namePattern are lower-case LIKE patterns ('!' escapes), '' for no filter;
+    // a null string here would reach LOWER() untyped, which Postgres rejects.
+    @Query(LOG_ROW_SELECT +
+            "WHERE (:cursor IS NULL OR l.visitorLogID < :cursor) " +
+            "AND (:from IS NULL OR l.activeStart >= :from) " +
+            "AND (:to IS NULL   OR l.activeStart < :to) " +
+            "AND (:archived IS NULL " +
+            "     OR (:archived = TRUE AND l.archived = TRUE) " +
+            "     OR (:archived = FALSE AND (l.archived = FALSE OR l.archived IS NULL))) " +
+            "AND (:purposePattern = '' OR LOWER(l.purposeOfVisit) LIKE :purposePattern ESCAPE '!') " +
+            "AND (:namePattern = '' OR LOWER(v.visitorName) LIKE :namePattern ESCAPE '!') " +
+            "AND (:stationId IS NULL OR EXISTS (" +
+            "     SELECT e.visitorLogEntryID FROM VisitorLogEntry e " +
+            "     WHERE e.visitorLog = l AND e.station.stationID = :stationId)) " +
+            "ORDER BY l.visitorLogID DESC")
+    List<VisitorLogRow> findLogRowsPage(@Param("cursor") Long cursor,
+                                        @Param("from") Timestamp from,
+                                        @Param("to") Timestamp to,
+                                        @Param("archived") Boolean archived,
+                                        @Param("purposePattern") String purposePattern,
+                                        @Param("namePattern") String namePattern,
+                                        @Param("stationId") Long stationId,
+                                        Pageable pageable);
+
+    @Query(LOG_ROW_SELECT + "WHERE l.visitorLogID = :logId")
+    List<VisitorLogRow> findLogRowsById(@Param("logId") Long logId);
+
+    @Query(LOG_ROW_SELECT + "WHERE l.activeEnd IS NULL ORDER BY l.visitorLogID")
+    List<VisitorLogRow> findActiveLogRows();
+
+    @Query(LOG_ROW_SELECT + "ORDER BY l.visitorLogID")
+    List<VisitorLogRow> findAllLogRows();
+
+    @Query(LOG_ROW_SELECT + "WHERE l.archived = TRUE ORDER BY l.visitorLogID")
+    List<VisitorLogRow> findArchivedLogRows();
+
+    // Backfill for firstEntryID/latestEntryID: logs that have entries but no pointers yet
+    @Query("SELECT l.visitorLogID FROM VisitorLog l " +
+            "WHERE l.visitorLogID > :afterId " +
+            "AND l.firstEntryID IS NULL " +
+            "AND EXISTS (SELECT e.visitorLogEntryID FROM VisitorLogEntry e WHERE e.visitorLog = l) " +
+            "ORDER BY l.visitorLogID")
+    List<Long> findLogIdsMissingEntryPointers(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE VisitorLog l SET l.firstEntryID = :firstEntryId, l.latestEntryID = :latestEntryId " +
+            "WHERE l.visitorLogID = :logId")
+    int updateEntryPointers(@Param("logId") Long logId,
+                            @Param("firstEntryId") Long firstEntryId,
+                            @Param("latestEntryId") Long latestEntryId);
+
+    // Allowed station names for a page of logs: rows of [visitorLogID, stationName]
+    @Query("SELECT l.visitorLogID, s.stationName FROM VisitorLog l JOIN l.allowedStations s " +
+            "WHERE l.visitorLogID IN :logIds")
+    List<Object[]> findAllowedStationNames(@Param("logIds") List<Long> logIds);
+
+    // Bulk archival: finished, not-yet-archived logs of the given visitors
+    @Query("SELECT l.visitorLogID FROM VisitorLog l " +
+            "WHERE l.visitor.visitorID IN :visitorIds " +
+            "AND l.activeEnd IS NOT NULL " +
+            "AND (l.archived = FALSE OR l.archived IS NULL)")
+    List<Long> findArchivableLogIds(@Param("visitorIds") Collection<Long> visitorIds);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE VisitorLog l SET l.archived = TRUE, l.archivedAt = :archivedAt WHERE l.visitorLogID IN :ids")
+    int markArchived(@Param("ids") Collection<Long> ids, @Param("archivedAt") Timestamp archivedAt);
 }
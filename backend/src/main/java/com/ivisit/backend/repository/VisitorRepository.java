@@ -1,11 +1,16 @@
 package com.ivisit.backend.repository;
 
 import com.ivisit.backend.model.Visitor;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -21,4 +26,61 @@ public interface VisitorRepository extends JpaRepository<Visitor, Long> {
             "AND (:from IS NULL OR COALESCE(v.archivedAt, v.createdAt) >= :from) " +
             "AND (:to IS NULL   OR COALESCE(v.archivedAt, v.createdAt) < :to)")
     List<Visitor> findArchivedInRange(Timestamp from, Timestamp to);
+
+    @Query("SELECT COUNT(v) FROM Visitor v " +
+            "WHERE v.archived = TRUE " +
+            "AND (:from IS NULL OR COALESCE(v.archivedAt, v.createdAt) >= :from) " +
+            "AND (:to IS NULL   OR COALESCE(v.archivedAt, v.createdAt) < :to)")
+    long countArchivedInRange(@Param("from") Timestamp from, @Param("to") Timestamp to);
+
+
+    // Export scroll: same filter as findArchivedInRange, one keyset page (id > afterId) at a time
+    @Query("SELECT v FROM Visitor v " +
+            "WHERE v.archived = TRUE " +
+            "AND (:from IS NULL OR COALESCE(v.archivedAt, v.createdAt) >= :from) " +
+            "AND (:to IS NULL   OR COALESCE(v.archivedAt, v.createdAt) < :to) " +
+            "AND v.visitorID > :afterId " +
+            "ORDER BY v.visitorID")
+    List<Visitor> findArchivedPage(@Param("from") Timestamp from,
+                                   @Param("to") Timestamp to,
+                                   @Param("afterId") Long afterId,
+                                   Pageable pageable);
+
+    // Selection export: one batch of requested ids, in id order
+    @Query("SELECT v FROM Visitor v WHERE v.visitorID IN :ids ORDER BY v.visitorID")
+    List<Visitor> findByIdsOrdered(@Param("ids") Collection<Long> ids);
+
+    // Selection PDF summary: [visitorType, count, min createdAt, max createdAt] per type
+    @Query("SELECT v.visitorType, COUNT(v), MIN(v.createdAt), MAX(v.createdAt) FROM Visitor v " +
+            "WHERE v.visitorID IN :ids GROUP BY v.visitorType")
+    List<Object[]> summarizeTypesByIds(@Param("ids") Collection<Long> ids);
+
+    // Bulk archival: one UPDATE per id chunk, no entity loading
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Visitor v SET v.archived = TRUE, v.archivedAt = :archivedAt WHERE v.visitorID IN :ids")
+    int markArchived(@Param("ids") Collection<Long> ids, @Param("archivedAt") Timestamp archivedAt);
+
+    /**
+     * Nightly archive candidates, one keyset page at a time: non-archived visitors
+     * with no open (non-archived) log whose last activity - registration, log
+     * start/end or entry time over their non-archived logs - is before cutoff.
+     */
+    @Query("SELECT v.visitorID FROM Visitor v " +
+            "LEFT JOIN VisitorLog l ON l.visitor = v AND (l.archived = FALSE OR l.archived IS NULL) " +
+            "LEFT JOIN VisitorLogEntry e ON e.visitorLog = l " +
+            "WHERE (v.archived = FALSE OR v.archived IS NULL) " +
+            "AND (v.createdAt IS NULL OR v.createdAt < :cutoff) " +
+            "AND v.visitorID > :afterId " +
+            "GROUP BY v.visitorID, v.createdAt " +
+            "HAVING SUM(CASE WHEN l.visitorLogID IS NOT NULL AND l.activeEnd IS NULL THEN 1 ELSE 0 END) = 0 " +
+            "AND (MAX(l.activeStart) IS NULL OR MAX(l.activeStart) < :cutoff) " +
+            "AND (MAX(l.activeEnd) IS NULL OR MAX(l.activeEnd) < :cutoff) " +
+            "AND (MAX(e.timestamp) IS NULL OR MAX(e.timestamp) < :cutoff) " +
+            "AND (v.createdAt IS NOT NULL OR MAX(l.activeStart) IS NOT NULL " +
+            "     OR MAX(l.activeEnd) IS NOT NULL OR MAX(e.timestamp) IS NOT NULL) " +
+            "ORDER BY v.visitorID")
+    List<Long> findArchiveCandidateIds(@Param("cutoff") Timestamp cutoff,
+                                       @Param("afterId") Long afterId,
+                                       Pageable pageable);
 }
@@ -0,0 +1,238 @@
+package com.ivisit.backend.service;
+
+import com.ivisit.backend.dto.ArchiveResultDTO;
+import com.ivisit.backend.model.ArchiveCheckpoint;
+import com.ivisit.backend.repository.ArchiveCheckpointRepository;
+import com.ivisit.backend.repository.VisitorRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retention-based archiving in chunks. A run archives candidates in keyset
+ * order (each chunk its own transaction), records the last committed visitorId
+ * in ArchiveCheckpoint after every chunk, and stops when the backlog is done or
+ * app.archive.max-run-seconds is spent. The next run resumes after the
+ * checkpoint; a finished pass resets it so the following run starts over.
+ */
+@Service
+public class ArchiveRunService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveRunService.class);
+
+    public static final String JOB_NAME = "visitor-archive";
+
+    public static final String OUTCOME_RUNNING = "RUNNING";
+    public static final String OUTCOME_COMPLETE = "COMPLETE";
+    public static final String OUTCOME_TIME_BUDGET = "TIME_BUDGET";
+    public static final String OUTCOME_FAILED = "FAILED";
+    // reported for a saved RUNNING outcome when no run is in flight (the process died mid-run)
+    public static final String OUTCOME_INTERRUPTED = "INTERRUPTED";
+
+    @Autowired
+    private VisitorRepository visitorRepository;
+
+    @Autowired
+    private ArchiveCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private ArchiveService archiveService;
+
+    @Value("${app.archive.retention-days:365}")
+    private int retentionDays;
+
+    @Value("${app.archive.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.archive.max-run-seconds:900}")
+    private long maxRunSeconds;
+
+    @Value("${app.archive.cron:0 30 2 * * ?}")
+    private String cron;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // progress of the run in flight
+    private volatile Timestamp currentRunStartedAt;
+    private volatile long currentLastVisitorId;
+    private volatile int currentChunks;
+    private volatile int currentVisitors;
+
+    // since startup
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong totalVisitors = new AtomicLong();
+    private final AtomicLong totalLogs = new AtomicLong();
+    private final AtomicLong totalEntries = new AtomicLong();
+
+    /**
+     * Runs one budgeted pass. Returns the rows archived, or null when a run is
+     * already in progress.
+     */
+    public ArchiveResultDTO runOnce() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Archive run skipped: previous run still in progress");
+            return null;
+        }
+        try {
+            return run();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private ArchiveResultDTO run() {
+        int chunkSize = chunkSize();
+        Timestamp cutoff = Timestamp.from(LocalDate.now().minusDays(retentionDays)
+                .atStartOfDay(ZoneId.systemDefault()).toInstant());
+        long startedAt = System.currentTimeMillis();
+        long deadline = startedAt + maxRunSeconds * 1000L;
+
+        ArchiveCheckpoint checkpoint = checkpointRepository.findById(JOB_NAME)
+                .orElseGet(() -> new ArchiveCheckpoint(JOB_NAME));
+        long afterId = checkpoint.getLastVisitorId() != null ? checkpoint.getLastVisitorId() : 0L;
+        if (OUTCOME_RUNNING.equals(checkpoint.getLastRunOutcome())) {
+            log.warn("Previous archive run started {} never finished; resuming after visitorId {}",
+                    checkpoint.getLastRunStartedAt(), afterId);
+        }
+
+        checkpoint.setLastRunStartedAt(new Timestamp(startedAt));
+        checkpoint.setLastRunFinishedAt(null);
+        checkpoint.setLastRunOutcome(OUTCOME_RUNNING);
+        checkpoint = checkpointRepository.save(checkpoint);
+
+        currentRunStartedAt = checkpoint.getLastRunStartedAt();
+        currentLastVisitorId = afterId;
+        currentChunks = 0;
+        currentVisitors = 0;
+
+        log.info("Archive run started after visitorId {} (cutoff {}, chunk {}, budget {}s)",
+                afterId, cutoff, chunkSize, maxRunSeconds);
+
+        String outcome = OUTCOME_COMPLETE;
+        int visitors = 0;
+        int logs = 0;
+        int entries = 0;
+
+        try {
+            while (true) {
+                if (System.currentTimeMillis() >= deadline) {
+                    outcome = OUTCOME_TIME_BUDGET;
+                    break;
+                }
+
+                List<Long> candidates = visitorRepository.findArchiveCandidateIds(
+                        cutoff, afterId, PageRequest.of(0, chunkSize));
+                if (candidates.isEmpty()) {
+                    break;
+                }
+
+                ArchiveResultDTO chunk = archiveService.archiveVisitorsByIds(candidates);
+                afterId = candidates.get(candidates.size() - 1);
+                visitors += chunk.getVisitors();
+                logs += chunk.getLogs();
+                entries += chunk.getEntries();
+
+                // saved after the chunk committed; losing it only means re-scanning one chunk
+                checkpoint.setLastVisitorId(afterId);
+                checkpoint.setUpdatedAt(Timestamp.from(Instant.now()));
+                checkpoint = checkpointRepository.save(checkpoint);
+
+                currentLastVisitorId = afterId;
+                currentChunks++;
+                currentVisitors = visitors;
+                log.info("Archive run: chunk {} committed up to visitorId {} ({} visitors so far)",
+                        currentChunks, afterId, visitors);
+
+                if (candidates.size() < chunkSize) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            outcome = OUTCOME_FAILED;
+            log.error("Archive run failed after visitorId {}", afterId, e);
+        }
+
+        if (OUTCOME_COMPLETE.equals(outcome)) {
+            checkpoint.setLastVisitorId(0L);
+        }
+        checkpoint.setUpdatedAt(Timestamp.from(Instant.now()));
+        checkpoint.setLastRunFinishedAt(Timestamp.from(Instant.now()));
+        checkpoint.setLastRunOutcome(outcome);
+        checkpoint.setLastRunVisitors(visitors);
+        checkpoint.setLastRunLogs(logs);
+        checkpoint.setLastRunEntries(entries);
+        checkpointRepository.save(checkpoint);
+
+        runs.incrementAndGet();
+        totalVisitors.addAndGet(visitors);
+        totalLogs.addAndGet(logs);
+        totalEntries.addAndGet(entries);
+
+        log.info("Archive run {}: {} visitor(s), {} log(s), {} entr(ies) in {} ms",
+                outcome, visitors, logs, entries, System.currentTimeMillis() - startedAt);
+        return new ArchiveResultDTO(checkpoint.getLastRunStartedAt(), visitors, logs, entries);
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<String, Object>();
+        status.put("running", running.get());
+
+        Map<String, Object> config = new LinkedHashMap<String, Object>();
+        config.put("retentionDays", retentionDays);
+        config.put("chunkSize", chunkSize());
+        config.put("maxRunSeconds", maxRunSeconds);
+        config.put("cron", cron);
+        status.put("config", config);
+
+        if (running.get()) {
+            Map<String, Object> current = new LinkedHashMap<String, Object>();
+            current.put("startedAt", currentRunStartedAt);
+            current.put("lastVisitorId", currentLastVisitorId);
+            current.put("chunks", currentChunks);
+            current.put("visitors", currentVisitors);
+            status.put("currentRun", current);
+        }
+
+        ArchiveCheckpoint checkpoint = checkpointRepository.findById(JOB_NAME).orElse(null);
+        if (checkpoint != null) {
+            Map<String, Object> saved = new LinkedHashMap<String, Object>();
+            saved.put("lastVisitorId", checkpoint.getLastVisitorId());
+            saved.put("updatedAt", checkpoint.getUpdatedAt());
+            saved.put("lastRunStartedAt", checkpoint.getLastRunStartedAt());
+            saved.put("lastRunFinishedAt", checkpoint.getLastRunFinishedAt());
+            saved.put("lastRunOutcome", !running.get() && OUTCOME_RUNNING.equals(checkpoint.getLastRunOutcome())
+                    ? OUTCOME_INTERRUPTED : checkpoint.getLastRunOutcome());
+            saved.put("lastRunVisitors", checkpoint.getLastRunVisitors());
+            saved.put("lastRunLogs", checkpoint.getLastRunLogs());
+            saved.put("lastRunEntries", checkpoint.getLastRunEntries());
+            status.put("checkpoint", saved);
+        }
+
+        Map<String, Object> totals = new LinkedHashMap<String, Object>();
+        totals.put("runs", runs.get());
+        totals.put("visitors", totalVisitors.get());
+        totals.put("logs", totalLogs.get());
+        totals.put("entries", totalEntries.get());
+        status.put("sinceStartup", totals);
+
+        return status;
+    }
+
+    // a page size below 1 is rejected by PageRequest
+    private int chunkSize() {
+        return Math.max(1, chunkSize);
+    }
+}
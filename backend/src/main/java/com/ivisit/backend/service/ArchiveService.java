@@ -1,5 +1,6 @@
 package com.ivisit.backend.service;
 
+import com.ivisit.backend.dto.ArchiveResultDTO;
 import com.ivisit.backend.model.Visitor;
 import com.ivisit.backend.model.VisitorLog;
 import com.ivisit.backend.model.VisitorLogEntry;
@@ -7,18 +8,26 @@ import com.ivisit.backend.repository.VisitorLogEntryRepository;
 import com.ivisit.backend.repository.VisitorLogRepository;
 import com.ivisit.backend.repository.VisitorRepository;
 import com.lowagie.text.DocumentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.io.IOException;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.LocalDate;
-import java.util.List;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
 
 @Service
 public class ArchiveService {
 
+    private static final Logger log = LoggerFactory.getLogger(ArchiveService.class);
+
+    // ids per UPDATE ... IN (...) statement
+    private static final int ARCHIVE_CHUNK_SIZE = 500;
+
     @Autowired
     private VisitorRepository visitorRepository;
 
@@ -32,46 +41,56 @@ public class ArchiveService {
     private ExportService exportService;
 
     /**
-     * Archives the given visitors + their finished logs + entries.
-     * Sets archived flags + a single shared archivedAt timestamp.
+     * Archives the given visitors + their finished logs + entries, sharing a single
+     * archivedAt timestamp. Logs are those of the selected visitors that have ended
+     * and are not archived yet (archived false or null); everything is flagged with
+     * UPDATE ... WHERE id IN (chunk), without loading entities.
      */
-    public void archiveVisitorsWithRelatedData(
-            List<Visitor> visitors,
-            List<VisitorLog> logs,
-            List<VisitorLogEntry> entries
-    ) throws IOException {
+    @Transactional
+    public ArchiveResultDTO archiveVisitorsByIds(Collection<Long> visitorIds) {
+        Timestamp archivedAt = archiveTimestamp();
+
+        Set<Long> distinct = new LinkedHashSet<>();
+        if (visitorIds != null) {
+            for (Long id : visitorIds) {
+                if (id != null) distinct.add(id);
+            }
+        }
+        List<Long> ids = new ArrayList<>(distinct);
 
-        if (visitors == null || visitors.isEmpty()) return;
+        int visitorCount = 0;
+        int logCount = 0;
+        int entryCount = 0;
 
-        Timestamp archivedAt = Timestamp.from(Instant.now());
+        for (int from = 0; from < ids.size(); from += ARCHIVE_CHUNK_SIZE) {
+            List<Long> visitorChunk = ids.subList(from, Math.min(from + ARCHIVE_CHUNK_SIZE, ids.size()));
 
-        for (Visitor v : visitors) {
-            if (v != null) {
-                v.setArchived(true);
-                v.setArchivedAt(archivedAt);
-            }
-        }
-        visitorRepository.saveAll(visitors);
-
-        if (logs != null && !logs.isEmpty()) {
-            for (VisitorLog log : logs) {
-                if (log != null) {
-                    log.setArchived(true);
-                    log.setArchivedAt(archivedAt);
-                }
-            }
-            visitorLogRepository.saveAll(logs);
+            // logs must be resolved before they are flagged: the lookup skips archived ones
+            List<Long> logIds = visitorLogRepository.findArchivableLogIds(visitorChunk);
+            entryCount += inChunks(logIds, chunk -> visitorLogEntryRepository.markArchivedByLogIds(chunk, archivedAt));
+            logCount += inChunks(logIds, chunk -> visitorLogRepository.markArchived(chunk, archivedAt));
+            visitorCount += visitorRepository.markArchived(visitorChunk, archivedAt);
         }
 
-        if (entries != null && !entries.isEmpty()) {
-            for (VisitorLogEntry entry : entries) {
-                if (entry != null) {
-                    entry.setArchived(true);
-                    entry.setArchivedAt(archivedAt);
-                }
-            }
-            visitorLogEntryRepository.saveAll(entries);
+        log.info("Archived {} visitor(s), {} log(s), {} entr(ies) at {}", visitorCount, logCount, entryCount, archivedAt);
+        return new ArchiveResultDTO(archivedAt, visitorCount, logCount, entryCount);
+    }
+
+    // millisecond precision so the reported value matches what the column stores
+    private Timestamp archiveTimestamp() {
+        return Timestamp.from(Instant.now().truncatedTo(ChronoUnit.MILLIS));
+    }
+
+    private interface ChunkUpdate {
+        int apply(List<Long> ids);
+    }
+
+    private int inChunks(List<Long> ids, ChunkUpdate update) {
+        int updated = 0;
+        for (int from = 0; from < ids.size(); from += ARCHIVE_CHUNK_SIZE) {
+            updated += update.apply(ids.subList(from, Math.min(from + ARCHIVE_CHUNK_SIZE, ids.size())));
         }
+        return updated;
     }
 
     // ----------------------------------------------------------------
@@ -0,0 +1,340 @@
+package com.ivisit.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs large PDF exports off the request thread. A job is queued on a bounded
+ * pool, writes its artifact under {file.upload-dir}/exports and is kept for
+ * app.export.jobs.ttl-minutes after it finishes. Jobs live in memory only;
+ * artifacts left over from a previous run are swept by the same TTL.
+ */
+@Service
+public class ExportJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportJobService.class);
+
+    public static final String QUEUED = "QUEUED";
+    public static final String RUNNING = "RUNNING";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+    public static final String CANCELLED = "CANCELLED";
+
+    public static final String TYPE_ARCHIVE_REPORT = "ARCHIVE_REPORT";
+    public static final String TYPE_VISITORS_PDF = "VISITORS_PDF";
+
+    @Autowired
+    private ExportService exportService;
+
+    @Value("${file.upload-dir:uploads/}")
+    private String uploadDir;
+
+    @Value("${app.export.jobs.threads:2}")
+    private int threads;
+
+    @Value("${app.export.jobs.queue-capacity:20}")
+    private int queueCapacity;
+
+    @Value("${app.export.jobs.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    public static class ExportJob {
+        private final String id;
+        private final String type;
+        private final String filename;
+        private final String contentType;
+        private final Path file;
+        private final Timestamp createdAt = Timestamp.from(Instant.now());
+        private final AtomicLong processedRows = new AtomicLong();
+
+        private volatile String status = QUEUED;
+        private volatile long totalRows = -1;
+        private volatile Timestamp startedAt;
+        private volatile Timestamp finishedAt;
+        private volatile String error;
+        private volatile boolean cancelRequested;
+        private volatile Future<?> future;
+
+        ExportJob(String id, String type, String filename, String contentType, Path file) {
+            this.id = id;
+            this.type = type;
+            this.filename = filename;
+            this.contentType = contentType;
+            this.file = file;
+        }
+
+        public String getId() { return id; }
+        public String getType() { return type; }
+        public String getFilename() { return filename; }
+        public String getContentType() { return contentType; }
+        public Path getFile() { return file; }
+        public String getStatus() { return status; }
+        public long getProcessedRows() { return processedRows.get(); }
+        public long getTotalRows() { return totalRows; }
+        public Timestamp getCreatedAt() { return createdAt; }
+        public Timestamp getStartedAt() { return startedAt; }
+        public Timestamp getFinishedAt() { return finishedAt; }
+        public String getError() { return error; }
+
+        public boolean isFinished() {
+            return DONE.equals(status) || FAILED.equals(status) || CANCELLED.equals(status);
+        }
+    }
+
+    private interface JobBody {
+        void write(OutputStream out, ExportProgress progress) throws Exception;
+    }
+
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "export-job");
+                    t.setDaemon(true);
+                    return t;
+                }
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ExportJob job : jobs.values()) {
+            job.cancelRequested = true;
+        }
+        executor.shutdownNow();
+    }
+
+    public ExportJob submitArchiveReport(Timestamp fromTs, Timestamp toTs,
+                                         LocalDate fromDate, LocalDate toDate,
+                                         String filename) {
+        return submit(TYPE_ARCHIVE_REPORT, filename, "application/pdf",
+                (out, progress) -> exportService.exportArchiveReportPdf(fromTs, toTs, fromDate, toDate, out, progress));
+    }
+
+    public ExportJob submitVisitorsPdf(List<Long> visitorIds, String filename) {
+        final List<Long> ids = new ArrayList<>(visitorIds);
+        return submit(TYPE_VISITORS_PDF, filename, "application/pdf",
+                (out, progress) -> exportService.exportVisitorsSelectionPdf(ids, out, progress));
+    }
+
+    public ExportJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * Cancels a queued/running job, or discards a finished one and its artifact.
+     * Returns false when the job is unknown.
+     */
+    public boolean cancel(String jobId) {
+        ExportJob job = jobs.get(jobId);
+        if (job == null) {
+            return false;
+        }
+
+        synchronized (job) {
+            if (job.isFinished()) {
+                jobs.remove(jobId);
+                deleteQuietly(job.file);
+                return true;
+            }
+            job.cancelRequested = true;
+            if (QUEUED.equals(job.status)) {
+                job.status = CANCELLED;
+                job.finishedAt = Timestamp.from(Instant.now());
+            }
+        }
+        // a running job stops at its next row; a queued one never starts
+        Future<?> future = job.future;
+        if (future != null) {
+            future.cancel(false);
+        }
+        return true;
+    }
+
+    public Map<String, Object> toStatus(ExportJob job) {
+        Map<String, Object> status = new LinkedHashMap<String, Object>();
+        status.put("jobId", job.id);
+        status.put("type", job.type);
+        status.put("status", job.status);
+        status.put("processedRows", job.getProcessedRows());
+        status.put("totalRows", job.totalRows >= 0 ? job.totalRows : null);
+        status.put("percent", job.totalRows > 0
+                ? Math.min(100, job.getProcessedRows() * 100 / job.totalRows)
+                : (DONE.equals(job.status) ? 100 : 0));
+        status.put("filename", job.filename);
+        status.put("createdAt", job.createdAt);
+        status.put("startedAt", job.startedAt);
+        status.put("finishedAt", job.finishedAt);
+        status.put("error", job.error);
+        if (DONE.equals(job.status)) {
+            status.put("downloadUrl", "/api/export-jobs/" + job.id + "/download");
+        }
+        return status;
+    }
+
+    /**
+     * Drops finished jobs past their TTL together with their files, plus any
+     * stray artifacts (e.g. from before a restart) older than the TTL.
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void purgeExpired() {
+        Instant cutoff = Instant.now().minus(ttlMinutes, ChronoUnit.MINUTES);
+
+        int removed = 0;
+        for (ExportJob job : jobs.values()) {
+            synchronized (job) {
+                if (job.isFinished() && job.finishedAt != null && job.finishedAt.toInstant().isBefore(cutoff)) {
+                    jobs.remove(job.id);
+                    deleteQuietly(job.file);
+                    removed++;
+                }
+            }
+        }
+
+        Path dir = exportsDir();
+        if (Files.isDirectory(dir)) {
+            Set<Path> live = new HashSet<>();
+            for (ExportJob job : jobs.values()) {
+                live.add(job.file.getFileName());
+                live.add(partFile(job).getFileName());
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files) {
+                    if (!live.contains(file.getFileName())
+                            && Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)) {
+                        deleteQuietly(file);
+                        removed++;
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Could not sweep export directory {}: {}", dir, e.getMessage());
+            }
+        }
+
+        if (removed > 0) {
+            log.info("Purged {} expired export job(s)/artifact(s)", removed);
+        }
+    }
+
+    private ExportJob submit(String type, String filename, String contentType, JobBody body) {
+        String id = UUID.randomUUID().toString();
+        ExportJob job = new ExportJob(id, type, filename, contentType, exportsDir().resolve(id + extensionOf(filename)));
+        jobs.put(id, job);
+
+        try {
+            job.future = executor.submit(() -> run(job, body));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(id);
+            throw new RuntimeException("Too many exports in progress, try again later");
+        }
+        return job;
+    }
+
+    private void run(ExportJob job, JobBody body) {
+        synchronized (job) {
+            if (job.cancelRequested) {
+                return;
+            }
+            job.status = RUNNING;
+            job.startedAt = Timestamp.from(Instant.now());
+        }
+
+        Path part = partFile(job);
+        try {
+            Files.createDirectories(part.getParent());
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(part))) {
+                body.write(out, progressOf(job));
+            }
+            Files.move(part, job.file, StandardCopyOption.REPLACE_EXISTING);
+            finish(job, DONE, null);
+            log.info("Export job {} ({}) done: {} rows", job.id, job.type, job.getProcessedRows());
+        } catch (CancellationException e) {
+            deleteQuietly(part);
+            finish(job, CANCELLED, null);
+            log.info("Export job {} ({}) cancelled", job.id, job.type);
+        } catch (Exception e) {
+            deleteQuietly(part);
+            finish(job, FAILED, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            log.warn("Export job {} ({}) failed", job.id, job.type, e);
+        }
+    }
+
+    private ExportProgress progressOf(ExportJob job) {
+        return new ExportProgress() {
+            @Override
+            public void start(long totalRows) {
+                job.totalRows = totalRows;
+            }
+
+            @Override
+            public void rowsDone(int rows) {
+                if (job.cancelRequested) {
+                    throw new CancellationException();
+                }
+                job.processedRows.addAndGet(rows);
+            }
+        };
+    }
+
+    private void finish(ExportJob job, String status, String error) {
+        synchronized (job) {
+            // a cancel that raced completion still wins
+            job.status = job.cancelRequested ? CANCELLED : status;
+            job.error = error;
+            job.finishedAt = Timestamp.from(Instant.now());
+            if (CANCELLED.equals(job.status)) {
+                deleteQuietly(job.file);
+            }
+        }
+    }
+
+    private Path exportsDir() {
+        return Paths.get(uploadDir, "exports").toAbsolutePath().normalize();
+    }
+
+    private Path partFile(ExportJob job) {
+        return job.file.resolveSibling(job.id + ".part");
+    }
+
+    private String extensionOf(String filename) {
+        int dot = filename != null ? filename.lastIndexOf('.') : -1;
+        return dot >= 0 ? filename.substring(dot) : "";
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete export artifact {}: {}", file, e.getMessage());
+        }
+    }
+}
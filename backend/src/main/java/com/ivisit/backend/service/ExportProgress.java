@@ -0,0 +1,22 @@
+package com.ivisit.backend.service;
+
+/**
+ * Row-level progress callback for the export writers. Implementations may throw
+ * CancellationException from rowsDone to abort the export.
+ */
+public interface ExportProgress {
+
+    ExportProgress NONE = new ExportProgress() {
+        @Override
+        public void start(long totalRows) {
+        }
+
+        @Override
+        public void rowsDone(int rows) {
+        }
+    };
+
+    void start(long totalRows);
+
+    void rowsDone(int rows);
+}
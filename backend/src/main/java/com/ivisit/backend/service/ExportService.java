@@ -1,8 +1,13 @@
 package com.ivisit.backend.service;
 
+import com.ivisit.backend.dto.VisitorLogEntryRow;
 import com.ivisit.backend.model.Visitor;
 import com.ivisit.backend.model.VisitorLog;
 import com.ivisit.backend.model.VisitorLogEntry;
+import com.ivisit.backend.model.VisitorPass;
+import com.ivisit.backend.repository.VisitorLogEntryRepository;
+import com.ivisit.backend.repository.VisitorLogRepository;
+import com.ivisit.backend.repository.VisitorRepository;
 import com.lowagie.text.Document;
 import com.lowagie.text.DocumentException;
 import com.lowagie.text.Font;
@@ -13,181 +18,459 @@ import com.lowagie.text.Phrase;
 import com.lowagie.text.pdf.PdfPCell;
 import com.lowagie.text.pdf.PdfPTable;
 import com.lowagie.text.pdf.PdfWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @Service
 public class ExportService {
 
+    private static final int ID_BATCH_SIZE = 500;
+    private static final int EXPORT_PAGE_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private VisitorRepository visitorRepository;
+
+    @Autowired
+    private VisitorLogRepository visitorLogRepository;
+
+    @Autowired
+    private VisitorLogEntryRepository visitorLogEntryRepository;
+
     // ---------- CSV builders (used by ArchiveCenter + Visitors exports) ----------
 
-    public byte[] buildVisitorsCsv(List<Visitor> visitors) {
-        List<String> lines = new ArrayList<>();
-        lines.add("visitorID,visitorName,visitorType,gender,idType,idNumber,dateOfBirth,createdAt,archived,archivedAt");
+    public static final String VISITORS_CSV_HEADER =
+            "visitorID,visitorName,visitorType,gender,idType,idNumber,dateOfBirth,createdAt,archived,archivedAt";
+    public static final String LOGS_CSV_HEADER =
+            "visitorLogID,visitorID,purposeOfVisit,passLabel,activeStart,activeEnd,firstLocation,lastLocation,archived,archivedAt";
+    public static final String ENTRIES_CSV_HEADER =
+            "visitorLogEntryID,visitorLogID,stationName,guardName,passLabel,timestamp,archived,archivedAt";
 
+    public byte[] buildVisitorsCsv(List<Visitor> visitors) {
+        StringBuilder csv = new StringBuilder(VISITORS_CSV_HEADER);
         if (visitors != null) {
             for (Visitor v : visitors) {
                 if (v == null) continue;
-
-                String visitorId = v.getVisitorID() != null ? v.getVisitorID().toString() : "";
-                String name = escapeCsv(v.getVisitorName());
-                String type = escapeCsv(v.getVisitorType());
-                String gender = escapeCsv(v.getGender());
-                String idType = escapeCsv(v.getIdType());
-                String idNumber = escapeCsv(v.getIdNumber());
-                String dob = v.getDateOfBirth() != null ? escapeCsv(v.getDateOfBirth().toString()) : "";
-                String createdAt = v.getCreatedAt() != null ? escapeCsv(v.getCreatedAt().toString()) : "";
-                String archived = v.getArchived() != null && v.getArchived() ? "true" : "false";
-                String archivedAt = v.getArchivedAt() != null ? escapeCsv(v.getArchivedAt().toString()) : "";
-
-                String line = String.join(",",
-                        visitorId,
-                        name,
-                        type,
-                        gender,
-                        idType,
-                        idNumber,
-                        dob,
-                        createdAt,
-                        archived,
-                        archivedAt
-                );
-                lines.add(line);
+                csv.append('\n').append(visitorCsvLine(v));
             }
         }
-
-        String csv = String.join("\n", lines);
-        return csv.getBytes(StandardCharsets.UTF_8);
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
     }
 
     public byte[] buildLogsCsv(List<VisitorLog> logs) {
-        List<String> lines = new ArrayList<>();
-        lines.add("visitorLogID,visitorID,purposeOfVisit,passLabel,activeStart,activeEnd,firstLocation,lastLocation,archived,archivedAt");
-
+        StringBuilder csv = new StringBuilder(LOGS_CSV_HEADER);
         if (logs != null) {
+            Map<Long, String> entryStations = loadEntryStationNames(logs);
             for (VisitorLog log : logs) {
                 if (log == null) continue;
+                csv.append('\n').append(logCsvLine(log, entryStations));
+            }
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
 
-                Long visitorId = log.getVisitor() != null ? log.getVisitor().getVisitorID() : null;
-
-                String passLabel = "-";
-                if (log.getVisitorPass() != null) {
-                    if (log.getVisitorPass().getDisplayCode() != null &&
-                            !log.getVisitorPass().getDisplayCode().trim().isEmpty()) {
-                        passLabel = log.getVisitorPass().getDisplayCode();
-                    } else if (log.getVisitorPass().getPassNumber() != null &&
-                            !log.getVisitorPass().getPassNumber().trim().isEmpty()) {
-                        passLabel = log.getVisitorPass().getPassNumber();
-                    } else if (log.getVisitorPass().getPassID() != null) {
-                        passLabel = "P-" + log.getVisitorPass().getPassID();
-                    }
+    public byte[] buildEntriesCsv(List<VisitorLogEntry> entries) {
+        StringBuilder csv = new StringBuilder(ENTRIES_CSV_HEADER);
+        if (entries != null) {
+            for (VisitorLogEntry e : entries) {
+                if (e == null) continue;
+                csv.append('\n').append(entryCsvLine(e));
+            }
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // ---------- Streaming CSV (archive exports) ----------
+    // Rows are read EXPORT_PAGE_SIZE at a time by id and written straight to out,
+    // so memory stays flat however many rows match. out is flushed, not closed.
+
+    public void writeArchivedVisitorsCsv(Timestamp from, Timestamp to, OutputStream out) throws IOException {
+        Writer w = csvWriter(out);
+        w.write(VISITORS_CSV_HEADER);
+        writeVisitorRows(w, archivedVisitorPages(from, to));
+    }
+
+    public void writeArchivedLogsCsv(Timestamp from, Timestamp to, OutputStream out) throws IOException {
+        Writer w = csvWriter(out);
+        w.write(LOGS_CSV_HEADER);
+        writeLogRows(w, archivedLogPages(from, to));
+    }
+
+    public void writeArchivedEntriesCsv(Timestamp from, Timestamp to, OutputStream out) throws IOException {
+        Writer w = csvWriter(out);
+        w.write(ENTRIES_CSV_HEADER);
+        writeEntryRows(w, archivedEntryPages(from, to));
+    }
+
+    /**
+     * Streams visitors.csv, visitor_logs.csv and visitor_log_entries.csv for the
+     * selected visitors (archived or not) as one ZIP. Each entry is written page
+     * by page, so the archive starts downloading before the queries finish.
+     */
+    public void writeVisitorsSelectionCsvZip(Collection<Long> visitorIds, OutputStream out) throws IOException {
+        List<Long> ids = distinctIds(visitorIds);
+
+        ZipOutputStream zos = new ZipOutputStream(out);
+        Writer w = csvWriter(zos);
+
+        zos.putNextEntry(new ZipEntry("visitors.csv"));
+        w.write(VISITORS_CSV_HEADER);
+        writeVisitorRows(w, selectedVisitorPages(ids));
+        zos.closeEntry();
+
+        zos.putNextEntry(new ZipEntry("visitor_logs.csv"));
+        w.write(LOGS_CSV_HEADER);
+        writeLogRows(w, selectedLogPages(ids));
+        zos.closeEntry();
+
+        zos.putNextEntry(new ZipEntry("visitor_log_entries.csv"));
+        w.write(ENTRIES_CSV_HEADER);
+        writeEntryRows(w, selectedEntryPages(ids));
+        zos.closeEntry();
+
+        zos.finish();
+        zos.flush();
+    }
+
+    private void writeVisitorRows(Writer w, PageSource<Visitor> pages) throws IOException {
+        for (List<Visitor> page = pages.nextPage(); !page.isEmpty(); page = pages.nextPage()) {
+            for (Visitor v : page) {
+                w.write('\n');
+                w.write(visitorCsvLine(v));
+            }
+            w.flush();
+        }
+    }
+
+    private void writeLogRows(Writer w, PageSource<VisitorLog> pages) throws IOException {
+        for (List<VisitorLog> page = pages.nextPage(); !page.isEmpty(); page = pages.nextPage()) {
+            Map<Long, String> entryStations = loadEntryStationNames(page);
+            for (VisitorLog log : page) {
+                w.write('\n');
+                w.write(logCsvLine(log, entryStations));
+            }
+            w.flush();
+        }
+    }
+
+    private void writeEntryRows(Writer w, PageSource<VisitorLogEntry> pages) throws IOException {
+        for (List<VisitorLogEntry> page = pages.nextPage(); !page.isEmpty(); page = pages.nextPage()) {
+            for (VisitorLogEntry e : page) {
+                w.write('\n');
+                w.write(entryCsvLine(e));
+            }
+            w.flush();
+        }
+    }
+
+    // ---------- Row pages (shared by the streaming CSV and PDF writers) ----------
+
+    /**
+     * Supplies export rows one page at a time; an empty page means no more rows.
+     * The keyset sources clear the persistence context before each fetch, so
+     * pages already written don't pile up in the session.
+     */
+    private interface PageSource<T> {
+        List<T> nextPage();
+    }
+
+    private <T> PageSource<T> pagesOf(List<T> rows) {
+        final List<T> all = rows != null ? rows : Collections.<T>emptyList();
+        return new PageSource<T>() {
+            private int next = 0;
+
+            @Override
+            public List<T> nextPage() {
+                List<T> page = new ArrayList<>();
+                while (next < all.size() && page.size() < EXPORT_PAGE_SIZE) {
+                    T row = all.get(next++);
+                    if (row != null) page.add(row);
                 }
+                return page;
+            }
+        };
+    }
 
-                String firstLocation = "N/A";
-                String lastLocation = "N/A";
+    private PageSource<Visitor> archivedVisitorPages(final Timestamp from, final Timestamp to) {
+        return new PageSource<Visitor>() {
+            private long afterId = 0L;
+            private boolean done;
+
+            @Override
+            public List<Visitor> nextPage() {
+                if (done) return Collections.emptyList();
+                entityManager.clear();
+                List<Visitor> page = visitorRepository.findArchivedPage(from, to, afterId, PageRequest.of(0, EXPORT_PAGE_SIZE));
+                done = page.size() < EXPORT_PAGE_SIZE;
+                if (!page.isEmpty()) afterId = page.get(page.size() - 1).getVisitorID();
+                return page;
+            }
+        };
+    }
 
-                List<VisitorLogEntry> entries = log.getVisitorLogEntries();
-                if (entries != null && !entries.isEmpty()) {
-                    List<VisitorLogEntry> sorted = new ArrayList<>(entries);
-                    sorted.sort(Comparator.comparing(VisitorLogEntry::getTimestamp));
+    private PageSource<VisitorLog> archivedLogPages(final Timestamp from, final Timestamp to) {
+        return new PageSource<VisitorLog>() {
+            private long afterId = 0L;
+            private boolean done;
+
+            @Override
+            public List<VisitorLog> nextPage() {
+                if (done) return Collections.emptyList();
+                entityManager.clear();
+                List<VisitorLog> page = visitorLogRepository.findArchivedPage(from, to, afterId, PageRequest.of(0, EXPORT_PAGE_SIZE));
+                done = page.size() < EXPORT_PAGE_SIZE;
+                if (!page.isEmpty()) afterId = page.get(page.size() - 1).getVisitorLogID();
+                return page;
+            }
+        };
+    }
 
-                    VisitorLogEntry first = sorted.get(0);
-                    VisitorLogEntry last = sorted.get(sorted.size() - 1);
+    private PageSource<VisitorLogEntry> archivedEntryPages(final Timestamp from, final Timestamp to) {
+        return new PageSource<VisitorLogEntry>() {
+            private long afterId = 0L;
+            private boolean done;
+
+            @Override
+            public List<VisitorLogEntry> nextPage() {
+                if (done) return Collections.emptyList();
+                entityManager.clear();
+                List<VisitorLogEntry> page = visitorLogEntryRepository.findArchivedPage(from, to, afterId, PageRequest.of(0, EXPORT_PAGE_SIZE));
+                done = page.size() < EXPORT_PAGE_SIZE;
+                if (!page.isEmpty()) afterId = page.get(page.size() - 1).getVisitorLogEntryID();
+                return page;
+            }
+        };
+    }
+
+    // ids must be distinct and sorted (see distinctIds); one page per id batch
+    private PageSource<Visitor> selectedVisitorPages(final List<Long> ids) {
+        return new PageSource<Visitor>() {
+            private int batchStart = 0;
+
+            @Override
+            public List<Visitor> nextPage() {
+                while (batchStart < ids.size()) {
+                    List<Long> batch = ids.subList(batchStart, Math.min(batchStart + ID_BATCH_SIZE, ids.size()));
+                    batchStart += ID_BATCH_SIZE;
+                    entityManager.clear();
+                    List<Visitor> page = visitorRepository.findByIdsOrdered(batch);
+                    if (!page.isEmpty()) return page;
+                }
+                return Collections.emptyList();
+            }
+        };
+    }
 
-                    if (first.getStation() != null && first.getStation().getName() != null) {
-                        firstLocation = first.getStation().getName();
+    private PageSource<VisitorLog> selectedLogPages(final List<Long> ids) {
+        return new PageSource<VisitorLog>() {
+            private int batchStart = 0;
+            private long afterId = 0L;
+
+            @Override
+            public List<VisitorLog> nextPage() {
+                while (batchStart < ids.size()) {
+                    List<Long> batch = ids.subList(batchStart, Math.min(batchStart + ID_BATCH_SIZE, ids.size()));
+                    entityManager.clear();
+                    List<VisitorLog> page = visitorLogRepository.findByVisitorIdsPage(batch, afterId, PageRequest.of(0, EXPORT_PAGE_SIZE));
+                    if (page.size() < EXPORT_PAGE_SIZE) {
+                        batchStart += ID_BATCH_SIZE;
+                        afterId = 0L;
+                    } else {
+                        afterId = page.get(page.size() - 1).getVisitorLogID();
                     }
-                    if (last.getStation() != null && last.getStation().getName() != null) {
-                        lastLocation = last.getStation().getName();
+                    if (!page.isEmpty()) return page;
+                }
+                return Collections.emptyList();
+            }
+        };
+    }
+
+    private PageSource<VisitorLogEntry> selectedEntryPages(final List<Long> ids) {
+        return new PageSource<VisitorLogEntry>() {
+            private int batchStart = 0;
+            private long afterId = 0L;
+
+            @Override
+            public List<VisitorLogEntry> nextPage() {
+                while (batchStart < ids.size()) {
+                    List<Long> batch = ids.subList(batchStart, Math.min(batchStart + ID_BATCH_SIZE, ids.size()));
+                    entityManager.clear();
+                    List<VisitorLogEntry> page = visitorLogEntryRepository.findByVisitorIdsPage(batch, afterId, PageRequest.of(0, EXPORT_PAGE_SIZE));
+                    if (page.size() < EXPORT_PAGE_SIZE) {
+                        batchStart += ID_BATCH_SIZE;
+                        afterId = 0L;
+                    } else {
+                        afterId = page.get(page.size() - 1).getVisitorLogEntryID();
                     }
+                    if (!page.isEmpty()) return page;
                 }
+                return Collections.emptyList();
+            }
+        };
+    }
 
-                String activeStart = log.getActiveStart() != null ? escapeCsv(log.getActiveStart().toString()) : "";
-                String activeEnd = log.getActiveEnd() != null ? escapeCsv(log.getActiveEnd().toString()) : "";
-                String purpose = log.getPurposeOfVisit() != null ? escapeCsv(log.getPurposeOfVisit()) : "";
-                String archived = log.getArchived() != null && log.getArchived() ? "true" : "false";
-                String archivedAt = log.getArchivedAt() != null ? escapeCsv(log.getArchivedAt().toString()) : "";
-
-                String line = String.join(",",
-                        log.getVisitorLogID() != null ? log.getVisitorLogID().toString() : "",
-                        visitorId != null ? visitorId.toString() : "",
-                        purpose,
-                        escapeCsv(passLabel),
-                        activeStart,
-                        activeEnd,
-                        escapeCsv(firstLocation),
-                        escapeCsv(lastLocation),
-                        archived,
-                        archivedAt
-                );
-                lines.add(line);
+    private List<Long> distinctIds(Collection<Long> ids) {
+        TreeSet<Long> distinct = new TreeSet<>();
+        if (ids != null) {
+            for (Long id : ids) {
+                if (id != null) distinct.add(id);
             }
         }
+        return new ArrayList<>(distinct);
+    }
 
-        String csv = String.join("\n", lines);
-        return csv.getBytes(StandardCharsets.UTF_8);
+    private Writer csvWriter(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
     }
 
-    public byte[] buildEntriesCsv(List<VisitorLogEntry> entries) {
-        List<String> lines = new ArrayList<>();
-        lines.add("visitorLogEntryID,visitorLogID,stationName,guardName,passLabel,timestamp,archived,archivedAt");
+    // ---------- CSV rows ----------
+
+    private String visitorCsvLine(Visitor v) {
+        String visitorId = v.getVisitorID() != null ? v.getVisitorID().toString() : "";
+        String name = escapeCsv(v.getVisitorName());
+        String type = escapeCsv(v.getVisitorType());
+        String gender = escapeCsv(v.getGender());
+        String idType = escapeCsv(v.getIdType());
+        String idNumber = escapeCsv(v.getIdNumber());
+        String dob = v.getDateOfBirth() != null ? escapeCsv(v.getDateOfBirth().toString()) : "";
+        String createdAt = v.getCreatedAt() != null ? escapeCsv(v.getCreatedAt().toString()) : "";
+        String archived = v.getArchived() != null && v.getArchived() ? "true" : "false";
+        String archivedAt = v.getArchivedAt() != null ? escapeCsv(v.getArchivedAt().toString()) : "";
+
+        return String.join(",",
+                visitorId,
+                name,
+                type,
+                gender,
+                idType,
+                idNumber,
+                dob,
+                createdAt,
+                archived,
+                archivedAt
+        );
+    }
 
-        if (entries != null) {
-            for (VisitorLogEntry e : entries) {
-                if (e == null) continue;
+    private String logCsvLine(VisitorLog log, Map<Long, String> entryStations) {
+        Long visitorId = log.getVisitor() != null ? log.getVisitor().getVisitorID() : null;
+
+        String passLabel = passLabel(log.getVisitorPass());
+        String firstLocation = locationOf(log.getFirstEntryID(), entryStations);
+        String lastLocation = locationOf(log.getLatestEntryID(), entryStations);
+
+        String activeStart = log.getActiveStart() != null ? escapeCsv(log.getActiveStart().toString()) : "";
+        String activeEnd = log.getActiveEnd() != null ? escapeCsv(log.getActiveEnd().toString()) : "";
+        String purpose = log.getPurposeOfVisit() != null ? escapeCsv(log.getPurposeOfVisit()) : "";
+        String archived = log.getArchived() != null && log.getArchived() ? "true" : "false";
+        String archivedAt = log.getArchivedAt() != null ? escapeCsv(log.getArchivedAt().toString()) : "";
+
+        return String.join(",",
+                log.getVisitorLogID() != null ? log.getVisitorLogID().toString() : "",
+                visitorId != null ? visitorId.toString() : "",
+                purpose,
+                escapeCsv(passLabel),
+                activeStart,
+                activeEnd,
+                escapeCsv(firstLocation),
+                escapeCsv(lastLocation),
+                archived,
+                archivedAt
+        );
+    }
 
-                VisitorLog log = e.getVisitorLog();
-                Long logId = log != null ? log.getVisitorLogID() : null;
-
-                String stationName = (e.getStation() != null && e.getStation().getName() != null)
-                        ? e.getStation().getName()
-                        : "Unknown station";
-
-                String guardName = (e.getUserAccount() != null && e.getUserAccount().getUsername() != null)
-                        ? e.getUserAccount().getUsername()
-                        : "System";
-
-                String passLabel = "-";
-                if (log != null && log.getVisitorPass() != null) {
-                    if (log.getVisitorPass().getDisplayCode() != null &&
-                            !log.getVisitorPass().getDisplayCode().trim().isEmpty()) {
-                        passLabel = log.getVisitorPass().getDisplayCode();
-                    } else if (log.getVisitorPass().getPassNumber() != null &&
-                            !log.getVisitorPass().getPassNumber().trim().isEmpty()) {
-                        passLabel = log.getVisitorPass().getPassNumber();
-                    } else if (log.getVisitorPass().getPassID() != null) {
-                        passLabel = "P-" + log.getVisitorPass().getPassID();
-                    }
-                }
+    private String entryCsvLine(VisitorLogEntry e) {
+        VisitorLog log = e.getVisitorLog();
+        Long logId = log != null ? log.getVisitorLogID() : null;
+
+        String stationName = (e.getStation() != null && e.getStation().getName() != null)
+                ? e.getStation().getName()
+                : "Unknown station";
+
+        String guardName = (e.getUserAccount() != null && e.getUserAccount().getUsername() != null)
+                ? e.getUserAccount().getUsername()
+                : "System";
+
+        String passLabel = passLabel(log != null ? log.getVisitorPass() : null);
+
+        String ts = e.getTimestamp() != null ? escapeCsv(e.getTimestamp().toString()) : "";
+        String archived = e.getArchived() != null && e.getArchived() ? "true" : "false";
+        String archivedAt = e.getArchivedAt() != null ? escapeCsv(e.getArchivedAt().toString()) : "";
+
+        return String.join(",",
+                e.getVisitorLogEntryID() != null ? e.getVisitorLogEntryID().toString() : "",
+                logId != null ? logId.toString() : "",
+                escapeCsv(stationName),
+                escapeCsv(guardName),
+                escapeCsv(passLabel),
+                ts,
+                archived,
+                archivedAt
+        );
+    }
 
-                String ts = e.getTimestamp() != null ? escapeCsv(e.getTimestamp().toString()) : "";
-                String archived = e.getArchived() != null && e.getArchived() ? "true" : "false";
-                String archivedAt = e.getArchivedAt() != null ? escapeCsv(e.getArchivedAt().toString()) : "";
-
-                String line = String.join(",",
-                        e.getVisitorLogEntryID() != null ? e.getVisitorLogEntryID().toString() : "",
-                        logId != null ? logId.toString() : "",
-                        escapeCsv(stationName),
-                        escapeCsv(guardName),
-                        escapeCsv(passLabel),
-                        ts,
-                        archived,
-                        archivedAt
-                );
-                lines.add(line);
+    private String passLabel(VisitorPass pass) {
+        if (pass == null) {
+            return "-";
+        }
+        if (pass.getDisplayCode() != null && !pass.getDisplayCode().trim().isEmpty()) {
+            return pass.getDisplayCode();
+        }
+        if (pass.getPassNumber() != null && !pass.getPassNumber().trim().isEmpty()) {
+            return pass.getPassNumber();
+        }
+        if (pass.getPassID() != null) {
+            return "P-" + pass.getPassID();
+        }
+        return "-";
+    }
+
+    /**
+     * Station names of the first/latest entry of each log (entryId -> station name),
+     * read through VisitorLog's entry pointers instead of loading and sorting every entry.
+     */
+    private Map<Long, String> loadEntryStationNames(List<VisitorLog> logs) {
+        List<Long> entryIds = new ArrayList<>();
+        for (VisitorLog log : logs) {
+            if (log == null) continue;
+            if (log.getFirstEntryID() != null) entryIds.add(log.getFirstEntryID());
+            if (log.getLatestEntryID() != null) entryIds.add(log.getLatestEntryID());
+        }
+
+        Map<Long, String> names = new HashMap<>();
+        for (int from = 0; from < entryIds.size(); from += ID_BATCH_SIZE) {
+            List<Long> batch = entryIds.subList(from, Math.min(from + ID_BATCH_SIZE, entryIds.size()));
+            for (VisitorLogEntryRow row : visitorLogEntryRepository.findEntryRowsByIds(batch)) {
+                if (row.getStationName() != null) {
+                    names.put(row.getVisitorLogEntryID(), row.getStationName());
+                }
             }
         }
+        return names;
+    }
 
-        String csv = String.join("\n", lines);
-        return csv.getBytes(StandardCharsets.UTF_8);
+    private String locationOf(Long entryId, Map<Long, String> entryStations) {
+        String name = entryId != null ? entryStations.get(entryId) : null;
+        return name != null ? name : "N/A";
     }
 
     private String escapeCsv(String value) {
@@ -198,6 +481,9 @@ public class ExportService {
     }
 
     // ---------- Archive report PDF (ArchiveCenter) ----------
+    // Tables are built with setComplete(false) and added to the document after
+    // every page of rows: OpenPDF lays out the finished rows and drops them from
+    // the table, so only one page of cells is held at a time.
 
     public byte[] buildArchiveReportPdf(
             List<Visitor> visitors,
@@ -206,10 +492,52 @@ public class ExportService {
             LocalDate fromDate,
             LocalDate toDate
     ) throws DocumentException {
-
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        renderArchiveReport(baos, fromDate, toDate,
+                safeSize(visitors), safeSize(logs), safeSize(entries),
+                pagesOf(visitors), pagesOf(logs), pagesOf(entries),
+                ExportProgress.NONE);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Writes the archive report for [fromTs, toTs) straight to out, reading the
+     * rows in keyset pages so heap use doesn't grow with the range.
+     */
+    public void exportArchiveReportPdf(
+            Timestamp fromTs,
+            Timestamp toTs,
+            LocalDate fromDate,
+            LocalDate toDate,
+            OutputStream out,
+            ExportProgress progress
+    ) throws DocumentException {
+        long visitorCount = visitorRepository.countArchivedInRange(fromTs, toTs);
+        long logCount = visitorLogRepository.countArchivedInRange(fromTs, toTs);
+        long entryCount = visitorLogEntryRepository.countArchivedInRange(fromTs, toTs);
+
+        progress.start(visitorCount + logCount + entryCount);
+        renderArchiveReport(out, fromDate, toDate,
+                visitorCount, logCount, entryCount,
+                archivedVisitorPages(fromTs, toTs), archivedLogPages(fromTs, toTs), archivedEntryPages(fromTs, toTs),
+                progress);
+    }
+
+    private void renderArchiveReport(
+            OutputStream out,
+            LocalDate fromDate,
+            LocalDate toDate,
+            long visitorCount,
+            long logCount,
+            long entryCount,
+            PageSource<Visitor> visitors,
+            PageSource<VisitorLog> logs,
+            PageSource<VisitorLogEntry> entries,
+            ExportProgress progress
+    ) throws DocumentException {
+
         Document doc = new Document(PageSize.A4.rotate(), 36, 36, 48, 36);
-        PdfWriter.getInstance(doc, baos);
+        PdfWriter.getInstance(doc, out);
 
         try {
             doc.open();
@@ -239,9 +567,9 @@ public class ExportService {
 
             Paragraph meta = new Paragraph(
                     rangeLabel + "    " +
-                            "Visitors: " + safeSize(visitors) + "    " +
-                            "Logs: " + safeSize(logs) + "    " +
-                            "Entries: " + safeSize(entries) + "    " +
+                            "Visitors: " + visitorCount + "    " +
+                            "Logs: " + logCount + "    " +
+                            "Entries: " + entryCount + "    " +
                             "Generated at: " + generatedAt,
                     smallFont
             );
@@ -255,45 +583,20 @@ public class ExportService {
             doc.add(summaryHeader);
 
             Paragraph summary = new Paragraph("", smallFont);
-            summary.add("• Total visitors in this report: " + safeSize(visitors) + "\n");
-            summary.add("• Total logs in this report: " + safeSize(logs) + "\n");
-            summary.add("• Total entries in this report: " + safeSize(entries) + "\n");
+            summary.add("• Total visitors in this report: " + visitorCount + "\n");
+            summary.add("• Total logs in this report: " + logCount + "\n");
+            summary.add("• Total entries in this report: " + entryCount + "\n");
             summary.setSpacingAfter(10f);
             doc.add(summary);
 
             // Visitors table
-            if (visitors != null && !visitors.isEmpty()) {
+            if (visitorCount > 0) {
                 Paragraph header = new Paragraph("Visitors", sectionFont);
                 header.setSpacingBefore(4f);
                 header.setSpacingAfter(4f);
                 doc.add(header);
 
-                PdfPTable table = new PdfPTable(8);
-                table.setWidthPercentage(100f);
-                table.setWidths(new float[]{8f, 20f, 16f, 10f, 12f, 12f, 10f, 12f});
-
-                addHeaderCell(table, "ID");
-                addHeaderCell(table, "Full Name");
-                addHeaderCell(table, "Visitor Type");
-                addHeaderCell(table, "Gender");
-                addHeaderCell(table, "ID Type");
-                addHeaderCell(table, "ID Number");
-                addHeaderCell(table, "Birthdate");
-                addHeaderCell(table, "Registered At");
-
-                for (Visitor v : visitors) {
-                    if (v == null) continue;
-                    addBodyCell(table, v.getVisitorID() != null ? v.getVisitorID().toString() : "-");
-                    addBodyCell(table, nz(v.getVisitorName()));
-                    addBodyCell(table, nz(v.getVisitorType()));
-                    addBodyCell(table, nz(v.getIdType()));
-                    addBodyCell(table, nz(v.getGender()));
-                    addBodyCell(table, nz(v.getIdNumber()));
-                    addBodyCell(table, v.getDateOfBirth() != null ? v.getDateOfBirth().toString() : "-");
-                    addBodyCell(table, v.getCreatedAt() != null ? v.getCreatedAt().toString() : "-");
-                }
-
-                doc.add(table);
+                addVisitorsTable(doc, visitors, progress);
             } else {
                 Paragraph p = new Paragraph("No visitors archived in this range.", smallFont);
                 p.setSpacingAfter(8f);
@@ -301,128 +604,75 @@ public class ExportService {
             }
 
             // Logs table
-            if (logs != null && !logs.isEmpty()) {
+            if (logCount > 0) {
                 Paragraph header = new Paragraph("Visitor Logs", sectionFont);
                 header.setSpacingBefore(12f);
                 header.setSpacingAfter(4f);
                 doc.add(header);
 
-                PdfPTable table = new PdfPTable(8);
-                table.setWidthPercentage(100f);
-                table.setWidths(new float[]{6f, 8f, 18f, 10f, 13f, 13f, 16f, 16f});
-
-                addHeaderCell(table, "Log ID");
-                addHeaderCell(table, "Visitor ID");
-                addHeaderCell(table, "Purpose");
-                addHeaderCell(table, "Pass");
-                addHeaderCell(table, "Start");
-                addHeaderCell(table, "End");
-                addHeaderCell(table, "First Location");
-                addHeaderCell(table, "Last Location");
-
-                for (VisitorLog log : logs) {
-                    if (log == null) continue;
-
-                    String passLabel = "-";
-                    if (log.getVisitorPass() != null) {
-                        if (log.getVisitorPass().getDisplayCode() != null &&
-                                !log.getVisitorPass().getDisplayCode().trim().isEmpty()) {
-                            passLabel = log.getVisitorPass().getDisplayCode();
-                        } else if (log.getVisitorPass().getPassNumber() != null &&
-                                !log.getVisitorPass().getPassNumber().trim().isEmpty()) {
-                            passLabel = log.getVisitorPass().getPassNumber();
-                        } else if (log.getVisitorPass().getPassID() != null) {
-                            passLabel = "P-" + log.getVisitorPass().getPassID();
-                        }
+                PdfPTable table = newStreamingTable(
+                        new float[]{6f, 8f, 18f, 10f, 13f, 13f, 16f, 16f},
+                        "Log ID", "Visitor ID", "Purpose", "Pass", "Start", "End", "First Location", "Last Location");
+
+                for (List<VisitorLog> page = logs.nextPage(); !page.isEmpty(); page = logs.nextPage()) {
+                    Map<Long, String> entryStations = loadEntryStationNames(page);
+                    for (VisitorLog log : page) {
+                        addBodyCell(table, log.getVisitorLogID() != null ? log.getVisitorLogID().toString() : "-");
+                        addBodyCell(table, log.getVisitor() != null && log.getVisitor().getVisitorID() != null
+                                ? log.getVisitor().getVisitorID().toString()
+                                : "-");
+                        addBodyCell(table, nz(log.getPurposeOfVisit()));
+                        addBodyCell(table, passLabel(log.getVisitorPass()));
+                        addBodyCell(table, log.getActiveStart() != null ? log.getActiveStart().toString() : "-");
+                        addBodyCell(table, log.getActiveEnd() != null ? log.getActiveEnd().toString() : "-");
+                        addBodyCell(table, locationOf(log.getFirstEntryID(), entryStations));
+                        addBodyCell(table, locationOf(log.getLatestEntryID(), entryStations));
+                        progress.rowsDone(1);
                     }
-
-                    String firstLocation = "N/A";
-                    String lastLocation = "N/A";
-
-                    List<VisitorLogEntry> entriesForLog = log.getVisitorLogEntries();
-                    if (entriesForLog != null && !entriesForLog.isEmpty()) {
-                        List<VisitorLogEntry> sorted = new ArrayList<>(entriesForLog);
-                        sorted.sort(Comparator.comparing(VisitorLogEntry::getTimestamp));
-                        VisitorLogEntry first = sorted.get(0);
-                        VisitorLogEntry last = sorted.get(sorted.size() - 1);
-
-                        if (first.getStation() != null && first.getStation().getName() != null) {
-                            firstLocation = first.getStation().getName();
-                        }
-                        if (last.getStation() != null && last.getStation().getName() != null) {
-                            lastLocation = last.getStation().getName();
-                        }
-                    }
-
-                    addBodyCell(table, log.getVisitorLogID() != null ? log.getVisitorLogID().toString() : "-");
-                    addBodyCell(table, log.getVisitor() != null && log.getVisitor().getVisitorID() != null
-                            ? log.getVisitor().getVisitorID().toString()
-                            : "-");
-                    addBodyCell(table, nz(log.getPurposeOfVisit()));
-                    addBodyCell(table, passLabel);
-                    addBodyCell(table, log.getActiveStart() != null ? log.getActiveStart().toString() : "-");
-                    addBodyCell(table, log.getActiveEnd() != null ? log.getActiveEnd().toString() : "-");
-                    addBodyCell(table, firstLocation);
-                    addBodyCell(table, lastLocation);
+                    doc.add(table);
                 }
 
+                table.setComplete(true);
                 doc.add(table);
             }
 
             // Entries table
-            if (entries != null && !entries.isEmpty()) {
+            if (entryCount > 0) {
                 Paragraph header = new Paragraph("Visitor Log Entries", sectionFont);
                 header.setSpacingBefore(12f);
                 header.setSpacingAfter(4f);
                 doc.add(header);
 
-                PdfPTable table = new PdfPTable(6);
-                table.setWidthPercentage(100f);
-                table.setWidths(new float[]{6f, 8f, 20f, 18f, 12f, 18f});
-
-                addHeaderCell(table, "Entry ID");
-                addHeaderCell(table, "Log ID");
-                addHeaderCell(table, "Station");
-                addHeaderCell(table, "Guard");
-                addHeaderCell(table, "Pass");
-                addHeaderCell(table, "Timestamp");
-
-                for (VisitorLogEntry e : entries) {
-                    if (e == null) continue;
-
-                    VisitorLog log = e.getVisitorLog();
-
-                    String passLabel = "-";
-                    if (log != null && log.getVisitorPass() != null) {
-                        if (log.getVisitorPass().getDisplayCode() != null &&
-                                !log.getVisitorPass().getDisplayCode().trim().isEmpty()) {
-                            passLabel = log.getVisitorPass().getDisplayCode();
-                        } else if (log.getVisitorPass().getPassNumber() != null &&
-                                !log.getVisitorPass().getPassNumber().trim().isEmpty()) {
-                            passLabel = log.getVisitorPass().getPassNumber();
-                        } else if (log.getVisitorPass().getPassID() != null) {
-                            passLabel = "P-" + log.getVisitorPass().getPassID();
-                        }
+                PdfPTable table = newStreamingTable(
+                        new float[]{6f, 8f, 20f, 18f, 12f, 18f},
+                        "Entry ID", "Log ID", "Station", "Guard", "Pass", "Timestamp");
+
+                for (List<VisitorLogEntry> page = entries.nextPage(); !page.isEmpty(); page = entries.nextPage()) {
+                    for (VisitorLogEntry e : page) {
+                        VisitorLog log = e.getVisitorLog();
+
+                        addBodyCell(table, e.getVisitorLogEntryID() != null ? e.getVisitorLogEntryID().toString() : "-");
+                        addBodyCell(table, log != null && log.getVisitorLogID() != null
+                                ? log.getVisitorLogID().toString()
+                                : "-");
+                        addBodyCell(table,
+                                e.getStation() != null && e.getStation().getName() != null
+                                        ? e.getStation().getName()
+                                        : "Unknown station"
+                        );
+                        addBodyCell(table,
+                                e.getUserAccount() != null && e.getUserAccount().getUsername() != null
+                                        ? e.getUserAccount().getUsername()
+                                        : "System"
+                        );
+                        addBodyCell(table, passLabel(log != null ? log.getVisitorPass() : null));
+                        addBodyCell(table, e.getTimestamp() != null ? e.getTimestamp().toString() : "-");
+                        progress.rowsDone(1);
                     }
-
-                    addBodyCell(table, e.getVisitorLogEntryID() != null ? e.getVisitorLogEntryID().toString() : "-");
-                    addBodyCell(table, log != null && log.getVisitorLogID() != null
-                            ? log.getVisitorLogID().toString()
-                            : "-");
-                    addBodyCell(table,
-                            e.getStation() != null && e.getStation().getName() != null
-                                    ? e.getStation().getName()
-                                    : "Unknown station"
-                    );
-                    addBodyCell(table,
-                            e.getUserAccount() != null && e.getUserAccount().getUsername() != null
-                                    ? e.getUserAccount().getUsername()
-                                    : "System"
-                    );
-                    addBodyCell(table, passLabel);
-                    addBodyCell(table, e.getTimestamp() != null ? e.getTimestamp().toString() : "-");
+                    doc.add(table);
                 }
 
+                table.setComplete(true);
                 doc.add(table);
             }
 
@@ -431,8 +681,6 @@ public class ExportService {
                 doc.close();
             }
         }
-
-        return baos.toByteArray();
     }
 
     // ---------- Visitors selection PDF (Visitors page export, with stats) ----------
@@ -442,10 +690,83 @@ public class ExportService {
             List<VisitorLog> logs,
             List<VisitorLogEntry> entries
     ) throws DocumentException {
+        SelectionStats stats = new SelectionStats();
+        if (visitors != null) {
+            for (Visitor v : visitors) {
+                if (v == null) continue;
+                stats.add(v.getVisitorType(), 1, v.getCreatedAt(), v.getCreatedAt());
+            }
+        }
 
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        renderVisitorsSelection(baos, stats, pagesOf(visitors), ExportProgress.NONE);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Writes the selection PDF for the given visitor ids straight to out. The
+     * summary comes from an aggregate query; the table is filled page by page.
+     */
+    public void exportVisitorsSelectionPdf(
+            Collection<Long> visitorIds,
+            OutputStream out,
+            ExportProgress progress
+    ) throws DocumentException {
+        List<Long> ids = distinctIds(visitorIds);
+
+        SelectionStats stats = new SelectionStats();
+        for (int from = 0; from < ids.size(); from += ID_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + ID_BATCH_SIZE, ids.size()));
+            for (Object[] row : visitorRepository.summarizeTypesByIds(batch)) {
+                stats.add((String) row[0], ((Number) row[1]).longValue(), (Date) row[2], (Date) row[3]);
+            }
+        }
+
+        progress.start(stats.totalVisitors);
+        renderVisitorsSelection(out, stats, selectedVisitorPages(ids), progress);
+    }
+
+    /**
+     * Header numbers for the selection PDF, accumulated per visitor or per
+     * (type, count, min createdAt, max createdAt) group.
+     */
+    private static class SelectionStats {
+        private long totalVisitors;
+        private final Set<String> types = new TreeSet<>();
+        private LocalDate earliestRegistered;
+        private LocalDate latestRegistered;
+
+        void add(String type, long count, Date firstCreated, Date lastCreated) {
+            totalVisitors += count;
+
+            if (type != null && !type.trim().isEmpty()) {
+                types.add(type);
+            }
+            if (firstCreated != null) {
+                LocalDate first = firstCreated.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+                if (earliestRegistered == null || first.isBefore(earliestRegistered)) {
+                    earliestRegistered = first;
+                }
+            }
+            if (lastCreated != null) {
+                LocalDate last = lastCreated.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+                if (latestRegistered == null || last.isAfter(latestRegistered)) {
+                    latestRegistered = last;
+                }
+            }
+        }
+    }
+
+    // Only the visitors table is rendered; logs/entries are not part of this PDF.
+    private void renderVisitorsSelection(
+            OutputStream out,
+            SelectionStats selection,
+            PageSource<Visitor> visitors,
+            ExportProgress progress
+    ) throws DocumentException {
+
         Document doc = new Document(PageSize.A4.rotate(), 36, 36, 48, 36);
-        PdfWriter.getInstance(doc, baos);
+        PdfWriter.getInstance(doc, out);
 
         try {
             doc.open();
@@ -460,38 +781,6 @@ public class ExportService {
 
             String generatedAt = Timestamp.from(Instant.now()).toString();
 
-            // Compute simple stats for "Statistics-like" header
-            int totalVisitors = safeSize(visitors);
-
-            Set<String> typeSet = new HashSet<>();
-            LocalDate earliestRegistered = null;
-            LocalDate latestRegistered = null;
-
-            if (visitors != null) {
-                for (Visitor v : visitors) {
-                    if (v == null) continue;
-
-                    if (v.getVisitorType() != null && !v.getVisitorType().trim().isEmpty()) {
-                        typeSet.add(v.getVisitorType());
-                    }
-
-                    if (v.getCreatedAt() != null) {
-                        LocalDate createdDate = v.getCreatedAt().toInstant()
-                                .atZone(ZoneId.systemDefault())
-                                .toLocalDate();
-
-                        if (earliestRegistered == null || createdDate.isBefore(earliestRegistered)) {
-                            earliestRegistered = createdDate;
-                        }
-                        if (latestRegistered == null || createdDate.isAfter(latestRegistered)) {
-                            latestRegistered = createdDate;
-                        }
-                    }
-                }
-            }
-
-            int uniqueTypes = typeSet.size();
-
             Paragraph meta = new Paragraph(
                     "Generated at: " + generatedAt,
                     smallFont
@@ -505,57 +794,29 @@ public class ExportService {
             doc.add(statsHeader);
 
             Paragraph stats = new Paragraph("", smallFont);
-            stats.add("• Total visitors in this export: " + totalVisitors + "\n");
-            stats.add("• Distinct visitor types: " + uniqueTypes + "\n");
-
-            if (!typeSet.isEmpty()) {
-                String typesJoined = typeSet.stream()
-                        .sorted()
-                        .collect(Collectors.joining(", "));
-                stats.add("• Visitor types present: " + typesJoined + "\n");
+            stats.add("• Total visitors in this export: " + selection.totalVisitors + "\n");
+            stats.add("• Distinct visitor types: " + selection.types.size() + "\n");
+
+            if (!selection.types.isEmpty()) {
+                stats.add("• Visitor types present: " + String.join(", ", selection.types) + "\n");
             }
 
             stats.add("• First registration date: " +
-                    (earliestRegistered != null ? earliestRegistered.toString() : "N/A") + "\n");
+                    (selection.earliestRegistered != null ? selection.earliestRegistered.toString() : "N/A") + "\n");
             stats.add("• Latest registration date: " +
-                    (latestRegistered != null ? latestRegistered.toString() : "N/A") + "\n");
+                    (selection.latestRegistered != null ? selection.latestRegistered.toString() : "N/A") + "\n");
 
             stats.setSpacingAfter(10f);
             doc.add(stats);
 
             // Visitors table (similar to archive report visitors section)
-            if (visitors != null && !visitors.isEmpty()) {
+            if (selection.totalVisitors > 0) {
                 Paragraph header = new Paragraph("Visitors", sectionFont);
                 header.setSpacingBefore(4f);
                 header.setSpacingAfter(4f);
                 doc.add(header);
 
-                PdfPTable table = new PdfPTable(8);
-                table.setWidthPercentage(100f);
-                table.setWidths(new float[]{8f, 20f, 16f, 10f, 12f, 12f, 10f, 12f});
-
-                addHeaderCell(table, "ID");
-                addHeaderCell(table, "Full Name");
-                addHeaderCell(table, "Visitor Type");
-                addHeaderCell(table, "Gender");
-                addHeaderCell(table, "ID Type");
-                addHeaderCell(table, "ID Number");
-                addHeaderCell(table, "Birthdate");
-                addHeaderCell(table, "Registered At");
-
-                for (Visitor v : visitors) {
-                    if (v == null) continue;
-                    addBodyCell(table, v.getVisitorID() != null ? v.getVisitorID().toString() : "-");
-                    addBodyCell(table, nz(v.getVisitorName()));
-                    addBodyCell(table, nz(v.getVisitorType()));
-                    addBodyCell(table, nz(v.getGender()));
-                    addBodyCell(table, nz(v.getIdType()));
-                    addBodyCell(table, nz(v.getIdNumber()));
-                    addBodyCell(table, v.getDateOfBirth() != null ? v.getDateOfBirth().toString() : "-");
-                    addBodyCell(table, v.getCreatedAt() != null ? v.getCreatedAt().toString() : "-");
-                }
-
-                doc.add(table);
+                addVisitorsTable(doc, visitors, progress);
             } else {
                 Paragraph p = new Paragraph("No visitors in this export.", smallFont);
                 p.setSpacingAfter(8f);
@@ -571,12 +832,51 @@ public class ExportService {
                 doc.close();
             }
         }
-
-        return baos.toByteArray();
     }
 
     // ---------- PDF helpers ----------
 
+    private void addVisitorsTable(Document doc, PageSource<Visitor> visitors, ExportProgress progress)
+            throws DocumentException {
+        PdfPTable table = newStreamingTable(
+                new float[]{8f, 20f, 16f, 10f, 12f, 12f, 10f, 12f},
+                "ID", "Full Name", "Visitor Type", "Gender", "ID Type", "ID Number", "Birthdate", "Registered At");
+
+        for (List<Visitor> page = visitors.nextPage(); !page.isEmpty(); page = visitors.nextPage()) {
+            for (Visitor v : page) {
+                addBodyCell(table, v.getVisitorID() != null ? v.getVisitorID().toString() : "-");
+                addBodyCell(table, nz(v.getVisitorName()));
+                addBodyCell(table, nz(v.getVisitorType()));
+                addBodyCell(table, nz(v.getGender()));
+                addBodyCell(table, nz(v.getIdType()));
+                addBodyCell(table, nz(v.getIdNumber()));
+                addBodyCell(table, v.getDateOfBirth() != null ? v.getDateOfBirth().toString() : "-");
+                addBodyCell(table, v.getCreatedAt() != null ? v.getCreatedAt().toString() : "-");
+                progress.rowsDone(1);
+            }
+            doc.add(table);
+        }
+
+        table.setComplete(true);
+        doc.add(table);
+    }
+
+    /**
+     * Full-width table with a repeating header row, left incomplete so it can be
+     * added to the document in fragments. Call setComplete(true) before the last add.
+     */
+    private PdfPTable newStreamingTable(float[] widths, String... headers) throws DocumentException {
+        PdfPTable table = new PdfPTable(widths.length);
+        table.setWidthPercentage(100f);
+        table.setWidths(widths);
+        for (String h : headers) {
+            addHeaderCell(table, h);
+        }
+        table.setHeaderRows(1);
+        table.setComplete(false);
+        return table;
+    }
+
     private void addHeaderCell(PdfPTable table, String text) {
         Font font = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 9);
         PdfPCell cell = new PdfPCell(new Phrase(text, font));
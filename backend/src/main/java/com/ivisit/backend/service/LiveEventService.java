@@ -0,0 +1,223 @@
+package com.ivisit.backend.service;
+
+import com.ivisit.backend.dto.VisitorLogDTO;
+import com.ivisit.backend.dto.VisitorLogEntryDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fans committed log activity out to guard consoles over Server-Sent Events,
+ * so one write reaches every open dashboard instead of each one polling
+ * /entries and /active.
+ *
+ * Events: "entry" (VisitorLogEntryDTO), "checkin" (VisitorLogDTO),
+ * "checkout" ({visitorLogId, visitorId, stationId}) and "resync".
+ *
+ * Each client gets a bounded buffer drained by a small shared sender pool, so a slow
+ * console never blocks the request that produced the event. When a buffer overflows
+ * the oldest events are dropped and the client receives "resync", meaning it should
+ * re-fetch through the REST endpoints.
+ */
+@Service
+public class LiveEventService {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveEventService.class);
+
+    private static final int MAX_SUBSCRIBERS = 200;
+    private static final int BUFFER_SIZE = 256;
+    private static final long EMITTER_TIMEOUT_MS = 30 * 60 * 1000L; // clients reconnect after this
+    private static final int SENDER_THREADS = 4;
+
+    private static final class LiveEvent {
+        final String name;
+        final Object data;
+        final Set<Long> stationIds; // empty = relevant to every station
+
+        LiveEvent(String name, Object data, Set<Long> stationIds) {
+            this.name = name;
+            this.data = data;
+            this.stationIds = stationIds;
+        }
+    }
+
+    private final class Subscriber {
+        final SseEmitter emitter;
+        final Long stationId; // null = all stations
+        final BlockingQueue<LiveEvent> buffer = new ArrayBlockingQueue<>(BUFFER_SIZE);
+        final AtomicBoolean overflowed = new AtomicBoolean(false);
+        final AtomicBoolean draining = new AtomicBoolean(false);
+
+        Subscriber(SseEmitter emitter, Long stationId) {
+            this.emitter = emitter;
+            this.stationId = stationId;
+        }
+
+        boolean wants(LiveEvent event) {
+            return stationId == null
+                    || event.stationIds.isEmpty()
+                    || event.stationIds.contains(stationId);
+        }
+
+        void offer(LiveEvent event) {
+            while (!buffer.offer(event)) {
+                // full: drop the oldest and tell the client to resync once it catches up
+                buffer.poll();
+                overflowed.set(true);
+            }
+            scheduleDrain();
+        }
+
+        void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    draining.set(false);
+                }
+            }
+        }
+
+        void drain() {
+            try {
+                if (overflowed.getAndSet(false)) {
+                    emitter.send(SseEmitter.event().name("resync").data("buffer overflow"));
+                }
+                LiveEvent event;
+                while ((event = buffer.poll()) != null) {
+                    SseEmitter.SseEventBuilder builder = event.name != null
+                            ? SseEmitter.event().name(event.name).data(event.data)
+                            : SseEmitter.event().comment(String.valueOf(event.data));
+                    emitter.send(builder);
+                }
+            } catch (IOException | IllegalStateException e) {
+                // client went away; completing triggers onCompletion -> unsubscribe
+                unsubscribe(this);
+                emitter.completeWithError(e);
+                return;
+            } finally {
+                draining.set(false);
+            }
+
+            // an event may have arrived between the last poll and clearing the flag
+            if (!buffer.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+    }
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    // one pending drain per subscriber at most, so the queue is bounded by MAX_SUBSCRIBERS
+    private final ExecutorService sender = new ThreadPoolExecutor(
+            SENDER_THREADS, SENDER_THREADS,
+            0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MAX_SUBSCRIBERS),
+            r -> {
+                Thread t = new Thread(r, "live-events-sender");
+                t.setDaemon(true);
+                return t;
+            }
+    );
+
+    /**
+     * Opens a stream for one console. stationId == null receives every event.
+     */
+    public SseEmitter subscribe(Long stationId) {
+        if (subscribers.size() >= MAX_SUBSCRIBERS) {
+            throw new RuntimeException("Too many live connections; fall back to polling.");
+        }
+
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        Subscriber subscriber = new Subscriber(emitter, stationId);
+
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+
+        subscribers.add(subscriber);
+        subscriber.offer(new LiveEvent(null, "connected", Collections.emptySet()));
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    // ------------------------
+    // Publishing (after commit)
+    // ------------------------
+
+    public void publishEntry(VisitorLogEntryDTO entry, Long stationId) {
+        publish(new LiveEvent("entry", entry, stationSet(stationId)));
+    }
+
+    public void publishCheckIn(VisitorLogDTO log, Collection<Long> relevantStationIds) {
+        publish(new LiveEvent("checkin", log, stationSet(relevantStationIds)));
+    }
+
+    public void publishCheckOut(Long visitorLogId, Long visitorId, Long stationId, Collection<Long> relevantStationIds) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("visitorLogId", visitorLogId);
+        data.put("visitorId", visitorId);
+        data.put("stationId", stationId);
+        publish(new LiveEvent("checkout", data, stationSet(relevantStationIds)));
+    }
+
+    /**
+     * Keeps idle connections open through proxies and weeds out dead clients.
+     */
+    @Scheduled(fixedRate = 25_000)
+    public void heartbeat() {
+        LiveEvent ping = new LiveEvent(null, "ping", Collections.emptySet());
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(ping);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        sender.shutdownNow();
+    }
+
+    private void publish(LiveEvent event) {
+        TransactionHooks.afterCommit(() -> {
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.wants(event)) {
+                    subscriber.offer(event);
+                }
+            }
+        });
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            log.debug("Live event subscriber removed (station {}), {} remaining",
+                    subscriber.stationId, subscribers.size());
+        }
+    }
+
+    private Set<Long> stationSet(Long stationId) {
+        return stationId != null ? Collections.singleton(stationId) : Collections.emptySet();
+    }
+
+    private Set<Long> stationSet(Collection<Long> stationIds) {
+        if (stationIds == null) {
+            return Collections.emptySet();
+        }
+        Set<Long> set = new HashSet<>(stationIds);
+        set.remove(null);
+        return set;
+    }
+}
@@ -0,0 +1,309 @@
+package com.ivisit.backend.service;
+
+import com.ivisit.backend.dto.VisitorLogDTO;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory "currently on site" index: one entry per active VisitorLog (activeEnd == null),
+ * reachable by logId, visitorId and passId.
+ *
+ * Loaded once at startup by VisitorLogService and then kept current by the services that
+ * open, close or touch active logs. Changes made inside a transaction are applied after
+ * commit, so a rolled-back check-in never shows up here. Changes that commit while the
+ * startup snapshot is being read are held back and replayed on top of it, so a
+ * check-in racing the load is not lost.
+ */
+@Service
+public class OccupancyIndexService {
+
+    /**
+     * Snapshot of one active visit. Immutable; updates replace the whole object.
+     */
+    public static final class ActiveVisit {
+        private final Long visitorLogId;
+        private final Long visitorId;
+        private final Long passId;
+        private final Long latestStationId;
+        private final String latestStationName;
+        private final VisitorLogDTO dto;
+
+        public ActiveVisit(Long visitorLogId, Long visitorId, Long passId,
+                           Long latestStationId, String latestStationName, VisitorLogDTO dto) {
+            this.visitorLogId = visitorLogId;
+            this.visitorId = visitorId;
+            this.passId = passId;
+            this.latestStationId = latestStationId;
+            this.latestStationName = latestStationName;
+            this.dto = dto;
+        }
+
+        public Long getVisitorLogId() { return visitorLogId; }
+        public Long getVisitorId() { return visitorId; }
+        public Long getPassId() { return passId; }
+        public Long getLatestStationId() { return latestStationId; }
+        public String getLatestStationName() { return latestStationName; }
+        public VisitorLogDTO getDto() { return dto; }
+    }
+
+    private final Map<Long, ActiveVisit> byLogId = new ConcurrentHashMap<>();
+    private final Map<Long, Long> logIdByVisitorId = new ConcurrentHashMap<>();
+    private final Map<Long, Long> logIdByPassId = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded = false;
+
+    // non-null while a load is running: changes committed meanwhile, in commit order (guarded by this)
+    private List<Runnable> heldDuringLoad;
+
+    /**
+     * False until the startup load finished; callers should fall back to the database.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // ------------------------
+    // Reads (lock-free)
+    // ------------------------
+
+    public boolean hasActiveLogForVisitor(Long visitorId) {
+        return visitorId != null && logIdByVisitorId.containsKey(visitorId);
+    }
+
+    public Long findActiveLogIdByVisitor(Long visitorId) {
+        return visitorId != null ? logIdByVisitorId.get(visitorId) : null;
+    }
+
+    public Long findActiveLogIdByPass(Long passId) {
+        return passId != null ? logIdByPassId.get(passId) : null;
+    }
+
+    public ActiveVisit getActiveVisit(Long visitorLogId) {
+        return visitorLogId != null ? byLogId.get(visitorLogId) : null;
+    }
+
+    /**
+     * Active logs as LogBook DTOs, ordered by visitorLogID like the database query.
+     */
+    public List<VisitorLogDTO> getActiveLogs() {
+        List<ActiveVisit> visits = new ArrayList<>(byLogId.values());
+        visits.sort(Comparator.comparing(ActiveVisit::getVisitorLogId));
+
+        List<VisitorLogDTO> dtos = new ArrayList<>(visits.size());
+        for (ActiveVisit visit : visits) {
+            dtos.add(visit.getDto());
+        }
+        return dtos;
+    }
+
+    /**
+     * Number of visitors currently on site per station (by the station of their latest entry).
+     * Visitors with no entry yet are counted under a null stationId.
+     */
+    public List<Map<String, Object>> getStationOccupancy() {
+        Map<Long, Integer> counts = new HashMap<>();
+        Map<Long, String> names = new HashMap<>();
+        for (ActiveVisit visit : byLogId.values()) {
+            counts.merge(visit.getLatestStationId(), 1, Integer::sum);
+            if (visit.getLatestStationName() != null) {
+                names.put(visit.getLatestStationId(), visit.getLatestStationName());
+            }
+        }
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Map.Entry<Long, Integer> e : counts.entrySet()) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("stationId", e.getKey());
+            row.put("stationName", e.getKey() != null ? names.get(e.getKey()) : "No entry yet");
+            row.put("count", e.getValue());
+            result.add(row);
+        }
+        return result;
+    }
+
+    public int getActiveCount() {
+        return byLogId.size();
+    }
+
+    // ------------------------
+    // Writes (applied after commit)
+    // ------------------------
+
+    /**
+     * Starts holding back committed changes; call before reading the snapshot for reload().
+     */
+    public synchronized void beginLoad() {
+        heldDuringLoad = new ArrayList<>();
+    }
+
+    /**
+     * Gives up a load whose snapshot could not be read. The index stays unloaded.
+     */
+    public synchronized void abortLoad() {
+        heldDuringLoad = null;
+    }
+
+    /**
+     * Replaces the whole index with a snapshot, then replays the changes that
+     * committed since beginLoad(). Replaying one the snapshot already saw is harmless:
+     * each change sets state rather than adding to it.
+     */
+    public synchronized void reload(Collection<ActiveVisit> visits) {
+        byLogId.clear();
+        logIdByVisitorId.clear();
+        logIdByPassId.clear();
+        for (ActiveVisit visit : visits) {
+            put(visit);
+        }
+        if (heldDuringLoad != null) {
+            for (Runnable change : heldDuringLoad) {
+                change.run();
+            }
+            heldDuringLoad = null;
+        }
+        loaded = true;
+    }
+
+    /**
+     * Adds or replaces an active log (check-in, pass granted/revoked).
+     */
+    public void upsert(ActiveVisit visit) {
+        afterCommit(() -> {
+            removeKeys(byLogId.get(visit.getVisitorLogId()));
+            put(visit);
+        });
+    }
+
+    /**
+     * Drops a log that was ended (check-out, ghost-log cleanup).
+     */
+    public void remove(Long visitorLogId) {
+        afterCommit(() -> removeKeys(byLogId.remove(visitorLogId)));
+    }
+
+    /**
+     * Unlinks a deleted pass from the active visit still pointing at it, if any.
+     */
+    public void removePass(Long passId) {
+        afterCommit(() -> {
+            Long logId = logIdByPassId.remove(passId);
+            ActiveVisit current = logId != null ? byLogId.get(logId) : null;
+            if (current == null) {
+                return;
+            }
+            VisitorLogDTO dto = copyOf(current.getDto());
+            dto.setPassNo(null);
+            byLogId.put(logId, new ActiveVisit(current.getVisitorLogId(), current.getVisitorId(), null,
+                    current.getLatestStationId(), current.getLatestStationName(), dto));
+        });
+    }
+
+    /**
+     * Stops counting visits under a deleted station; they show up as having no entry yet.
+     */
+    public void removeStation(Long stationId) {
+        afterCommit(() -> {
+            for (ActiveVisit current : new ArrayList<>(byLogId.values())) {
+                if (Objects.equals(stationId, current.getLatestStationId())) {
+                    byLogId.put(current.getVisitorLogId(), new ActiveVisit(current.getVisitorLogId(),
+                            current.getVisitorId(), current.getPassId(), null, null, current.getDto()));
+                }
+            }
+        });
+    }
+
+    /**
+     * Moves an active visit to the station of a newly recorded entry.
+     * Unknown (not active) logs are ignored.
+     */
+    public void recordEntry(Long visitorLogId, Long stationId, String stationName,
+                            String guardName, Timestamp timestamp) {
+        afterCommit(() -> {
+            ActiveVisit current = byLogId.get(visitorLogId);
+            if (current == null) {
+                return;
+            }
+
+            VisitorLogDTO dto = copyOf(current.getDto());
+            String location = stationName != null ? stationName : "N/A";
+            if ("N/A".equals(dto.getFirstLocation())) {
+                dto.setFirstLocation(location);
+            }
+            dto.setLocation(location);
+            dto.setLoggedBy(guardName != null ? guardName : "System");
+            if (timestamp != null) {
+                dto.setDate(timestamp.toLocalDateTime().toLocalDate().toString());
+                dto.setTime(timestamp.toLocalDateTime().toLocalTime().toString());
+            }
+
+            byLogId.put(visitorLogId, new ActiveVisit(
+                    current.getVisitorLogId(),
+                    current.getVisitorId(),
+                    current.getPassId(),
+                    stationId,
+                    stationName,
+                    dto
+            ));
+        });
+    }
+
+    /**
+     * Applies a change once the surrounding transaction commits, or holds it for
+     * replay if a load is running.
+     */
+    private void afterCommit(Runnable change) {
+        TransactionHooks.afterCommit(() -> {
+            synchronized (this) {
+                if (heldDuringLoad != null) {
+                    heldDuringLoad.add(change);
+                } else {
+                    change.run();
+                }
+            }
+        });
+    }
+
+    private void put(ActiveVisit visit) {
+        byLogId.put(visit.getVisitorLogId(), visit);
+        if (visit.getVisitorId() != null) {
+            logIdByVisitorId.put(visit.getVisitorId(), visit.getVisitorLogId());
+        }
+        if (visit.getPassId() != null) {
+            logIdByPassId.put(visit.getPassId(), visit.getVisitorLogId());
+        }
+    }
+
+    private void removeKeys(ActiveVisit visit) {
+        if (visit == null) {
+            return;
+        }
+        if (visit.getVisitorId() != null) {
+            logIdByVisitorId.remove(visit.getVisitorId(), visit.getVisitorLogId());
+        }
+        if (visit.getPassId() != null) {
+            logIdByPassId.remove(visit.getPassId(), visit.getVisitorLogId());
+        }
+    }
+
+    private VisitorLogDTO copyOf(VisitorLogDTO source) {
+        VisitorLogDTO dto = new VisitorLogDTO();
+        dto.setVisitorLogID(source.getVisitorLogID());
+        dto.setVisitorID(source.getVisitorID());
+        dto.setFullName(source.getFullName());
+        dto.setIdType(source.getIdType());
+        dto.setPassNo(source.getPassNo());
+        dto.setLocation(source.getLocation());
+        dto.setFirstLocation(source.getFirstLocation());
+        dto.setPurposeOfVisit(source.getPurposeOfVisit());
+        dto.setLoggedBy(source.getLoggedBy());
+        dto.setDate(source.getDate());
+        dto.setTime(source.getTime());
+        dto.setAllowedStations(source.getAllowedStations());
+        dto.setArchived(source.getArchived());
+        dto.setArchivedAt(source.getArchivedAt());
+        return dto;
+    }
+}
@@ -0,0 +1,253 @@
+package com.ivisit.backend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded LRU cache of card UID -> pass / active log / allowed stations, so a gate
+ * tap can be answered without the findByUid + active-log queries.
+ *
+ * Entries are dropped when the pass changes (status, check-in/out, incidents) and
+ * expire after a TTL as a safety net. Unknown UIDs are cached briefly too, so a bad
+ * card held against a reader doesn't hit the database on every read.
+ */
+@Service
+public class PassLookupCacheService {
+
+    /**
+     * Snapshot of everything a gate needs to judge a tap. passId == null means the
+     * UID is not registered.
+     */
+    public static final class PassLookup {
+        private final Long passId;
+        private final String passNo;
+        private final String status;
+        private final Long activeLogId;
+        private final Long visitorId;
+        private final String visitorName;
+        private final String visitorType;
+        private final Map<Long, String> allowedStations; // stationId -> name, in log order
+
+        public PassLookup(Long passId, String passNo, String status,
+                          Long activeLogId, Long visitorId, String visitorName, String visitorType,
+                          Map<Long, String> allowedStations) {
+            this.passId = passId;
+            this.passNo = passNo;
+            this.status = status;
+            this.activeLogId = activeLogId;
+            this.visitorId = visitorId;
+            this.visitorName = visitorName;
+            this.visitorType = visitorType;
+            this.allowedStations = allowedStations != null
+                    ? Collections.unmodifiableMap(new LinkedHashMap<>(allowedStations))
+                    : Collections.<Long, String>emptyMap();
+        }
+
+        public static PassLookup unknown() {
+            return new PassLookup(null, null, null, null, null, null, null, null);
+        }
+
+        public Long getPassId() { return passId; }
+        public String getPassNo() { return passNo; }
+        public String getStatus() { return status; }
+        public Long getActiveLogId() { return activeLogId; }
+        public Long getVisitorId() { return visitorId; }
+        public String getVisitorName() { return visitorName; }
+        public String getVisitorType() { return visitorType; }
+        public Map<Long, String> getAllowedStations() { return allowedStations; }
+
+        public boolean isKnown() {
+            return passId != null;
+        }
+
+        public boolean isAllowedAt(Long stationId) {
+            return stationId != null && allowedStations.containsKey(stationId);
+        }
+    }
+
+    private static final class CacheEntry {
+        final PassLookup value;
+        final long expiresAt;
+
+        CacheEntry(PassLookup value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+
+    // guarded by this
+    private final LinkedHashMap<String, CacheEntry> byUid;
+    private final Map<Long, Set<String>> uidsByPassId = new HashMap<>(); // visitorPassID and passNumber may both be cached
+
+    // bumped on every invalidation; a load that raced with one is not cached
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public PassLookupCacheService(
+            @Value("${app.rfid.uid-cache.max-entries:4096}") int maxEntries,
+            @Value("${app.rfid.uid-cache.ttl-seconds:300}") long ttlSeconds,
+            @Value("${app.rfid.uid-cache.negative-ttl-seconds:30}") long negativeTtlSeconds
+    ) {
+        this.maxEntries = Math.max(16, maxEntries);
+        this.ttlMillis = ttlSeconds * 1000L;
+        this.negativeTtlMillis = negativeTtlSeconds * 1000L;
+        this.byUid = new LinkedHashMap<String, CacheEntry>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                if (size() > PassLookupCacheService.this.maxEntries) {
+                    unindex(eldest.getKey(), eldest.getValue());
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Cache key for a UID: trimmed but case kept, like VisitorPassService.findByUid,
+     * which matches visitorPassID exactly. Folding case here would let one spelling
+     * answer for another that the database would not match.
+     */
+    public static String normalizeUid(String uid) {
+        return uid == null ? "" : uid.trim();
+    }
+
+    /**
+     * Returns the cached lookup for this UID, calling loader on a miss.
+     * The loader runs outside the cache lock.
+     */
+    public PassLookup lookup(String uid, Function<String, PassLookup> loader) {
+        String key = normalizeUid(uid);
+        long now = System.currentTimeMillis();
+        long loadGeneration;
+
+        synchronized (this) {
+            CacheEntry entry = byUid.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                hits.incrementAndGet();
+                return entry.value;
+            }
+            if (entry != null) {
+                byUid.remove(key);
+                unindex(key, entry);
+            }
+            loadGeneration = generation;
+        }
+
+        misses.incrementAndGet();
+        PassLookup loaded = loader.apply(uid);
+        if (loaded == null) {
+            loaded = PassLookup.unknown();
+        }
+
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                long ttl = loaded.isKnown() ? ttlMillis : negativeTtlMillis;
+                CacheEntry previous = byUid.put(key, new CacheEntry(loaded, now + ttl));
+                if (previous != null) {
+                    unindex(key, previous);
+                }
+                if (loaded.isKnown()) {
+                    uidsByPassId.computeIfAbsent(loaded.getPassId(), id -> new HashSet<>()).add(key);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Drops whatever is cached for this pass once the surrounding transaction commits.
+     */
+    public void invalidatePass(Long passId) {
+        if (passId == null) {
+            return;
+        }
+        bumpGeneration();
+        TransactionHooks.afterCommit(() -> {
+            synchronized (this) {
+                generation++;
+                Set<String> keys = uidsByPassId.remove(passId);
+                if (keys != null) {
+                    for (String key : keys) {
+                        byUid.remove(key);
+                    }
+                }
+            }
+            invalidations.incrementAndGet();
+        });
+    }
+
+    /**
+     * Drops a UID in every spelling, e.g. when a new pass is registered for a card that
+     * was cached as unknown (passNumber matches regardless of case).
+     */
+    public void invalidateUid(String uid) {
+        String key = normalizeUid(uid);
+        bumpGeneration();
+        TransactionHooks.afterCommit(() -> {
+            synchronized (this) {
+                generation++;
+                Iterator<Map.Entry<String, CacheEntry>> it = byUid.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<String, CacheEntry> entry = it.next();
+                    if (entry.getKey().equalsIgnoreCase(key)) {
+                        it.remove();
+                        unindex(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            invalidations.incrementAndGet();
+        });
+    }
+
+    public synchronized void clear() {
+        generation++;
+        byUid.clear();
+        uidsByPassId.clear();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("size", byUid.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    // Loads that start inside the writing transaction must not be cached either.
+    private synchronized void bumpGeneration() {
+        generation++;
+    }
+
+    private void unindex(String key, CacheEntry entry) {
+        Long passId = entry.value.getPassId();
+        if (passId == null) {
+            return;
+        }
+        Set<String> keys = uidsByPassId.get(passId);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                uidsByPassId.remove(passId);
+            }
+        }
+    }
+}
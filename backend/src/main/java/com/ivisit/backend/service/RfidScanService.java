@@ -0,0 +1,355 @@
+package com.ivisit.backend.service;
+
+import com.ivisit.backend.dto.RfidScanRequest;
+import com.ivisit.backend.dto.RfidScanResultDTO;
+import com.ivisit.backend.model.*;
+import com.ivisit.backend.repository.RfidScanReceiptRepository;
+import com.ivisit.backend.repository.StationRepository;
+import com.ivisit.backend.repository.UserAccountRepository;
+import com.ivisit.backend.repository.VisitorLogRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Turns a helper RFID tap into a log entry (or a check-out at an exit gate).
+ * The UID -> pass -> active log resolution is served from PassLookupCacheService,
+ * so repeat taps skip the pass and active-log queries.
+ */
+@Service
+public class RfidScanService {
+
+    private static final int MAX_SCAN_ID_LENGTH = 64;
+    // column length of rfid_scan_receipt.uid / lane
+    private static final int MAX_UID_LENGTH = 255;
+
+    /**
+     * The scan request itself is unusable (unknown station, no guard, malformed id);
+     * resending it unchanged gets the same answer.
+     */
+    public static class InvalidScanException extends RuntimeException {
+        public InvalidScanException(String message) {
+            super(message);
+        }
+    }
+
+    @Autowired
+    private VisitorPassService visitorPassService;
+
+    @Autowired
+    private VisitorLogService visitorLogService;
+
+    @Autowired
+    private VisitorLogEntryService visitorLogEntryService;
+
+    @Autowired
+    private VisitorLogRepository visitorLogRepository;
+
+    @Autowired
+    private StationRepository stationRepository;
+
+    @Autowired
+    private UserAccountRepository userAccountRepository;
+
+    @Autowired
+    private OccupancyIndexService occupancyIndex;
+
+    @Autowired
+    private PassLookupCacheService passLookupCache;
+
+    @Autowired
+    private RfidScanReceiptRepository receiptRepository;
+
+    @Value("${app.rfid.scanned-at.max-age-hours:24}")
+    private long scannedAtMaxAgeHours;
+
+    @Value("${app.rfid.scanned-at.max-future-seconds:60}")
+    private long scannedAtMaxFutureSeconds;
+
+    /**
+     * Resolves UID -> pass -> active log and records the tap at the scanning station.
+     *
+     * Rejections (unknown card, no active visit, station not allowed) come back as a
+     * verdict rather than an exception so the gate can show them; only bad requests
+     * (unknown station, no guard to attribute the entry to) throw InvalidScanException.
+     *
+     * With a scanId the call is idempotent: a resend returns the stored verdict
+     * (duplicate = true) and writes nothing.
+     */
+    @Transactional
+    public RfidScanResultDTO processScan(RfidScanRequest request) {
+        validateUidAndLane(request);
+        String scanId = normalizeScanId(request.getScanId());
+        if (scanId == null) {
+            return handleScan(request);
+        }
+
+        Optional<RfidScanReceipt> existing = receiptRepository.findByScanId(scanId);
+        if (existing.isPresent()) {
+            return replay(existing.get());
+        }
+
+        // Claim the key before doing any work: a concurrent resend of the same scan
+        // blocks on the unique index and fails instead of writing a second entry.
+        RfidScanReceipt receipt = receiptRepository.saveAndFlush(
+                new RfidScanReceipt(scanId, request.getUid(), null, new Timestamp(System.currentTimeMillis()))
+        );
+
+        RfidScanResultDTO result = handleScan(request);
+        result.setScanId(scanId);
+        result.setDuplicate(false);
+
+        receipt.setStationId(result.getStationId());
+        receipt.setLane(request.getLane());
+        receipt.setAction(result.getAction());
+        receipt.setAllowed(result.getAllowed());
+        receipt.setMessage(result.getMessage());
+        receipt.setPassId(result.getPassId());
+        receipt.setVisitorLogId(result.getVisitorLogId());
+        receipt.setEntryId(result.getEntryId());
+        receiptRepository.save(receipt);
+
+        return result;
+    }
+
+    /**
+     * The stored verdict for a scan that was already processed, if any.
+     */
+    @Transactional(readOnly = true)
+    public Optional<RfidScanResultDTO> findProcessedScan(String scanId) {
+        String normalized = normalizeScanId(scanId);
+        if (normalized == null) {
+            return Optional.empty();
+        }
+        return receiptRepository.findByScanId(normalized).map(this::replay);
+    }
+
+    private RfidScanResultDTO handleScan(RfidScanRequest request) {
+        Station station = resolveStation(request.getStationId());
+
+        RfidScanResultDTO result = new RfidScanResultDTO();
+        result.setStationId(station.getId());
+        result.setStationName(station.getName());
+        result.setAllowed(false);
+
+        PassLookupCacheService.PassLookup lookup = passLookupCache.lookup(request.getUid(), this::loadLookup);
+        if (!lookup.isKnown()) {
+            result.setAction(RfidScanResultDTO.UNKNOWN_PASS);
+            result.setMessage("No pass is registered for this card.");
+            return result;
+        }
+
+        result.setPassId(lookup.getPassId());
+        result.setPassNo(lookup.getPassNo());
+        result.setPassStatus(lookup.getStatus());
+
+        if (lookup.getActiveLogId() == null) {
+            result.setAction(RfidScanResultDTO.NO_ACTIVE_LOG);
+            result.setMessage("This pass is not assigned to a visitor on site.");
+            return result;
+        }
+
+        result.setVisitorLogId(lookup.getActiveLogId());
+        result.setVisitorId(lookup.getVisitorId());
+        result.setVisitorName(lookup.getVisitorName());
+        result.setVisitorType(lookup.getVisitorType());
+        result.setAllowedStations(new ArrayList<>(lookup.getAllowedStations().values()));
+
+        // Leaving is always allowed, even through a gate the visitor had no access to.
+        boolean exit = "OUT".equalsIgnoreCase(trimToEmpty(request.getDirection()));
+        if (!exit && !lookup.isAllowedAt(station.getId())) {
+            result.setAction(RfidScanResultDTO.DENIED);
+            result.setMessage("Visitor is not allowed at " + station.getName() + ".");
+            return result;
+        }
+
+        VisitorLog log = visitorLogRepository.findById(lookup.getActiveLogId()).orElse(null);
+        if (log == null || log.getActiveEnd() != null) {
+            // cache raced with a check-out that hasn't been invalidated yet
+            passLookupCache.invalidatePass(lookup.getPassId());
+            result.setVisitorLogId(null);
+            result.setAction(RfidScanResultDTO.NO_ACTIVE_LOG);
+            result.setMessage("This pass is not assigned to a visitor on site.");
+            return result;
+        }
+
+        UserAccount guard = resolveGuard(request.getGuardAccountId(), station);
+        Timestamp scannedAt = parseScannedAt(request.getScannedAt());
+
+        if (exit) {
+            VisitorLog ended = visitorLogService.endLog(log.getVisitorLogID(), station.getId(), guard.getId(), scannedAt);
+            result.setEntryId(ended.getLatestEntryID());
+            result.setAllowed(true);
+            result.setAction(RfidScanResultDTO.CHECKED_OUT);
+            result.setMessage("Visitor checked out.");
+            return result;
+        }
+
+        VisitorLogEntry entry = visitorLogEntryService.addEntry(log, station, guard, scannedAt);
+        result.setEntryId(entry.getVisitorLogEntryID());
+        result.setAllowed(true);
+        result.setAction(RfidScanResultDTO.ENTRY_RECORDED);
+        result.setMessage("Entry recorded.");
+        return result;
+    }
+
+    /**
+     * Cache loader: UID -> pass -> active log -> allowed stations.
+     */
+    private PassLookupCacheService.PassLookup loadLookup(String uid) {
+        Optional<VisitorPass> passOpt = visitorPassService.findByUid(uid);
+        if (!passOpt.isPresent()) {
+            return PassLookupCacheService.PassLookup.unknown();
+        }
+
+        VisitorPass pass = passOpt.get();
+        VisitorLog log = findActiveLog(pass);
+        Visitor visitor = log != null ? log.getVisitor() : null;
+
+        Map<Long, String> allowedStations = new LinkedHashMap<>();
+        if (log != null && log.getAllowedStations() != null) {
+            for (Station s : log.getAllowedStations()) {
+                allowedStations.put(s.getId(), s.getName());
+            }
+        }
+
+        return new PassLookupCacheService.PassLookup(
+                pass.getPassID(),
+                passLabel(pass),
+                pass.getStatus(),
+                log != null ? log.getVisitorLogID() : null,
+                visitor != null ? visitor.getVisitorID() : null,
+                visitor != null ? visitor.getVisitorName() : null,
+                visitor != null ? visitor.getVisitorType() : null,
+                allowedStations
+        );
+    }
+
+    private RfidScanResultDTO replay(RfidScanReceipt receipt) {
+        RfidScanResultDTO result = new RfidScanResultDTO();
+        result.setScanId(receipt.getScanId());
+        result.setDuplicate(true);
+        result.setAction(receipt.getAction());
+        result.setAllowed(receipt.getAllowed());
+        result.setMessage(receipt.getMessage());
+        result.setStationId(receipt.getStationId());
+        result.setPassId(receipt.getPassId());
+        result.setVisitorLogId(receipt.getVisitorLogId());
+        result.setEntryId(receipt.getEntryId());
+        return result;
+    }
+
+    private String normalizeScanId(String scanId) {
+        if (scanId == null || scanId.trim().isEmpty()) {
+            return null;
+        }
+        String trimmed = scanId.trim();
+        if (trimmed.length() > MAX_SCAN_ID_LENGTH) {
+            throw new InvalidScanException("scanId must be at most " + MAX_SCAN_ID_LENGTH + " characters");
+        }
+        return trimmed;
+    }
+
+    private void validateUidAndLane(RfidScanRequest request) {
+        if (request.getUid() == null || request.getUid().trim().isEmpty()) {
+            throw new InvalidScanException("uid is required");
+        }
+        if (request.getUid().length() > MAX_UID_LENGTH) {
+            throw new InvalidScanException("uid must be at most " + MAX_UID_LENGTH + " characters");
+        }
+        if (request.getLane() != null && request.getLane().length() > MAX_UID_LENGTH) {
+            throw new InvalidScanException("lane must be at most " + MAX_UID_LENGTH + " characters");
+        }
+    }
+
+    private Station resolveStation(String rawStationId) {
+        Long stationId;
+        try {
+            stationId = Long.valueOf(trimToEmpty(rawStationId));
+        } catch (NumberFormatException e) {
+            throw new InvalidScanException("Invalid stationId: " + rawStationId);
+        }
+
+        Station station = stationRepository.findById(stationId)
+                .orElseThrow(() -> new InvalidScanException("Station not found"));
+        if (Boolean.FALSE.equals(station.getActive())) {
+            throw new InvalidScanException("Station is inactive");
+        }
+        return station;
+    }
+
+    private VisitorLog findActiveLog(VisitorPass pass) {
+        if (occupancyIndex.isLoaded()) {
+            Long logId = occupancyIndex.findActiveLogIdByPass(pass.getPassID());
+            return logId != null ? visitorLogRepository.findById(logId).orElse(null) : null;
+        }
+        List<VisitorLog> logs = visitorLogRepository.findByVisitorPassAndActiveEndIsNull(pass);
+        return logs.isEmpty() ? null : logs.get(0);
+    }
+
+    /**
+     * Helper stations are unattended; entries are attributed to the guard the helper
+     * names, or else to the active guard assigned to the station with the lowest id,
+     * so the same station always picks the same guard.
+     */
+    private UserAccount resolveGuard(Long guardAccountId, Station station) {
+        if (guardAccountId != null) {
+            return userAccountRepository.findById(guardAccountId)
+                    .orElseThrow(() -> new InvalidScanException("Guard not found"));
+        }
+        UserAccount chosen = null;
+        if (station.getAssignedUsers() != null) {
+            for (UserAccount user : station.getAssignedUsers()) {
+                if (!Boolean.FALSE.equals(user.getActive())
+                        && (chosen == null || user.getId() < chosen.getId())) {
+                    chosen = user;
+                }
+            }
+        }
+        if (chosen != null) {
+            return chosen;
+        }
+        throw new InvalidScanException("No guard is assigned to station " + station.getName());
+    }
+
+    /**
+     * The helper's tap time, so replayed outbox scans keep when they happened.
+     * Times ahead of the server clock or older than the outbox replay window
+     * (app.rfid.scanned-at.*) come from a bad helper clock; those use server time.
+     */
+    private Timestamp parseScannedAt(String scannedAt) {
+        long now = System.currentTimeMillis();
+        if (scannedAt != null && !scannedAt.trim().isEmpty()) {
+            try {
+                long at = Instant.parse(scannedAt.trim()).toEpochMilli();
+                if (at <= now + scannedAtMaxFutureSeconds * 1000L
+                        && at >= now - scannedAtMaxAgeHours * 3_600_000L) {
+                    return new Timestamp(at);
+                }
+            } catch (DateTimeParseException ignored) {
+                // fall through to server time
+            }
+        }
+        return new Timestamp(now);
+    }
+
+    private String passLabel(VisitorPass pass) {
+        if (pass.getDisplayCode() != null && !pass.getDisplayCode().trim().isEmpty()) {
+            return pass.getDisplayCode();
+        }
+        if (pass.getPassNumber() != null) {
+            return pass.getPassNumber();
+        }
+        return "P-" + pass.getPassID();
+    }
+
+    private String trimToEmpty(String s) {
+        return s == null ? "" : s.trim();
+    }
+}
@@ -14,6 +14,9 @@ public class StationService {
     @Autowired
     private StationRepository stationRepository;
 
+    @Autowired
+    private OccupancyIndexService occupancyIndex;
+
     public List<Station> getAllStations() {
         return stationRepository.findAll();
     }
@@ -88,6 +91,7 @@ public class StationService {
             throw new RuntimeException("Station not found");
         }
         stationRepository.deleteById(id);
+        occupancyIndex.removeStation(id);
     }
 
     public Station setStationActive(Long id, boolean active) {
@@ -4,11 +4,11 @@ import com.ivisit.backend.dto.VisitorLogEntryDTO;
 import com.ivisit.backend.model.*;
 import com.ivisit.backend.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.Timestamp;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -16,6 +16,9 @@ import java.util.stream.Collectors;
 @Service
 public class VisitorLogEntryService {
 
+    private static final int DEFAULT_RECENT_LIMIT = 100;
+    private static final int MAX_RECENT_LIMIT = 500;
+
     @Autowired
     private VisitorLogEntryRepository visitorLogEntryRepository;
 
@@ -28,9 +31,16 @@ public class VisitorLogEntryService {
     @Autowired
     private UserAccountRepository userAccountRepository;
 
+    @Autowired
+    private OccupancyIndexService occupancyIndex;
+
+    @Autowired
+    private LiveEventService liveEvents;
+
     /**
      * Creates a new VisitorLogEntry when a visitor checks in or out at a station.
      */
+    @Transactional
     public VisitorLogEntry recordEntry(Long visitorLogId, Long stationId, Long accountId) {
         Optional<VisitorLog> logOpt = visitorLogRepository.findById(visitorLogId);
         Optional<Station> stationOpt = stationRepository.findById(stationId);
@@ -44,32 +54,70 @@ public class VisitorLogEntryService {
         Station station = stationOpt.get();
         UserAccount user = userOpt.get();
 
-        VisitorLogEntry entry = new VisitorLogEntry(
-                log, station, user, new Timestamp(System.currentTimeMillis())
+        return addEntry(log, station, user, new Timestamp(System.currentTimeMillis()));
+    }
+
+    /**
+     * Saves an entry for the given log and moves the log's first/latest entry pointers
+     * in the same transaction. Every code path that writes entries should go through here.
+     *
+     * An entry older than the log's current latest one (a replayed helper tap) is
+     * stored as history only: the latest pointer, occupancy and live feed stay put.
+     */
+    @Transactional
+    public VisitorLogEntry addEntry(VisitorLog log, Station station, UserAccount user, Timestamp timestamp) {
+        VisitorLogEntry entry = visitorLogEntryRepository.save(
+                new VisitorLogEntry(log, station, user, timestamp)
+        );
+
+        if (log.getFirstEntryID() == null) {
+            log.setFirstEntryID(entry.getVisitorLogEntryID());
+        }
+        if (!isNewerThanLatest(log, timestamp)) {
+            visitorLogRepository.save(log);
+            return entry;
+        }
+        log.setLatestEntryID(entry.getVisitorLogEntryID());
+        visitorLogRepository.save(log);
+
+        occupancyIndex.recordEntry(
+                log.getVisitorLogID(),
+                station.getId(),
+                station.getName(),
+                user.getUsername(),
+                timestamp
         );
+        liveEvents.publishEntry(mapToDTO(entry), station.getId());
+
+        return entry;
+    }
 
-        return visitorLogEntryRepository.save(entry);
+    private boolean isNewerThanLatest(VisitorLog log, Timestamp timestamp) {
+        if (log.getLatestEntryID() == null || timestamp == null) {
+            return true;
+        }
+        Timestamp latest = visitorLogEntryRepository.findById(log.getLatestEntryID())
+                .map(VisitorLogEntry::getTimestamp)
+                .orElse(null);
+        return latest == null || !timestamp.before(latest);
     }
 
     public List<VisitorLogEntryDTO> getRecentEntries(int limit) {
-        List<VisitorLogEntry> entries = visitorLogEntryRepository.findAll();
-
-        // sort by timestamp DESC (most recent first)
-        Collections.sort(entries, new Comparator<VisitorLogEntry>() {
-            @Override
-            public int compare(VisitorLogEntry e1, VisitorLogEntry e2) {
-                Timestamp t1 = e1.getTimestamp();
-                Timestamp t2 = e2.getTimestamp();
-                if (t1 == null && t2 == null) return 0;
-                if (t1 == null) return 1;
-                if (t2 == null) return -1;
-                return t2.compareTo(t1); // descending
-            }
-        });
+        return getRecentEntries(limit, null, null);
+    }
 
-        if (limit > 0 && entries.size() > limit) {
-            entries = entries.subList(0, limit);
-        }
+    /**
+     * Newest-first activity feed, limited in the database.
+     * When a cursor is given, only entries older than (before, beforeId) are returned,
+     * so the feed can be scrolled without re-reading the newest page.
+     */
+    public List<VisitorLogEntryDTO> getRecentEntries(int limit, Timestamp before, Long beforeId) {
+        int usedLimit = limit > 0 ? Math.min(limit, MAX_RECENT_LIMIT) : DEFAULT_RECENT_LIMIT;
+        PageRequest page = PageRequest.of(0, usedLimit);
+
+        List<VisitorLogEntry> entries = before != null
+                ? visitorLogEntryRepository.findRecentBefore(before, beforeId, page)
+                : visitorLogEntryRepository.findRecent(page);
 
         return entries.stream()
                 .map(this::mapToDTO)
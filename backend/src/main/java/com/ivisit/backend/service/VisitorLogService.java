@@ -1,18 +1,29 @@
 package com.ivisit.backend.service;
 
 import com.ivisit.backend.dto.VisitorLogDTO;
+import com.ivisit.backend.dto.VisitorLogPageDTO;
+import com.ivisit.backend.dto.VisitorLogRow;
 import com.ivisit.backend.model.*;
 import com.ivisit.backend.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.Timestamp;
+import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 public class VisitorLogService {
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int ID_BATCH_SIZE = 500;
+
     @Autowired
     private VisitorLogRepository visitorLogRepository;
 
@@ -31,6 +42,18 @@ public class VisitorLogService {
     @Autowired
     private UserAccountRepository userAccountRepository;
 
+    @Autowired
+    private VisitorLogEntryService visitorLogEntryService;
+
+    @Autowired
+    private OccupancyIndexService occupancyIndex;
+
+    @Autowired
+    private LiveEventService liveEvents;
+
+    @Autowired
+    private PassLookupCacheService passLookupCache;
+
     /**
      * Creates a new VisitorLog when a visitor enters.
      */
@@ -46,9 +69,7 @@ public class VisitorLogService {
         VisitorPass pass = passOpt.get();
 
         // NEW: refuse if visitor already has an active log
-        List<VisitorLog> activeForVisitor =
-                visitorLogRepository.findByVisitorAndActiveEndIsNull(visitor);
-        if (!activeForVisitor.isEmpty()) {
+        if (hasActiveLog(visitor)) {
             throw new RuntimeException("Visitor already has an active log. Please end it first.");
         }
 
@@ -70,13 +91,18 @@ public class VisitorLogService {
         pass.setStatus("IN_USE");
         visitorPassRepository.save(pass);
 
-        return visitorLogRepository.save(log);
+        VisitorLog savedLog = visitorLogRepository.save(log);
+        // only once both the pass and its log are written, or a racing tap caches "no active log"
+        passLookupCache.invalidatePass(pass.getPassID());
+        publishCheckIn(savedLog, trackActiveLog(savedLog.getVisitorLogID()));
+        return savedLog;
     }
 
     /**
      * Creates a VisitorLog with purpose + allowed stations
      * and (optionally) records the initial checkpoint entry.
      */
+    @Transactional
     public VisitorLog createLogWithDetails(Long visitorId,
                                            Long passId,
                                            String purposeOfVisit,
@@ -88,9 +114,7 @@ public class VisitorLogService {
                 .orElseThrow(() -> new RuntimeException("Visitor not found"));
 
         // NEW: refuse if visitor already has an active log
-        List<VisitorLog> activeForVisitor =
-                visitorLogRepository.findByVisitorAndActiveEndIsNull(visitor);
-        if (!activeForVisitor.isEmpty()) {
+        if (hasActiveLog(visitor)) {
             throw new RuntimeException("Visitor already has an active log. Please end it first.");
         }
 
@@ -125,6 +149,7 @@ public class VisitorLogService {
         if (pass != null) {
             pass.setStatus("IN_USE");
             visitorPassRepository.save(pass);
+            passLookupCache.invalidatePass(pass.getPassID());
         }
 
         VisitorLog savedLog = visitorLogRepository.save(log);
@@ -135,27 +160,35 @@ public class VisitorLogService {
             UserAccount guard = userAccountRepository.findById(guardAccountId)
                     .orElseThrow(() -> new RuntimeException("Guard not found"));
 
-            VisitorLogEntry entry = new VisitorLogEntry(
+            visitorLogEntryService.addEntry(
                     savedLog,
                     station,
                     guard,
                     new Timestamp(System.currentTimeMillis())
             );
-            visitorLogEntryRepository.save(entry);
         }
 
+        publishCheckIn(savedLog, trackActiveLog(savedLog.getVisitorLogID()));
         return savedLog;
     }
 
     /**
      * Marks a VisitorLog as completed (when visitor exits).
      */
+    @Transactional
     public VisitorLog endLog(Long visitorLogId, Long stationId, Long guardAccountId) {
+        return endLog(visitorLogId, stationId, guardAccountId, new Timestamp(System.currentTimeMillis()));
+    }
+
+    /**
+     * Same as above, but ended at the given time (e.g. when the exit card tap happened).
+     */
+    @Transactional
+    public VisitorLog endLog(Long visitorLogId, Long stationId, Long guardAccountId, Timestamp endedAt) {
         VisitorLog log = visitorLogRepository.findById(visitorLogId)
                 .orElseThrow(() -> new RuntimeException("VisitorLog not found"));
 
-        Timestamp now = new Timestamp(System.currentTimeMillis());
-        log.setActiveEnd(now);
+        log.setActiveEnd(endedAt);
 
         // Only free the pass if it was actually IN_USE.
         // Do NOT override LOST/INACTIVE/RETIRED (or anything else).
@@ -169,6 +202,7 @@ public class VisitorLogService {
                 pass.setStatus("AVAILABLE");
                 visitorPassRepository.save(pass);
             }
+            passLookupCache.invalidatePass(pass.getPassID());
         }
 
         // Optionally record an exit entry at the station performing End Log
@@ -178,13 +212,12 @@ public class VisitorLogService {
             UserAccount guard = userAccountRepository.findById(guardAccountId)
                     .orElseThrow(() -> new RuntimeException("Guard not found"));
 
-            VisitorLogEntry exitEntry = new VisitorLogEntry(
+            VisitorLogEntry exitEntry = visitorLogEntryService.addEntry(
                     log,
                     station,
                     guard,
-                    now
+                    endedAt
             );
-            visitorLogEntryRepository.save(exitEntry);
 
             if (log.getVisitorLogEntries() != null) {
                 log.getVisitorLogEntries().add(exitEntry);
@@ -193,9 +226,98 @@ public class VisitorLogService {
             }
         }
 
+        OccupancyIndexService.ActiveVisit visit = occupancyIndex.getActiveVisit(log.getVisitorLogID());
+        occupancyIndex.remove(log.getVisitorLogID());
+
+        List<Long> relevantStations = new ArrayList<>();
+        relevantStations.add(stationId);
+        if (visit != null) {
+            relevantStations.add(visit.getLatestStationId());
+        }
+        liveEvents.publishCheckOut(
+                log.getVisitorLogID(),
+                log.getVisitor() != null ? log.getVisitor().getVisitorID() : null,
+                stationId,
+                relevantStations
+        );
+
         return visitorLogRepository.save(log);
     }
 
+    private boolean hasActiveLog(Visitor visitor) {
+        if (occupancyIndex.isLoaded()) {
+            return occupancyIndex.hasActiveLogForVisitor(visitor.getVisitorID());
+        }
+        return !visitorLogRepository.findByVisitorAndActiveEndIsNull(visitor).isEmpty();
+    }
+
+    /**
+     * (Re)publishes an active log to the occupancy index with its current LogBook DTO.
+     */
+    private OccupancyIndexService.ActiveVisit trackActiveLog(Long visitorLogId) {
+        List<VisitorLogRow> rows = visitorLogRepository.findLogRowsById(visitorLogId);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        OccupancyIndexService.ActiveVisit visit = toActiveVisit(rows.get(0), mapRowsToDTOs(rows).get(0));
+        occupancyIndex.upsert(visit);
+        return visit;
+    }
+
+    /**
+     * Check-ins go to the consoles of every station the visitor may enter,
+     * plus wherever they were first scanned.
+     */
+    private void publishCheckIn(VisitorLog log, OccupancyIndexService.ActiveVisit visit) {
+        if (visit == null) {
+            return;
+        }
+        List<Long> relevantStations = new ArrayList<>();
+        if (log.getAllowedStations() != null) {
+            for (Station s : log.getAllowedStations()) {
+                relevantStations.add(s.getId());
+            }
+        }
+        relevantStations.add(visit.getLatestStationId());
+        liveEvents.publishCheckIn(visit.getDto(), relevantStations);
+    }
+
+    private OccupancyIndexService.ActiveVisit toActiveVisit(VisitorLogRow row, VisitorLogDTO dto) {
+        return new OccupancyIndexService.ActiveVisit(
+                row.getVisitorLogID(),
+                row.getVisitorID(),
+                row.getPassID(),
+                row.getLatestStationID(),
+                row.getLatestStationName(),
+                dto
+        );
+    }
+
+    /**
+     * Loads every active log into the occupancy index once the app is up.
+     * Until then, active-log reads and duplicate checks go to the database.
+     * Requests are already being served here; check-ins and check-outs that commit
+     * while the snapshot is read are replayed onto it by the index.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOccupancyIndex() {
+        occupancyIndex.beginLoad();
+        List<OccupancyIndexService.ActiveVisit> visits;
+        try {
+            List<VisitorLogRow> rows = visitorLogRepository.findActiveLogRows();
+            List<VisitorLogDTO> dtos = mapRowsToDTOs(rows);
+
+            visits = new ArrayList<>(rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                visits.add(toActiveVisit(rows.get(i), dtos.get(i)));
+            }
+        } catch (RuntimeException e) {
+            occupancyIndex.abortLoad();
+            throw e;
+        }
+        occupancyIndex.reload(visits);
+    }
+
     /**
      * Lists all active VisitorLogs (no activeEnd timestamp yet)
      */
@@ -218,16 +340,17 @@ public class VisitorLogService {
      * Return DTOs for all logs (for UI/LogBook).
      */
     public List<VisitorLogDTO> getAllLogsDTO() {
-        List<VisitorLog> logs = getAllLogs();
-        return logs.stream().map(this::mapToDTO).collect(Collectors.toList());
+        return mapRowsToDTOs(visitorLogRepository.findAllLogRows());
     }
 
     /**
      * Return DTOs for active logs (for UI).
      */
     public List<VisitorLogDTO> getActiveLogsDTO() {
-        List<VisitorLog> logs = getActiveLogs();
-        return logs.stream().map(this::mapToDTO).collect(Collectors.toList());
+        if (occupancyIndex.isLoaded()) {
+            return occupancyIndex.getActiveLogs();
+        }
+        return mapRowsToDTOs(visitorLogRepository.findActiveLogRows());
     }
 
     public List<VisitorLog> getArchivedLogs() {
@@ -235,114 +358,141 @@ public class VisitorLogService {
     }
 
     public List<VisitorLogDTO> getArchivedLogsDTO() {
-        List<VisitorLog> logs = getArchivedLogs();
-        return logs.stream().map(this::mapToDTO).collect(Collectors.toList());
+        return mapRowsToDTOs(visitorLogRepository.findArchivedLogRows());
     }
 
     /**
-     * Map a VisitorLog entity into VisitorLogDTO used by the frontend LogBook.
-     * Conservative: fills missing values with sensible defaults.
+     * One LogBook page (newest first), keyset-paginated on visitorLogID.
+     * Pass the previous page's nextCursor to continue scrolling; all filters are optional.
+     * Costs two queries per page: log rows (with first/latest entry) and allowed stations.
      */
-    private VisitorLogDTO mapToDTO(VisitorLog log) {
-        Visitor visitor = log.getVisitor();
-        VisitorPass pass = log.getVisitorPass();
+    public VisitorLogPageDTO getLogsPage(Long cursor,
+                                         int limit,
+                                         LocalDate fromDate,
+                                         LocalDate toDate,
+                                         Long stationId,
+                                         String purpose,
+                                         Boolean archived,
+                                         String namePrefix) {
+        int size = limit > 0 ? Math.min(limit, MAX_PAGE_SIZE) : DEFAULT_PAGE_SIZE;
+
+        Timestamp fromTs = fromDate != null ? Timestamp.valueOf(fromDate.atStartOfDay()) : null;
+        Timestamp toTs = toDate != null ? Timestamp.valueOf(toDate.plusDays(1).atStartOfDay()) : null;
+
+        // fetch one extra row to know whether another page exists
+        List<VisitorLogRow> rows = visitorLogRepository.findLogRowsPage(
+                cursor,
+                fromTs,
+                toTs,
+                archived,
+                likePattern(purpose, true),
+                likePattern(namePrefix, false),
+                stationId,
+                PageRequest.of(0, size + 1)
+        );
 
-        String fullName = visitor != null ? visitor.getVisitorName() : "Unknown";
-        String idType = visitor != null ? visitor.getIdType() : "-";
+        boolean hasMore = rows.size() > size;
+        if (hasMore) {
+            rows = rows.subList(0, size);
+        }
 
-        String passNo = "-";
-        if (pass != null) {
-            if (pass.getDisplayCode() != null && !pass.getDisplayCode().trim().isEmpty()) {
-                passNo = pass.getDisplayCode();
-            } else if (pass.getPassNumber() != null && !pass.getPassNumber().trim().isEmpty()) {
-                passNo = pass.getPassNumber();
-            } else if (pass.getPassID() != null) {
-                passNo = "P-" + pass.getPassID();
-            }
+        Long nextCursor = hasMore ? rows.get(rows.size() - 1).getVisitorLogID() : null;
+        return new VisitorLogPageDTO(mapRowsToDTOs(rows), nextCursor, hasMore);
+    }
+
+    /**
+     * Turns projected log rows into LogBook DTOs. First/latest entry details already come
+     * with each row; allowed stations are resolved with one query per ID_BATCH_SIZE logs.
+     */
+    private List<VisitorLogDTO> mapRowsToDTOs(List<VisitorLogRow> rows) {
+        if (rows.isEmpty()) {
+            return new ArrayList<>();
         }
 
-        VisitorLogEntry firstEntry = null;
-        VisitorLogEntry latestEntry = null;
+        List<Long> logIds = rows.stream()
+                .map(VisitorLogRow::getVisitorLogID)
+                .collect(Collectors.toList());
 
-        List<VisitorLogEntry> rawEntries = log.getVisitorLogEntries();
-        if (rawEntries != null && !rawEntries.isEmpty()) {
-            List<VisitorLogEntry> entries = new ArrayList<>(rawEntries);
-            entries.sort(Comparator.comparing(VisitorLogEntry::getTimestamp));
+        Map<Long, List<String>> allowedStations = new HashMap<>();
 
-            firstEntry  = entries.get(0);
-            latestEntry = entries.get(entries.size() - 1);
-        }
+        // chunk the IN list so /all stays at a bounded number of statements per chunk
+        for (int from = 0; from < logIds.size(); from += ID_BATCH_SIZE) {
+            List<Long> batch = logIds.subList(from, Math.min(from + ID_BATCH_SIZE, logIds.size()));
 
-        String firstLocation = "N/A";
-        if (firstEntry != null &&
-                firstEntry.getStation() != null &&
-                firstEntry.getStation().getName() != null) {
-            firstLocation = firstEntry.getStation().getName();
+            for (Object[] pair : visitorLogRepository.findAllowedStationNames(batch)) {
+                if (pair[1] == null) continue;
+                allowedStations
+                        .computeIfAbsent((Long) pair[0], id -> new ArrayList<>())
+                        .add((String) pair[1]);
+            }
         }
 
-        String location = "N/A";
-        if (latestEntry != null &&
-                latestEntry.getStation() != null &&
-                latestEntry.getStation().getName() != null) {
-            location = latestEntry.getStation().getName();
+        List<VisitorLogDTO> dtos = new ArrayList<>(rows.size());
+        for (VisitorLogRow row : rows) {
+            dtos.add(mapRowToDTO(
+                    row,
+                    allowedStations.getOrDefault(row.getVisitorLogID(), Collections.emptyList())
+            ));
         }
+        return dtos;
+    }
 
-        String loggedBy = "System";
-        if (latestEntry != null &&
-                latestEntry.getUserAccount() != null &&
-                latestEntry.getUserAccount().getUsername() != null) {
-            loggedBy = latestEntry.getUserAccount().getUsername();
+    private VisitorLogDTO mapRowToDTO(VisitorLogRow row, List<String> allowedStationNames) {
+        String passNo = "-";
+        if (row.getPassDisplayCode() != null && !row.getPassDisplayCode().trim().isEmpty()) {
+            passNo = row.getPassDisplayCode();
+        } else if (row.getPassNumber() != null && !row.getPassNumber().trim().isEmpty()) {
+            passNo = row.getPassNumber();
+        } else if (row.getPassID() != null) {
+            passNo = "P-" + row.getPassID();
         }
 
-        Timestamp usedTs = null;
-        if (latestEntry != null && latestEntry.getTimestamp() != null) {
-            usedTs = latestEntry.getTimestamp();
-        } else if (log.getActiveStart() != null) {
-            usedTs = log.getActiveStart();
-        }
+        String firstLocation = row.getFirstStationName() != null ? row.getFirstStationName() : "N/A";
+        String location = row.getLatestStationName() != null ? row.getLatestStationName() : "N/A";
+        String loggedBy = row.getLatestGuardName() != null ? row.getLatestGuardName() : "System";
 
-        String dateStr = usedTs != null
-                ? usedTs.toLocalDateTime().toLocalDate().toString()
-                : "N/A";
-        String timeStr = usedTs != null
-                ? usedTs.toLocalDateTime().toLocalTime().toString()
-                : "N/A";
+        Timestamp usedTs = row.getLatestEntryAt() != null
+                ? row.getLatestEntryAt()
+                : row.getActiveStart();
 
         String purposeOfVisit =
-                (log.getPurposeOfVisit() != null && !log.getPurposeOfVisit().trim().isEmpty())
-                        ? log.getPurposeOfVisit()
+                (row.getPurposeOfVisit() != null && !row.getPurposeOfVisit().trim().isEmpty())
+                        ? row.getPurposeOfVisit()
                         : "N/A";
 
-        List<String> allowedStationNames = Collections.emptyList();
-        if (log.getAllowedStations() != null && !log.getAllowedStations().isEmpty()) {
-            allowedStationNames = log.getAllowedStations().stream()
-                    .filter(Objects::nonNull)
-                    .map(Station::getName)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
-        }
-
         VisitorLogDTO dto = new VisitorLogDTO();
-        dto.setVisitorLogID(log.getVisitorLogID());
-        dto.setFullName(fullName);
-        dto.setIdType(idType);
+        dto.setVisitorLogID(row.getVisitorLogID());
+        dto.setVisitorID(row.getVisitorID());
+        dto.setFullName(row.getVisitorName());
+        dto.setIdType(row.getIdType());
         dto.setPassNo(passNo);
         dto.setLocation(location);
         dto.setFirstLocation(firstLocation);
         dto.setPurposeOfVisit(purposeOfVisit);
         dto.setLoggedBy(loggedBy);
-        dto.setDate(dateStr);
-        dto.setTime(timeStr);
+        dto.setDate(usedTs != null ? usedTs.toLocalDateTime().toLocalDate().toString() : "N/A");
+        dto.setTime(usedTs != null ? usedTs.toLocalDateTime().toLocalTime().toString() : "N/A");
         dto.setAllowedStations(allowedStationNames);
-        dto.setArchived(log.getArchived() != null ? log.getArchived() : false);
-        dto.setArchivedAt(log.getArchivedAt() != null ? log.getArchivedAt().toString() : null);
-        if (visitor != null) {
-            dto.setVisitorID(visitor.getVisitorID());
-        }
-
+        dto.setArchived(row.getArchived() != null ? row.getArchived() : false);
+        dto.setArchivedAt(row.getArchivedAt() != null ? row.getArchivedAt().toString() : null);
         return dto;
     }
 
+    /**
+     * Lower-case LIKE pattern for a LogBook text filter (contains, or starts with),
+     * with the user's % and _ taken literally. "" when the filter is blank.
+     */
+    private String likePattern(String value, boolean contains) {
+        if (value == null || value.trim().isEmpty()) {
+            return "";
+        }
+        String literal = value.trim().toLowerCase()
+                .replace("!", "!!")
+                .replace("%", "!%")
+                .replace("_", "!_");
+        return (contains ? "%" : "") + literal + "%";
+    }
+
     /**
      * Assigns a VisitorPass to an active VisitorLog.
      * - Pass must exist and be AVAILABLE.
@@ -380,7 +530,14 @@ public class VisitorLogService {
         visitorPassRepository.save(pass);
 
         log.setVisitorPass(pass);
-        return visitorLogRepository.save(log);
+        VisitorLog savedLog = visitorLogRepository.save(log);
+        // both passes and the log are written; only now drop the cached lookups
+        if (currentPass != null && currentPass.getPassID() != null) {
+            passLookupCache.invalidatePass(currentPass.getPassID());
+        }
+        passLookupCache.invalidatePass(pass.getPassID());
+        trackActiveLog(savedLog.getVisitorLogID());
+        return savedLog;
     }
 
     /**
@@ -399,7 +556,14 @@ public class VisitorLogService {
             log.setVisitorPass(null);
         }
 
-        return visitorLogRepository.save(log);
+        VisitorLog savedLog = visitorLogRepository.save(log);
+        if (pass != null) {
+            passLookupCache.invalidatePass(pass.getPassID());
+        }
+        if (savedLog.getActiveEnd() == null) {
+            trackActiveLog(savedLog.getVisitorLogID());
+        }
+        return savedLog;
     }
 
     // emergency function to remove ghost logs
@@ -421,7 +585,14 @@ public class VisitorLogService {
                 ghost.setActiveEnd(new Timestamp(System.currentTimeMillis()));
                 // intentionally do not touch ghost.getVisitorPass().status here
                 visitorLogRepository.save(ghost);
+                occupancyIndex.remove(ghost.getVisitorLogID());
+                if (ghost.getVisitorPass() != null) {
+                    passLookupCache.invalidatePass(ghost.getVisitorPass().getPassID());
+                }
             }
         }
+
+        // re-point the visitor/pass keys at the surviving log
+        trackActiveLog(keep.getVisitorLogID());
     }
 }
@@ -30,6 +30,9 @@ public class VisitorPassIncidentService {
     @Autowired
     private UserAccountRepository userAccountRepository;
 
+    @Autowired
+    private PassLookupCacheService passLookupCache;
+
     public VisitorPassIncident createIncident(VisitorPassIncidentRequest request) {
         if (request.getPassId() == null) {
             throw new RuntimeException("passId is required for an incident.");
@@ -85,6 +88,7 @@ public class VisitorPassIncidentService {
                     && !"RETIRED".equals(currentStatus)) {
                 pass.setStatus("LOST");
                 visitorPassRepository.save(pass);
+                passLookupCache.invalidatePass(pass.getPassID());
             }
         }
 
@@ -17,6 +17,12 @@ public class VisitorPassService {
     @Autowired
     private VisitorPassRepository visitorPassRepository;
 
+    @Autowired
+    private PassLookupCacheService passLookupCache;
+
+    @Autowired
+    private OccupancyIndexService occupancyIndex;
+
     // Allowed statuses for safety
     private static final Set<String> ALLOWED_STATUSES = new HashSet<>(
             Arrays.asList("AVAILABLE", "IN_USE", "LOST", "INACTIVE", "RETIRED")
@@ -56,7 +62,14 @@ public class VisitorPassService {
         }
 
         VisitorPass pass = new VisitorPass(normalizedUid, visitorPassID, normalizedStatus);
-        return visitorPassRepository.save(pass);
+        VisitorPass saved = visitorPassRepository.save(pass);
+
+        // the card may be cached as unknown from earlier taps
+        passLookupCache.invalidateUid(normalizedUid);
+        if (visitorPassID != null) {
+            passLookupCache.invalidateUid(visitorPassID);
+        }
+        return saved;
     }
 
     /**
@@ -94,7 +107,10 @@ public class VisitorPassService {
 
         VisitorPass pass = opt.get();
         pass.setStatus(normalized);
-        return visitorPassRepository.save(pass);
+        VisitorPass saved = visitorPassRepository.save(pass);
+        // after the save, so a lookup racing the bump cannot reload the old status
+        passLookupCache.invalidatePass(passId);
+        return saved;
     }
 
     /**
@@ -118,6 +134,8 @@ public class VisitorPassService {
         // Soft-delete: mark as INACTIVE instead of actual delete
         pass.setStatus("INACTIVE");
         visitorPassRepository.save(pass);
+        passLookupCache.invalidatePass(passId);
+        occupancyIndex.removePass(passId);
     }
 
     /**
@@ -128,6 +146,8 @@ public class VisitorPassService {
             throw new RuntimeException("VisitorPass not found");
         }
         visitorPassRepository.deleteById(passId);
+        passLookupCache.invalidatePass(passId);
+        occupancyIndex.removePass(passId);
     }
 
     /**
@@ -172,7 +192,14 @@ public class VisitorPassService {
         // station id (may be null)
         pass.setOriginStationId(originStationId);
 
-        return visitorPassRepository.save(pass);
+        VisitorPass saved = visitorPassRepository.save(pass);
+
+        // the external id is also a lookup key; invalidated once the row is written
+        passLookupCache.invalidatePass(passId);
+        if (saved.getVisitorPassID() != null) {
+            passLookupCache.invalidateUid(saved.getVisitorPassID());
+        }
+        return saved;
     }
 
     /**
@@ -183,16 +210,14 @@ public class VisitorPassService {
             return Optional.empty();
         }
 
-        String normalizedUid = uid.trim().toUpperCase();
-
-        // 1) Try visitorPassID
-        VisitorPass byExternalId = visitorPassRepository.findByVisitorPassID(uid);
+        // 1) Try visitorPassID (exact, same key as the pass lookup cache)
+        VisitorPass byExternalId = visitorPassRepository.findByVisitorPassID(PassLookupCacheService.normalizeUid(uid));
         if (byExternalId != null) {
             return Optional.of(byExternalId);
         }
 
         // 2) Try passNumber (e.g. "865A4BA6")
-        VisitorPass byPassNumber = visitorPassRepository.findByPassNumber(normalizedUid);
+        VisitorPass byPassNumber = visitorPassRepository.findByPassNumber(uid.trim().toUpperCase());
         if (byPassNumber != null) {
             return Optional.of(byPassNumber);
         }
@@ -1,5 +1,6 @@
 package com.ivisit.backend.service;
 
+import com.ivisit.backend.dto.ArchiveResultDTO;
 import com.ivisit.backend.model.Visitor;
 import com.ivisit.backend.model.VisitorLog;
 import com.ivisit.backend.model.VisitorLogEntry;
@@ -18,7 +19,6 @@ import java.sql.Timestamp;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 public class VisitorService {
@@ -116,40 +116,17 @@ public class VisitorService {
     }
 
     /**
-     * Archives the given visitors *and* their finished logs + entries,
-     * and delegates CSV/PDF generation to ArchiveService.
+     * Archives the given visitors *and* their finished logs + entries
+     * via ArchiveService's bulk path; returns the flagged row counts.
      */
-    public void archiveVisitors(List<Long> visitorIds) throws IOException {
+    public ArchiveResultDTO archiveVisitors(List<Long> visitorIds) {
         if (visitorIds == null || visitorIds.isEmpty()) {
-            return;
+            return new ArchiveResultDTO(null, 0, 0, 0);
         }
 
-        // 1) Visitors in this manual batch
-        List<Visitor> visitors = visitorRepository.findAllById(visitorIds);
-
-        // 2) All finished, non-archived logs for those visitors
-        List<VisitorLog> logsToArchive = visitors.stream()
-                .filter(Objects::nonNull)
-                .flatMap(v ->
-                        visitorLogRepository
-                                .findByVisitorAndArchivedFalseOrArchivedIsNull(v)
-                                .stream()
-                                // never archive logs still active
-                                .filter(log -> log.getActiveEnd() != null)
-                )
-                .collect(Collectors.toList());
-
-        // 3) All entries for those logs
-        List<VisitorLogEntry> entriesToArchive = logsToArchive.isEmpty()
-                ? Collections.emptyList()
-                : visitorLogEntryRepository.findByVisitorLogIn(logsToArchive);
-
-        // 4) Delegate CSV + PDF + archived flags to ArchiveService
-        archiveService.archiveVisitorsWithRelatedData(
-                visitors,
-                logsToArchive,
-                entriesToArchive
-        );
+        // Visitors in this manual batch, all their finished non-archived logs
+        // (never logs still active) and every entry of those logs, flagged in bulk
+        return archiveService.archiveVisitorsByIds(visitorIds);
     }
 
     public List<Visitor> getVisitorsByIds(List<Long> ids) {
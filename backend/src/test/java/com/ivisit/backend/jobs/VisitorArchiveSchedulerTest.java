@@ -0,0 +1,96 @@
+package com.ivisit.backend.jobs;
+
+import com.ivisit.backend.model.*;
+import com.ivisit.backend.repository.VisitorRepository;
+import com.ivisit.backend.service.ArchiveRunService;
+import com.ivisit.backend.service.ArchiveService;
+import com.ivisit.backend.service.ExportService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import({VisitorArchiveScheduler.class, ArchiveRunService.class, ArchiveService.class, ExportService.class})
+class VisitorArchiveSchedulerTest {
+
+    private static final Timestamp OLD = Timestamp.from(Instant.now().minus(800, ChronoUnit.DAYS));
+    private static final Timestamp RECENT = Timestamp.from(Instant.now().minus(10, ChronoUnit.DAYS));
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private VisitorArchiveScheduler scheduler;
+
+    @Autowired
+    private VisitorRepository visitorRepository;
+
+    @Test
+    void archivesOnlyVisitorsIdleSinceTheCutoff() {
+        Station gate = em.persist(new Station("Gate 1", "GATE", true));
+        UserAccount guard = new UserAccount("guard_gate1", null, "guard@email.com", "GUARD", Collections.emptyList());
+        guard.setPassword("password");
+        em.persist(guard);
+
+        Long idleNoLogs = visitor("idle, no logs", OLD).getVisitorID();
+
+        Visitor idleWithLogs = visitor("idle, old finished log", OLD);
+        entry(log(idleWithLogs, OLD, OLD, false), gate, guard, OLD);
+
+        Visitor stillInside = visitor("old, log still open", OLD);
+        log(stillInside, OLD, null, false);
+
+        Visitor recentEntry = visitor("old, recent entry", OLD);
+        entry(log(recentEntry, OLD, OLD, false), gate, guard, RECENT);
+
+        Long recentlyRegistered = visitor("registered recently", RECENT).getVisitorID();
+
+        // activity on already archived logs doesn't count
+        Visitor archivedActivity = visitor("recent activity only on archived log", OLD);
+        log(archivedActivity, RECENT, RECENT, true);
+
+        em.flush();
+        em.clear();
+
+        scheduler.archiveOldVisitorsWithLogs();
+        em.clear();
+
+        assertTrue(archived(idleNoLogs));
+        assertTrue(archived(idleWithLogs.getVisitorID()));
+        assertTrue(archived(archivedActivity.getVisitorID()));
+        assertFalse(archived(stillInside.getVisitorID()));
+        assertFalse(archived(recentEntry.getVisitorID()));
+        assertFalse(archived(recentlyRegistered));
+    }
+
+    private boolean archived(Long visitorId) {
+        return Boolean.TRUE.equals(visitorRepository.findById(visitorId).get().getArchived());
+    }
+
+    private Visitor visitor(String name, Timestamp createdAt) {
+        Visitor v = new Visitor(name, "Guest", "Student ID", name, null, createdAt);
+        v.setArchived(false);
+        return em.persist(v);
+    }
+
+    private VisitorLog log(Visitor visitor, Timestamp start, Timestamp end, boolean archived) {
+        VisitorLog log = new VisitorLog(visitor, null, start, end);
+        log.setArchived(archived);
+        return em.persist(log);
+    }
+
+    private void entry(VisitorLog log, Station station, UserAccount guard, Timestamp at) {
+        VisitorLogEntry entry = new VisitorLogEntry(log, station, guard, at);
+        entry.setArchived(false);
+        em.persist(entry);
+    }
+}
@@ -0,0 +1,145 @@
+package com.ivisit.backend.service;
+
+import com.ivisit.backend.dto.ArchiveResultDTO;
+import com.ivisit.backend.model.ArchiveCheckpoint;
+import com.ivisit.backend.model.Visitor;
+import com.ivisit.backend.repository.ArchiveCheckpointRepository;
+import com.ivisit.backend.repository.VisitorRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "app.archive.chunk-size=2"
+})
+@Import({ArchiveRunService.class, ArchiveService.class, ExportService.class})
+class ArchiveRunServiceTest {
+
+    private static final Timestamp OLD = Timestamp.from(Instant.now().minus(800, ChronoUnit.DAYS));
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private ArchiveRunService archiveRunService;
+
+    @Autowired
+    private VisitorRepository visitorRepository;
+
+    @Autowired
+    private ArchiveCheckpointRepository checkpointRepository;
+
+    private List<Long> idle;
+
+    @BeforeEach
+    void seed() {
+        // five idle visitors: three chunks of two at app.archive.chunk-size=2
+        idle = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Visitor v = new Visitor("idle " + i, "Guest", "Student ID", "ID-" + i, null, OLD);
+            v.setArchived(false);
+            idle.add(em.persist(v).getVisitorID());
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @AfterEach
+    void restoreBudget() {
+        ReflectionTestUtils.setField(archiveRunService, "maxRunSeconds", 900L);
+        ReflectionTestUtils.setField(archiveRunService, "chunkSize", 2);
+    }
+
+    @Test
+    void completePassArchivesEverythingAndResetsTheCheckpoint() {
+        ArchiveResultDTO result = archiveRunService.runOnce();
+        em.flush();
+        em.clear();
+
+        assertEquals(5, result.getVisitors());
+        assertEquals(idle, archivedIds());
+
+        ArchiveCheckpoint checkpoint = checkpointRepository.findById(ArchiveRunService.JOB_NAME).orElseThrow(AssertionError::new);
+        assertEquals(ArchiveRunService.OUTCOME_COMPLETE, checkpoint.getLastRunOutcome());
+        assertEquals(Long.valueOf(0L), checkpoint.getLastVisitorId());
+    }
+
+    @Test
+    void resumesAfterTheSavedCheckpoint() {
+        ArchiveCheckpoint saved = new ArchiveCheckpoint(ArchiveRunService.JOB_NAME);
+        saved.setLastVisitorId(idle.get(1));
+        checkpointRepository.save(saved);
+
+        ArchiveResultDTO result = archiveRunService.runOnce();
+        em.flush();
+        em.clear();
+
+        assertEquals(3, result.getVisitors());
+        assertEquals(idle.subList(2, 5), archivedIds());
+    }
+
+    @Test
+    void stopsOnTheTimeBudgetAndKeepsTheCheckpoint() {
+        ReflectionTestUtils.setField(archiveRunService, "maxRunSeconds", 0L);
+        ArchiveCheckpoint saved = new ArchiveCheckpoint(ArchiveRunService.JOB_NAME);
+        saved.setLastVisitorId(idle.get(1));
+        checkpointRepository.save(saved);
+
+        ArchiveResultDTO result = archiveRunService.runOnce();
+        em.flush();
+        em.clear();
+
+        assertEquals(0, result.getVisitors());
+        assertTrue(archivedIds().isEmpty());
+        ArchiveCheckpoint checkpoint = checkpointRepository.findById(ArchiveRunService.JOB_NAME).orElseThrow(AssertionError::new);
+        assertEquals(ArchiveRunService.OUTCOME_TIME_BUDGET, checkpoint.getLastRunOutcome());
+        assertEquals(idle.get(1), checkpoint.getLastVisitorId());
+    }
+
+    @Test
+    void chunkSizeBelowOneIsTreatedAsOne() {
+        ReflectionTestUtils.setField(archiveRunService, "chunkSize", 0);
+
+        ArchiveResultDTO result = archiveRunService.runOnce();
+
+        assertEquals(5, result.getVisitors());
+    }
+
+    @Test
+    void runningOutcomeLeftByADeadRunIsReportedAsInterrupted() {
+        ArchiveCheckpoint saved = new ArchiveCheckpoint(ArchiveRunService.JOB_NAME);
+        saved.setLastRunOutcome(ArchiveRunService.OUTCOME_RUNNING);
+        checkpointRepository.save(saved);
+
+        Map<String, Object> status = archiveRunService.getStatus();
+
+        assertEquals(false, status.get("running"));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> checkpoint = (Map<String, Object>) status.get("checkpoint");
+        assertEquals(ArchiveRunService.OUTCOME_INTERRUPTED, checkpoint.get("lastRunOutcome"));
+    }
+
+    private List<Long> archivedIds() {
+        return visitorRepository.findAll().stream()
+                .filter(v -> Boolean.TRUE.equals(v.getArchived()))
+                .map(Visitor::getVisitorID)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,156 @@
+package com.ivisit.backend.service;
+
+import com.ivisit.backend.dto.ArchiveResultDTO;
+import com.ivisit.backend.model.*;
+import com.ivisit.backend.repository.VisitorLogEntryRepository;
+import com.ivisit.backend.repository.VisitorLogRepository;
+import com.ivisit.backend.repository.VisitorRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import({ArchiveService.class, ExportService.class})
+class ArchiveServiceTest {
+
+    private static final long BASE = 1_600_000_000_000L;
+    private static final Timestamp EARLIER_ARCHIVE = new Timestamp(BASE - 86_400_000L);
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private ArchiveService archiveService;
+
+    @Autowired
+    private VisitorRepository visitorRepository;
+
+    @Autowired
+    private VisitorLogRepository visitorLogRepository;
+
+    @Autowired
+    private VisitorLogEntryRepository visitorLogEntryRepository;
+
+    private Station gate;
+    private UserAccount guard;
+
+    @BeforeEach
+    void seedStation() {
+        gate = em.persist(new Station("Gate 1", "GATE", true));
+
+        guard = new UserAccount("guard_gate1", null, "guard@email.com", "GUARD", Collections.emptyList());
+        guard.setPassword("password");
+        em.persist(guard);
+    }
+
+    @Test
+    void archivesSelectedVisitorsWithTheirFinishedLogsAndEntries() {
+        List<Long> selection = seed("bulk:");
+        em.flush();
+        em.clear();
+
+        ArchiveResultDTO result = archiveService.archiveVisitorsByIds(selection);
+        em.clear();
+
+        Set<String> expected = new TreeSet<>(Arrays.asList(
+                "visitor a", "visitor b",
+                "log a-finished", "log a-unflagged", "log a-already-archived", "log b-finished",
+                "entry " + entryTime(1), "entry " + entryTime(2), "entry " + entryTime(7), "entry " + entryTime(5)));
+        assertEquals(expected, flagged("bulk:"));
+        assertEquals(2, result.getVisitors());
+        assertEquals(3, result.getLogs());
+        assertEquals(4, result.getEntries());
+
+        // every row flagged by the run shares one timestamp; earlier archives keep theirs
+        for (VisitorLog log : visitorLogRepository.findAll()) {
+            if (!Boolean.TRUE.equals(log.getArchived())) continue;
+            Timestamp expectedAt = log.getPurposeOfVisit().endsWith("already-archived") ? EARLIER_ARCHIVE : result.getArchivedAt();
+            assertEquals(expectedAt, log.getArchivedAt());
+        }
+        for (Visitor v : visitorRepository.findAll()) {
+            if (Boolean.TRUE.equals(v.getArchived())) {
+                assertEquals(result.getArchivedAt(), v.getArchivedAt());
+            }
+        }
+    }
+
+    /**
+     * Two selected visitors and one bystander:
+     * a: finished log (2 entries), finished log with archived = null (1 entry),
+     *    active log (1 entry), already archived log (1 entry)
+     * b: finished log (1 entry)
+     * c: finished log (1 entry) and finished log with archived = null (1 entry), not selected
+     */
+    private List<Long> seed(String prefix) {
+        Visitor a = visitor(prefix + "a");
+        Visitor b = visitor(prefix + "b");
+        Visitor c = visitor(prefix + "c");
+
+        VisitorLog aFinished = log(a, prefix + "a-finished", true, false);
+        entry(aFinished, 1);
+        entry(aFinished, 2);
+        entry(log(a, prefix + "a-unflagged", true, null), 7);
+        entry(log(a, prefix + "a-active", false, false), 3);
+        entry(log(a, prefix + "a-already-archived", true, true), 4);
+
+        entry(log(b, prefix + "b-finished", true, false), 5);
+        entry(log(c, prefix + "c-finished", true, false), 6);
+        // a null flag does not make another visitor's log archivable
+        entry(log(c, prefix + "c-unflagged", true, null), 8);
+
+        return Arrays.asList(a.getVisitorID(), b.getVisitorID());
+    }
+
+    /**
+     * Archived rows of one dataset, keyed without the dataset prefix.
+     */
+    private Set<String> flagged(String prefix) {
+        Set<String> keys = new TreeSet<>();
+        keys.addAll(visitorRepository.findAll().stream()
+                .filter(v -> v.getVisitorName().startsWith(prefix) && Boolean.TRUE.equals(v.getArchived()))
+                .map(v -> "visitor " + v.getVisitorName().substring(prefix.length()))
+                .collect(Collectors.toList()));
+        keys.addAll(visitorLogRepository.findAll().stream()
+                .filter(l -> l.getPurposeOfVisit().startsWith(prefix) && Boolean.TRUE.equals(l.getArchived()))
+                .map(l -> "log " + l.getPurposeOfVisit().substring(prefix.length()))
+                .collect(Collectors.toList()));
+        keys.addAll(visitorLogEntryRepository.findAll().stream()
+                .filter(e -> e.getVisitorLog().getPurposeOfVisit().startsWith(prefix) && Boolean.TRUE.equals(e.getArchived()))
+                .map(e -> "entry " + e.getTimestamp().getTime())
+                .collect(Collectors.toList()));
+        return keys;
+    }
+
+    private Visitor visitor(String name) {
+        Visitor v = new Visitor(name, "Guest", "Student ID", name, null, new Timestamp(BASE));
+        v.setArchived(false);
+        return em.persist(v);
+    }
+
+    private VisitorLog log(Visitor visitor, String purpose, boolean finished, Boolean archived) {
+        VisitorLog log = new VisitorLog(visitor, null, new Timestamp(BASE), finished ? new Timestamp(BASE + 3_600_000L) : null);
+        log.setPurposeOfVisit(purpose);
+        log.setArchived(archived);
+        log.setArchivedAt(Boolean.TRUE.equals(archived) ? EARLIER_ARCHIVE : null);
+        return em.persist(log);
+    }
+
+    private long entryTime(int n) {
+        return BASE + n * 60_000L;
+    }
+
+    private void entry(VisitorLog log, int n) {
+        VisitorLogEntry entry = new VisitorLogEntry(log, gate, guard, new Timestamp(entryTime(n)));
+        entry.setArchived(false);
+        em.persist(entry);
+    }
+}
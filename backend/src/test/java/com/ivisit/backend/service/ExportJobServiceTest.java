@@ -0,0 +1,172 @@
+package com.ivisit.backend.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportJobServiceTest {
+
+    private interface Script {
+        void write(OutputStream out, ExportProgress progress) throws Exception;
+    }
+
+    /**
+     * Runs the script registered for the first visitor id instead of building a PDF.
+     */
+    private static class ScriptedExportService extends ExportService {
+        final Map<Long, Script> scripts = new ConcurrentHashMap<>();
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public void exportVisitorsSelectionPdf(Collection<Long> visitorIds, OutputStream out, ExportProgress progress) {
+            calls.incrementAndGet();
+            try {
+                scripts.get(visitorIds.iterator().next()).write(out, progress);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    @TempDir
+    Path uploadDir;
+
+    private final ScriptedExportService exportService = new ScriptedExportService();
+    private final ExportJobService exportJobService = new ExportJobService();
+
+    @BeforeEach
+    void start() {
+        ReflectionTestUtils.setField(exportJobService, "exportService", exportService);
+        ReflectionTestUtils.setField(exportJobService, "uploadDir", uploadDir.toString());
+        ReflectionTestUtils.setField(exportJobService, "threads", 1);
+        ReflectionTestUtils.setField(exportJobService, "queueCapacity", 20);
+        ReflectionTestUtils.setField(exportJobService, "ttlMinutes", 60L);
+        exportJobService.init();
+    }
+
+    @AfterEach
+    void stop() {
+        exportJobService.shutdown();
+    }
+
+    @Test
+    void cancelledQueuedJobNeverStarts() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        exportService.scripts.put(1L, (out, progress) -> release.await(5, TimeUnit.SECONDS));
+        exportService.scripts.put(2L, (out, progress) -> fail("cancelled job ran"));
+
+        ExportJobService.ExportJob blocker = submit(1L);
+        ExportJobService.ExportJob queued = submit(2L);
+
+        assertTrue(exportJobService.cancel(queued.getId()));
+        assertEquals(ExportJobService.CANCELLED, queued.getStatus());
+
+        release.countDown();
+        awaitFinished(blocker);
+        assertEquals(ExportJobService.DONE, blocker.getStatus());
+        assertEquals(1, exportService.calls.get());
+        assertFalse(Files.exists(queued.getFile()));
+    }
+
+    @Test
+    void cancelledRunningJobStopsAtItsNextRows() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        exportService.scripts.put(1L, (out, progress) -> {
+            progress.start(3);
+            out.write('a');
+            progress.rowsDone(1);
+            started.countDown();
+            proceed.await(5, TimeUnit.SECONDS);
+            progress.rowsDone(1);
+            fail("rowsDone did not stop the cancelled job");
+        });
+
+        ExportJobService.ExportJob job = submit(1L);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(ExportJobService.RUNNING, job.getStatus());
+
+        assertTrue(exportJobService.cancel(job.getId()));
+        proceed.countDown();
+        awaitFinished(job);
+
+        assertEquals(ExportJobService.CANCELLED, job.getStatus());
+        assertEquals(1, job.getProcessedRows());
+        assertNull(job.getError());
+        assertFalse(Files.exists(job.getFile()));
+        assertFalse(Files.exists(job.getFile().resolveSibling(job.getId() + ".part")));
+    }
+
+    @Test
+    void cancelRacingCompletionStillWins() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        exportService.scripts.put(1L, (out, progress) -> {
+            progress.start(1);
+            progress.rowsDone(1);
+            started.countDown();
+            // the last row is already written; the body returns without checking again
+            proceed.await(5, TimeUnit.SECONDS);
+            out.write('a');
+        });
+
+        ExportJobService.ExportJob job = submit(1L);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(exportJobService.cancel(job.getId()));
+        proceed.countDown();
+        awaitFinished(job);
+
+        assertEquals(ExportJobService.CANCELLED, job.getStatus());
+        assertFalse(Files.exists(job.getFile()));
+    }
+
+    @Test
+    void purgeExpiredDropsTheJobAndItsArtifact() throws Exception {
+        exportService.scripts.put(1L, (out, progress) -> out.write('a'));
+
+        ExportJobService.ExportJob job = submit(1L);
+        awaitFinished(job);
+        assertEquals(ExportJobService.DONE, job.getStatus());
+        assertTrue(Files.exists(job.getFile()));
+
+        // nothing has expired yet
+        exportJobService.purgeExpired();
+        assertSame(job, exportJobService.getJob(job.getId()));
+
+        // a negative TTL puts the cutoff in the future, so the finished job is past it
+        ReflectionTestUtils.setField(exportJobService, "ttlMinutes", -1L);
+        exportJobService.purgeExpired();
+
+        assertNull(exportJobService.getJob(job.getId()));
+        assertFalse(Files.exists(job.getFile()));
+    }
+
+    private ExportJobService.ExportJob submit(Long visitorId) {
+        return exportJobService.submitVisitorsPdf(Collections.singletonList(visitorId), "visitors-" + visitorId + ".pdf");
+    }
+
+    private void awaitFinished(ExportJobService.ExportJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!job.isFinished()) {
+            assertTrue(System.currentTimeMillis() < deadline, "job did not finish: " + job.getStatus());
+            Thread.sleep(10);
+        }
+    }
+}
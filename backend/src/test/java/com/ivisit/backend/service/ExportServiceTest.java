@@ -0,0 +1,241 @@
+package com.ivisit.backend.service;
+
+import com.ivisit.backend.model.*;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import(ExportService.class)
+class ExportServiceTest {
+
+    // more than two keyset pages, so the table is flushed in several fragments
+    private static final int VISITORS = 1200;
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private ExportService exportService;
+
+    private final List<Long> visitorIds = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < VISITORS; i++) {
+            Visitor v = new Visitor("Visitor " + i, i % 2 == 0 ? "Guest" : "Contractor", "Student ID", "ID-" + i, null, now);
+            v.setGender("Female");
+            v.setArchived(true);
+            v.setArchivedAt(now);
+            visitorIds.add(em.persist(v).getVisitorID());
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void archiveReportStreamsEveryArchivedRow() throws Exception {
+        CountingProgress progress = new CountingProgress();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.exportArchiveReportPdf(null, null, null, null, out, progress);
+
+        assertEquals(VISITORS, progress.total);
+        assertEquals(VISITORS, progress.done);
+        assertTrue(new String(out.toByteArray(), 0, 5, StandardCharsets.US_ASCII).startsWith("%PDF"));
+    }
+
+    @Test
+    void selectionPdfCountsEachSelectedVisitorOnce() throws Exception {
+        List<Long> selection = new ArrayList<>(visitorIds.subList(0, 700));
+        selection.add(visitorIds.get(0));
+        CountingProgress progress = new CountingProgress();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.exportVisitorsSelectionPdf(selection, out, progress);
+
+        assertEquals(700, progress.total);
+        assertEquals(700, progress.done);
+        assertTrue(out.size() > 0);
+    }
+
+    @Test
+    void visitorRowCellsFollowTheHeaderOrder() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.exportVisitorsSelectionPdf(Collections.singletonList(visitorIds.get(0)), out, new CountingProgress());
+
+        // the extractor pads words with extra spaces
+        String text = new PdfTextExtractor(new PdfReader(out.toByteArray()))
+                .getTextFromPage(1).replaceAll("\\s+", " ");
+        String header = text.substring(text.indexOf("Full Name"));
+        String row = header.substring(header.indexOf("Visitor 0"));
+        assertTrue(header.indexOf("Gender") < header.indexOf("ID Type"), header);
+        assertTrue(row.indexOf("Female") >= 0 && row.indexOf("Female") < row.indexOf("Student ID"), row);
+    }
+
+    @Test
+    void archivedCsvWritersPageThroughEveryRowOnce() throws Exception {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        Station gate = em.persist(new Station("Gate, North", "GATE", true));
+        UserAccount guard = new UserAccount("guard_gate1", null, "guard@email.com", "GUARD", Collections.emptyList());
+        guard.setPassword("password");
+        em.persist(guard);
+
+        Visitor quoted = new Visitor("Doe, \"Jay\"", "Guest", "Student ID", "ID-Q", null, now);
+        quoted.setArchived(true);
+        quoted.setArchivedAt(now);
+        em.persist(quoted);
+
+        // one page and a bit of logs and entries
+        List<Long> logIds = new ArrayList<>();
+        List<Long> entryIds = new ArrayList<>();
+        for (int i = 0; i < 510; i++) {
+            VisitorLog log = new VisitorLog(em.find(Visitor.class, visitorIds.get(i)), null, now, now);
+            log.setPurposeOfVisit(i == 0 ? "Meeting, \"board\"" : "Visit " + i);
+            log.setArchived(true);
+            log.setArchivedAt(now);
+            logIds.add(em.persist(log).getVisitorLogID());
+
+            VisitorLogEntry entry = new VisitorLogEntry(log, gate, guard, now);
+            entry.setArchived(true);
+            entry.setArchivedAt(now);
+            entryIds.add(em.persist(entry).getVisitorLogEntryID());
+        }
+        em.flush();
+        em.clear();
+
+        ByteArrayOutputStream visitors = new ByteArrayOutputStream();
+        exportService.writeArchivedVisitorsCsv(null, null, visitors);
+        List<String> visitorLines = csvLines(visitors, ExportService.VISITORS_CSV_HEADER);
+        List<Long> expectedVisitors = new ArrayList<>(visitorIds);
+        expectedVisitors.add(quoted.getVisitorID());
+        assertEquals(expectedVisitors, firstColumn(visitorLines));
+        assertEquals(quoted.getVisitorID() + ",\"Doe, \"\"Jay\"\"\",Guest,,Student ID,ID-Q,," + now + ",true," + now,
+                visitorLines.get(visitorLines.size() - 1));
+
+        ByteArrayOutputStream logs = new ByteArrayOutputStream();
+        exportService.writeArchivedLogsCsv(null, null, logs);
+        List<String> logLines = csvLines(logs, ExportService.LOGS_CSV_HEADER);
+        assertEquals(logIds, firstColumn(logLines));
+        assertTrue(logLines.get(0).startsWith(logIds.get(0) + "," + visitorIds.get(0) + ",\"Meeting, \"\"board\"\"\","),
+                logLines.get(0));
+
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        exportService.writeArchivedEntriesCsv(null, null, entries);
+        List<String> entryLines = csvLines(entries, ExportService.ENTRIES_CSV_HEADER);
+        assertEquals(entryIds, firstColumn(entryLines));
+        assertTrue(entryLines.get(0).startsWith(entryIds.get(0) + "," + logIds.get(0) + ",\"Gate, North\",guard_gate1,"),
+                entryLines.get(0));
+    }
+
+    @Test
+    void selectionCsvZipHasEveryRowOfEverySelectedVisitor() throws Exception {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        Station gate = em.persist(new Station("Gate 1", "GATE", true));
+        UserAccount guard = new UserAccount("guard_gate1", null, "guard@email.com", "GUARD", Collections.emptyList());
+        guard.setPassword("password");
+        em.persist(guard);
+
+        // 700 visitors span two id batches. The second batch's rows get the lower ids and
+        // the first batch has more than a page, so its keyset must restart for batch two.
+        List<Long> selection = new ArrayList<>(visitorIds.subList(0, 700));
+        Set<Long> expectedLogs = new TreeSet<>();
+        Set<Long> expectedEntries = new TreeSet<>();
+        for (int i = 500; i < 520; i++) {
+            logWithEntry(visitorIds.get(i), now, gate, guard, expectedLogs, expectedEntries);
+        }
+        for (int i = 0; i < 510; i++) {
+            logWithEntry(visitorIds.get(i % 500), now, gate, guard, expectedLogs, expectedEntries);
+        }
+        // not selected
+        logWithEntry(visitorIds.get(900), now, gate, guard, new TreeSet<>(), new TreeSet<>());
+        em.flush();
+        em.clear();
+        selection.add(visitorIds.get(0));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.writeVisitorsSelectionCsvZip(selection, out);
+
+        Map<String, ByteArrayOutputStream> files = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            byte[] buf = new byte[8192];
+            for (ZipEntry e = zip.getNextEntry(); e != null; e = zip.getNextEntry()) {
+                ByteArrayOutputStream file = new ByteArrayOutputStream();
+                for (int n; (n = zip.read(buf)) > 0; ) {
+                    file.write(buf, 0, n);
+                }
+                files.put(e.getName(), file);
+            }
+        }
+        assertEquals(Arrays.asList("visitors.csv", "visitor_logs.csv", "visitor_log_entries.csv"),
+                new ArrayList<>(files.keySet()));
+
+        assertEquals(visitorIds.subList(0, 700), firstColumn(csvLines(files.get("visitors.csv"), ExportService.VISITORS_CSV_HEADER)));
+        assertEquals(expectedLogs, distinct(firstColumn(csvLines(files.get("visitor_logs.csv"), ExportService.LOGS_CSV_HEADER))));
+        assertEquals(expectedEntries, distinct(firstColumn(csvLines(files.get("visitor_log_entries.csv"), ExportService.ENTRIES_CSV_HEADER))));
+    }
+
+    private void logWithEntry(Long visitorId, Timestamp at, Station station, UserAccount guard,
+                              Set<Long> logIds, Set<Long> entryIds) {
+        VisitorLog log = em.persist(new VisitorLog(em.find(Visitor.class, visitorId), null, at, at));
+        logIds.add(log.getVisitorLogID());
+        entryIds.add(em.persist(new VisitorLogEntry(log, station, guard, at)).getVisitorLogEntryID());
+    }
+
+    // the ids as a set, failing on a repeat
+    private Set<Long> distinct(List<Long> ids) {
+        Set<Long> set = new TreeSet<>(ids);
+        assertEquals(ids.size(), set.size(), "duplicate rows");
+        return set;
+    }
+
+    /**
+     * Data lines after checking the header. None of the seeded values contain a newline.
+     */
+    private List<String> csvLines(ByteArrayOutputStream out, String header) {
+        List<String> lines = new ArrayList<>(Arrays.asList(new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n")));
+        assertEquals(header, lines.remove(0));
+        return lines;
+    }
+
+    // ids lead every row unquoted; keyset paging must yield them ascending, no gaps or repeats
+    private List<Long> firstColumn(List<String> lines) {
+        List<Long> ids = new ArrayList<>();
+        for (String line : lines) {
+            ids.add(Long.valueOf(line.substring(0, line.indexOf(','))));
+        }
+        return ids;
+    }
+
+    private static class CountingProgress implements ExportProgress {
+        long total = -1;
+        long done;
+
+        @Override
+        public void start(long totalRows) {
+            total = totalRows;
+        }
+
+        @Override
+        public void rowsDone(int rows) {
+            done += rows;
+        }
+    }
+}
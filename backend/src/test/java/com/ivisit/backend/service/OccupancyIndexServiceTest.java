@@ -0,0 +1,73 @@
+package com.ivisit.backend.service;
+
+import com.ivisit.backend.dto.VisitorLogDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// outside a transaction every change applies (or is held) immediately
+class OccupancyIndexServiceTest {
+
+    private final OccupancyIndexService index = new OccupancyIndexService();
+
+    @Test
+    void changesCommittedDuringLoadAreReplayedOntoSnapshot() {
+        index.beginLoad();
+        // committed after the snapshot query ran: check-in of log 2, check-out of log 1
+        index.upsert(visit(2L, 20L, 200L, null));
+        index.remove(1L);
+        assertFalse(index.isLoaded());
+
+        index.reload(Collections.singletonList(visit(1L, 10L, 100L, 5L)));
+
+        assertTrue(index.isLoaded());
+        assertEquals(1, index.getActiveCount());
+        assertEquals(Long.valueOf(2L), index.findActiveLogIdByVisitor(20L));
+        assertNull(index.findActiveLogIdByPass(100L));
+    }
+
+    @Test
+    void replayOfChangeAlreadyInSnapshotIsHarmless() {
+        index.beginLoad();
+        index.upsert(visit(1L, 10L, 100L, null));
+        index.reload(Collections.singletonList(visit(1L, 10L, 100L, null)));
+
+        assertEquals(1, index.getActiveCount());
+
+        // no longer held once loaded
+        index.remove(1L);
+        assertEquals(0, index.getActiveCount());
+    }
+
+    @Test
+    void deletedPassAndStationAreEvicted() {
+        index.reload(Arrays.asList(visit(1L, 10L, 100L, 5L), visit(2L, 20L, 200L, 6L)));
+
+        index.removePass(100L);
+        index.removeStation(6L);
+
+        assertNull(index.findActiveLogIdByPass(100L));
+        assertNull(index.getActiveVisit(1L).getPassId());
+        assertNull(index.getActiveVisit(1L).getDto().getPassNo());
+        assertEquals(Long.valueOf(1L), index.findActiveLogIdByVisitor(10L));
+
+        assertNull(index.getActiveVisit(2L).getLatestStationId());
+        List<Map<String, Object>> occupancy = index.getStationOccupancy();
+        assertEquals(2, occupancy.size());
+        for (Map<String, Object> row : occupancy) {
+            assertNotEquals(6L, row.get("stationId"));
+        }
+    }
+
+    private OccupancyIndexService.ActiveVisit visit(Long logId, Long visitorId, Long passId, Long stationId) {
+        VisitorLogDTO dto = new VisitorLogDTO();
+        dto.setPassNo(passId != null ? "P-" + passId : null);
+        return new OccupancyIndexService.ActiveVisit(logId, visitorId, passId, stationId,
+                stationId != null ? "Station " + stationId : null, dto);
+    }
+}
@@ -0,0 +1,153 @@
+package com.ivisit.backend.service;
+
+import com.ivisit.backend.dto.RfidScanRequest;
+import com.ivisit.backend.dto.RfidScanResultDTO;
+import com.ivisit.backend.model.*;
+import com.ivisit.backend.repository.VisitorLogEntryRepository;
+import com.ivisit.backend.repository.VisitorLogRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import({RfidScanService.class, VisitorPassService.class, VisitorLogService.class, VisitorLogEntryService.class,
+        OccupancyIndexService.class, LiveEventService.class, PassLookupCacheService.class})
+class RfidScanServiceTest {
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private RfidScanService rfidScanService;
+
+    @Autowired
+    private VisitorLogService visitorLogService;
+
+    @Autowired
+    private VisitorLogEntryRepository visitorLogEntryRepository;
+
+    @Autowired
+    private VisitorLogRepository visitorLogRepository;
+
+    @Autowired
+    private PassLookupCacheService passLookupCache;
+
+    private Station gate;
+    private UserAccount guard;
+
+    @BeforeEach
+    void seed() {
+        gate = em.persist(new Station("Gate 1", "GATE", true));
+
+        guard = new UserAccount("guard_gate1", null, "guard@email.com", "GUARD", Collections.emptyList());
+        guard.setPassword("password");
+        em.persist(guard);
+
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        Visitor visitor = em.persist(new Visitor("Visitor", "Guest", "Student ID", "ID-1", null, now));
+        VisitorPass pass = em.persist(new VisitorPass("865A4BA6", null, "IN_USE"));
+
+        VisitorLog log = new VisitorLog(visitor, pass, now, null);
+        log.setAllowedStations(new ArrayList<>(Collections.singletonList(gate)));
+        em.persist(log);
+
+        em.flush();
+        em.clear();
+
+        visitorLogService.loadOccupancyIndex();
+        // the cache outlives each test's rolled-back rows
+        passLookupCache.clear();
+    }
+
+    @Test
+    void resendingAScanIdDoesNotRecordASecondEntry() {
+        RfidScanResultDTO first = rfidScanService.processScan(scan("scan-1"));
+        RfidScanResultDTO resend = rfidScanService.processScan(scan("scan-1"));
+
+        assertEquals(RfidScanResultDTO.ENTRY_RECORDED, first.getAction());
+        assertFalse(first.getDuplicate());
+
+        assertTrue(resend.getDuplicate());
+        assertEquals(first.getAction(), resend.getAction());
+        assertEquals(first.getEntryId(), resend.getEntryId());
+        assertEquals(1, visitorLogEntryRepository.count());
+    }
+
+    @Test
+    void replayedOlderScanDoesNotBecomeTheLatestEntry() {
+        Instant now = Instant.now();
+        RfidScanResultDTO live = rfidScanService.processScan(scanAt("scan-live", now));
+        // an outbox tap from before the live one arrives late
+        RfidScanResultDTO replayed = rfidScanService.processScan(scanAt("scan-replay", now.minus(5, ChronoUnit.MINUTES)));
+
+        assertEquals(RfidScanResultDTO.ENTRY_RECORDED, replayed.getAction());
+        assertEquals(2, visitorLogEntryRepository.count());
+
+        VisitorLog log = visitorLogRepository.findById(live.getVisitorLogId()).orElseThrow(AssertionError::new);
+        assertEquals(live.getEntryId(), log.getLatestEntryID());
+    }
+
+    @Test
+    void scannedAtFromTheFutureFallsBackToServerTime() {
+        Instant before = Instant.now();
+        RfidScanResultDTO result = rfidScanService.processScan(scanAt("scan-ahead", before.plus(2, ChronoUnit.DAYS)));
+
+        VisitorLogEntry entry = visitorLogEntryRepository.findById(result.getEntryId()).orElseThrow(AssertionError::new);
+        assertFalse(entry.getTimestamp().toInstant().isAfter(Instant.now()));
+    }
+
+    @Test
+    void replayedExitScanEndsTheLogAtTapTime() {
+        Instant tappedAt = Instant.now().minus(10, ChronoUnit.MINUTES).truncatedTo(ChronoUnit.SECONDS);
+        RfidScanRequest request = scanAt("scan-out", tappedAt);
+        request.setDirection("OUT");
+
+        RfidScanResultDTO result = rfidScanService.processScan(request);
+
+        assertEquals(RfidScanResultDTO.CHECKED_OUT, result.getAction());
+        VisitorLog log = visitorLogRepository.findById(result.getVisitorLogId()).orElseThrow(AssertionError::new);
+        assertEquals(tappedAt, log.getActiveEnd().toInstant());
+        VisitorLogEntry exit = visitorLogEntryRepository.findById(result.getEntryId()).orElseThrow(AssertionError::new);
+        assertEquals(tappedAt, exit.getTimestamp().toInstant());
+    }
+
+    @Test
+    void externalIdSpellingsAreNotCachedAsOneAnother() {
+        em.persist(new VisitorPass("0000AAAA", "ext-card", "AVAILABLE"));
+        em.flush();
+
+        RfidScanRequest exact = scan("scan-exact");
+        exact.setUid(" ext-card ");
+        RfidScanRequest upper = scan("scan-upper");
+        upper.setUid("EXT-CARD");
+
+        assertEquals(RfidScanResultDTO.NO_ACTIVE_LOG, rfidScanService.processScan(exact).getAction());
+        assertEquals(RfidScanResultDTO.UNKNOWN_PASS, rfidScanService.processScan(upper).getAction());
+    }
+
+    private RfidScanRequest scanAt(String scanId, Instant scannedAt) {
+        RfidScanRequest request = scan(scanId);
+        request.setScannedAt(scannedAt.toString());
+        return request;
+    }
+
+    private RfidScanRequest scan(String scanId) {
+        RfidScanRequest request = new RfidScanRequest();
+        request.setScanId(scanId);
+        request.setUid("865a4ba6");
+        request.setStationId(String.valueOf(gate.getId()));
+        request.setGuardAccountId(guard.getId());
+        return request;
+    }
+}
@@ -0,0 +1,139 @@
+package com.ivisit.backend.service;
+
+import com.ivisit.backend.dto.VisitorLogDTO;
+import com.ivisit.backend.dto.VisitorLogPageDTO;
+import com.ivisit.backend.model.*;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({VisitorLogService.class, VisitorLogEntryService.class, OccupancyIndexService.class, LiveEventService.class, PassLookupCacheService.class})
+class VisitorLogServiceQueryCountTest {
+
+    private static final int LOG_COUNT = 30;
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private VisitorLogService visitorLogService;
+
+    @Autowired
+    private VisitorLogEntryService visitorLogEntryService;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void seed() {
+        Station gate = em.persist(new Station("Gate 1", "GATE", true));
+        Station lobby = em.persist(new Station("Main Lobby", "BUILDING", true));
+
+        UserAccount guard = new UserAccount("guard_gate1", null, "guard@email.com", "GUARD", Collections.emptyList());
+        guard.setPassword("password");
+        em.persist(guard);
+
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < LOG_COUNT; i++) {
+            Visitor visitor = em.persist(new Visitor("Visitor " + i, "Guest", "Student ID", "ID-" + i, null, new Timestamp(now)));
+
+            VisitorPass pass = new VisitorPass("UID" + i, null, "IN_USE");
+            pass.setDisplayCode(String.format("%03d", i));
+            em.persist(pass);
+
+            VisitorLog log = new VisitorLog(visitor, pass, new Timestamp(now), null);
+            log.setPurposeOfVisit(i == 0 ? "100% Meeting" : "Meeting");
+            log.setAllowedStations(new ArrayList<>(Arrays.asList(gate, lobby)));
+            em.persist(log);
+
+            visitorLogEntryService.addEntry(log, gate, guard, new Timestamp(now + i));
+            visitorLogEntryService.addEntry(log, lobby, guard, new Timestamp(now + 1000 + i));
+        }
+
+        em.flush();
+        em.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void allLogsUseBoundedStatements() {
+        List<VisitorLogDTO> dtos = visitorLogService.getAllLogsDTO();
+
+        assertEquals(LOG_COUNT, dtos.size());
+        // log rows (incl. first/latest entry) + allowed stations, regardless of LOG_COUNT
+        assertEquals(2, statistics.getPrepareStatementCount());
+
+        VisitorLogDTO first = dtos.get(0);
+        assertEquals("Gate 1", first.getFirstLocation());
+        assertEquals("Main Lobby", first.getLocation());
+        assertEquals("guard_gate1", first.getLoggedBy());
+        assertEquals("000", first.getPassNo());
+        assertEquals(Arrays.asList("Gate 1", "Main Lobby"), first.getAllowedStations());
+    }
+
+    @Test
+    void activeLogsAreServedFromOccupancyIndex() {
+        visitorLogService.loadOccupancyIndex();
+        statistics.clear();
+
+        List<VisitorLogDTO> dtos = visitorLogService.getActiveLogsDTO();
+
+        assertEquals(LOG_COUNT, dtos.size());
+        assertEquals("Main Lobby", dtos.get(0).getLocation());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void logBookPageUsesTwoStatementsPerPage() {
+        VisitorLogPageDTO page = visitorLogService.getLogsPage(null, 10, null, null, null, null, null, null);
+
+        assertEquals(10, page.getItems().size());
+        assertTrue(page.getHasMore());
+        assertEquals(2, statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        VisitorLogPageDTO next = visitorLogService.getLogsPage(page.getNextCursor(), 10, null, null, null, null, null, null);
+
+        assertEquals(10, next.getItems().size());
+        assertTrue(next.getItems().get(0).getVisitorLogID() < page.getNextCursor());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void logBookTextFiltersMatchLiterally() {
+        VisitorLogPageDTO byPurpose = visitorLogService.getLogsPage(null, 50, null, null, null, " 100% meet ", null, null);
+        assertEquals(1, byPurpose.getItems().size());
+        assertEquals("Visitor 0", byPurpose.getItems().get(0).getFullName());
+
+        // % and _ are not wildcards
+        assertEquals(1, visitorLogService.getLogsPage(null, 50, null, null, null, "%", null, null).getItems().size());
+        assertEquals(0, visitorLogService.getLogsPage(null, 50, null, null, null, "_", null, null).getItems().size());
+
+        VisitorLogPageDTO byName = visitorLogService.getLogsPage(null, 50, null, null, null, null, null, "visitor 2");
+        assertEquals(11, byName.getItems().size()); // 2 and 20-29
+        assertEquals(0, visitorLogService.getLogsPage(null, 50, null, null, null, null, null, "2").getItems().size());
+    }
+}
@@ -1,108 +1,163 @@
 package com.ivisit.helper;
 
+import com.ivisit.helper.config.StationConfigService;
 import com.ivisit.helper.sender.RfidSender;
 import com.ivisit.helper.service.RfidService;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
-import javax.smartcardio.CardException;
-
+import javax.annotation.PreDestroy;
+import javax.smartcardio.CardTerminal;
+import java.util.*;
+
+/**
+ * Keeps one RfidReaderWorker running per attached reader.
+ *
+ * With lanes configured in StationConfigService, every terminal mapped to a lane gets
+ * a worker and its scans are tagged with that lane. Without lanes, only the
+ * contactless reader is used, untagged. Readers are re-listed every few seconds, so
+ * plugging one in or out needs no restart.
+ */
 @Component
 public class RfidLoopRunner implements CommandLineRunner {
 
+    private static final long SUPERVISE_INTERVAL_MS = 2000;
+
     private final RfidService rfidService;
     private final RfidSender rfidSender;
+    private final StationConfigService stationConfigService;
+
+    // terminal name -> worker; only touched by the supervisor thread
+    private final Map<String, RfidReaderWorker> workers = new HashMap<>();
+
+    private volatile boolean running;
+    private Thread supervisorThread;
 
-    // tracking consecutive scanner-level failures
+    // tracking consecutive polls without a usable reader
     private int consecutiveScannerErrors = 0;
 
     // Flag to track if we've already notified about missing reader
     private boolean noReaderNotified = false;
 
-    public RfidLoopRunner(RfidService rfidService, RfidSender rfidSender) {
+    public RfidLoopRunner(RfidService rfidService, RfidSender rfidSender,
+                          StationConfigService stationConfigService) {
         this.rfidService = rfidService;
         this.rfidSender = rfidSender;
+        this.stationConfigService = stationConfigService;
     }
 
     @Override
-    public void run(String... args) throws Exception {
+    public void run(String... args) {
+        running = true;
+        supervisorThread = new Thread(this::superviseLoop, "rfid-supervisor");
+        supervisorThread.setDaemon(true);
+        supervisorThread.start();
         System.out.println("iVisit-helper RFID loop is running...");
+    }
 
-        while (true) {
-            try {
-                if (!noReaderNotified) {
-                    // Only log "Waiting for card..." when reader is available
-                    System.out.println("Waiting for card...");
-                }
-                String uid = rfidService.readCardUID(10_000); // 10 seconds
-
-                if (uid != null) {
-                    System.out.println("Card detected. UID = " + uid);
-                    rfidSender.sendScan(uid);
-
-                    // SUCCESS -> reset error counter and notification flag
-                    consecutiveScannerErrors = 0;
-                    noReaderNotified = false;
-                } else {
-                    // "No card" is not a scanner failure; also reset the counter
-                    consecutiveScannerErrors = 0;
-                    noReaderNotified = false;
-                }
-            } catch (Exception e) {
-                String msg = e.getMessage();
-
-                if (isScannerFatalError(e)) {
-                    consecutiveScannerErrors++;
-
-                    if (consecutiveScannerErrors >= 5 && !noReaderNotified) {
-                        // Only log this ONCE when no reader detected
-                        System.out.println(
-                                "[RFID] No RFID reader detected. OCR remains available. (Will auto-reconnect when plugged in)");
-                        noReaderNotified = true;
-                        consecutiveScannerErrors = 0;
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (supervisorThread != null) {
+            supervisorThread.interrupt();
+        }
+        synchronized (workers) {
+            for (RfidReaderWorker worker : workers.values()) {
+                worker.stop();
+            }
+            workers.clear();
+        }
+    }
+
+    private void superviseLoop() {
+        while (running) {
+            Map<String, StationConfigService.Lane> wanted = wantedTerminals();
+
+            synchronized (workers) {
+                // drop workers whose reader vanished or whose thread ended
+                Iterator<Map.Entry<String, RfidReaderWorker>> it = workers.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<String, RfidReaderWorker> e = it.next();
+                    if (!wanted.containsKey(e.getKey()) || !e.getValue().isAlive()) {
+                        e.getValue().stop();
+                        it.remove();
                     }
+                }
 
-                    // Sleep longer when no reader to reduce CPU usage
-                    Thread.sleep(noReaderNotified ? 10_000 : 1000);
-                    continue;
-                } else {
-                    // Non-scanner error -> log it
-                    System.err.println("Error reading card: " + msg);
-                    consecutiveScannerErrors = 0;
+                for (Map.Entry<String, StationConfigService.Lane> e : wanted.entrySet()) {
+                    if (!workers.containsKey(e.getKey())) {
+                        RfidReaderWorker worker = new RfidReaderWorker(e.getKey(), e.getValue(), rfidService, rfidSender);
+                        workers.put(e.getKey(), worker);
+                        worker.start();
+                    }
                 }
             }
 
-            // small delay to avoid tight loop if something goes wrong
-            Thread.sleep(1000);
+            try {
+                Thread.sleep(SUPERVISE_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
         }
     }
 
     /**
-     * Decide if this looks like a scanner / driver level problem
-     * (PC/SC, terminals missing, etc.), not just normal “no card” behavior.
+     * Terminal name -> lane (null lane = untagged) for every reader that should be scanning.
      */
-    private boolean isScannerFatalError(Exception e) {
-        // Explicit smartcard exception
-        if (e instanceof CardException) {
-            return true;
+    private Map<String, StationConfigService.Lane> wantedTerminals() {
+        List<CardTerminal> terminals;
+        try {
+            terminals = rfidService.listTerminals();
+        } catch (Exception e) {
+            // stale PC/SC context (e.g. last reader unplugged); rebuild it next poll
+            rfidService.resetContext();
+            terminals = Collections.emptyList();
         }
 
-        String msg = safeMessage(e.getMessage()).toLowerCase();
-
-        // Common cases:
-        // - "No card terminals found" (your IllegalStateException)
-        // - "list() failed" from PC/SC
-        if (msg.contains("no card terminals found"))
-            return true;
-        if (msg.contains("list() failed"))
-            return true;
-        if (msg.contains("scard") && msg.contains("error"))
-            return true;
+        Map<String, StationConfigService.Lane> wanted = new LinkedHashMap<>();
+        if (!terminals.isEmpty()) {
+            if (stationConfigService.getLanes().isEmpty()) {
+                wanted.put(rfidService.preferredTerminal(terminals).getName(), null);
+            } else {
+                for (CardTerminal t : terminals) {
+                    StationConfigService.Lane lane = stationConfigService.laneFor(t.getName());
+                    if (lane != null) {
+                        wanted.put(t.getName(), lane);
+                    }
+                }
+            }
+        }
 
-        return false;
+        if (wanted.isEmpty()) {
+            consecutiveScannerErrors++;
+            if (consecutiveScannerErrors >= 5 && !noReaderNotified) {
+                // Only log this ONCE when no reader detected
+                System.out.println(
+                        "[RFID] No RFID reader detected. OCR remains available. (Will auto-reconnect when plugged in)");
+                noReaderNotified = true;
+            }
+        } else {
+            consecutiveScannerErrors = 0;
+            noReaderNotified = false;
+        }
+        return wanted;
     }
 
-    private String safeMessage(String msg) {
-        return msg == null ? "(no message)" : msg;
+    /**
+     * Readers currently being scanned, for status endpoints.
+     */
+    public List<Map<String, Object>> getActiveReaders() {
+        List<Map<String, Object>> readers = new ArrayList<>();
+        synchronized (workers) {
+            for (RfidReaderWorker worker : workers.values()) {
+                Map<String, Object> r = new HashMap<>();
+                r.put("terminal", worker.getTerminalName());
+                r.put("lane", worker.getLane() != null ? worker.getLane().getName() : null);
+                r.put("direction", worker.getLane() != null ? worker.getLane().getDirection() : null);
+                readers.add(r);
+            }
+        }
+        return readers;
     }
 }
@@ -0,0 +1,111 @@
+package com.ivisit.helper;
+
+import com.ivisit.helper.config.StationConfigService;
+import com.ivisit.helper.sender.RfidSender;
+import com.ivisit.helper.service.RfidService;
+
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CardTerminals;
+
+/**
+ * Scans one CardTerminal. Each worker has its own PC/SC context and sleeps in
+ * waitForChange, so readers at the same station scan in parallel. The worker ends
+ * when its terminal goes away; RfidLoopRunner starts a new one if it comes back.
+ */
+class RfidReaderWorker implements Runnable {
+
+    // waitForChange timeout; only bounds how quickly stop() is noticed
+    private static final long WAIT_FOR_CHANGE_MS = 10_000;
+
+    private final String terminalName;
+    private final StationConfigService.Lane lane; // null = untagged single reader
+    private final RfidService rfidService;
+    private final RfidSender rfidSender;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    RfidReaderWorker(String terminalName, StationConfigService.Lane lane,
+                     RfidService rfidService, RfidSender rfidSender) {
+        this.terminalName = terminalName;
+        this.lane = lane;
+        this.rfidService = rfidService;
+        this.rfidSender = rfidSender;
+    }
+
+    void start() {
+        running = true;
+        thread = new Thread(this, "rfid-reader-" + (lane != null ? lane.getName() : "default"));
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    boolean isAlive() {
+        return thread != null && thread.isAlive();
+    }
+
+    String getTerminalName() {
+        return terminalName;
+    }
+
+    StationConfigService.Lane getLane() {
+        return lane;
+    }
+
+    @Override
+    public void run() {
+        System.out.println("Waiting for card on " + terminalName
+                + (lane != null ? " (lane " + lane.getName() + ", " + lane.getDirection() + ")" : "") + "...");
+
+        CardTerminals terminals = rfidService.newTerminals();
+        while (running) {
+            try {
+                if (!terminals.waitForChange(WAIT_FOR_CHANGE_MS)) {
+                    continue; // idle
+                }
+
+                // other readers' events wake us too; only our terminal is read
+                for (CardTerminal t : terminals.list(CardTerminals.State.CARD_INSERTION)) {
+                    if (!t.getName().equals(terminalName)) {
+                        continue;
+                    }
+                    String uid = rfidService.readUid(t);
+                    if (uid != null) {
+                        System.out.println("Card detected on " + laneLabel() + ". UID = " + uid);
+                        rfidSender.sendScan(uid, lane);
+                    }
+                }
+            } catch (Exception e) {
+                if (isCardError(e)) {
+                    // e.g. card pulled away mid-read; the reader itself is fine
+                    System.err.println("Error reading card on " + laneLabel() + ": " + e.getMessage());
+                    continue;
+                }
+                if (running) {
+                    System.out.println("[RFID] Reader " + terminalName + " stopped: " + e.getMessage());
+                }
+                return;
+            }
+        }
+    }
+
+    private boolean isCardError(Exception e) {
+        if (!(e instanceof CardException)) {
+            return false;
+        }
+        String msg = e.getMessage() == null ? "" : e.getMessage().toLowerCase();
+        return msg.contains("removed") || msg.contains("unpowered") || msg.contains("unresponsive");
+    }
+
+    private String laneLabel() {
+        return lane != null ? lane.getName() : terminalName;
+    }
+}
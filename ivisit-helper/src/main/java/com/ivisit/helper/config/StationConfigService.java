@@ -10,24 +10,59 @@ import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 
 @Service
 public class StationConfigService {
 
+    /**
+     * One reader lane at this station, e.g. the entry and exit readers of a gate.
+     * Configured as "name:direction:readerMatch" entries, comma-separated; a terminal
+     * belongs to the first lane whose readerMatch appears in its PC/SC name.
+     */
+    public static final class Lane {
+        private final String name;
+        private final String direction; // IN or OUT
+        private final String readerMatch;
+
+        public Lane(String name, String direction, String readerMatch) {
+            this.name = name;
+            this.direction = direction;
+            this.readerMatch = readerMatch;
+        }
+
+        public String getName() { return name; }
+        public String getDirection() { return direction; }
+        public String getReaderMatch() { return readerMatch; }
+
+        public boolean matches(String terminalName) {
+            return terminalName != null
+                    && terminalName.toLowerCase().contains(readerMatch.toLowerCase());
+        }
+    }
+
     private final Path configPath;
 
     // Default from application.properties (fallback)
     private final int defaultStationId;
 
+    // Default lanes from application.properties (fallback)
+    private final String defaultLanes;
+
     // In-memory current value
     private volatile int currentStationId;
+    private volatile List<Lane> lanes = Collections.emptyList();
 
     public StationConfigService(
             @Value("${station.id:0}") int defaultStationId,
-            @Value("${station.config.path:}") String configPathProp
+            @Value("${station.config.path:}") String configPathProp,
+            @Value("${station.lanes:}") String defaultLanes
     ) {
         this.defaultStationId = defaultStationId;
+        this.defaultLanes = defaultLanes;
 
         if (configPathProp != null && !configPathProp.trim().isEmpty()) {
             this.configPath = Paths.get(configPathProp.trim());
@@ -40,12 +75,17 @@ public class StationConfigService {
     @PostConstruct
     public void init() {
         // Load from disk if present, otherwise fallback to application.properties
-        Integer loaded = loadFromDisk();
+        Properties props = loadFromDisk();
+
+        Integer loaded = parseStationId(props.getProperty("stationId"));
         if (loaded != null && loaded > 0) {
             currentStationId = loaded;
         } else {
             currentStationId = defaultStationId;
         }
+
+        String rawLanes = props.getProperty("lanes");
+        lanes = parseLanes(rawLanes != null ? rawLanes : defaultLanes);
     }
 
     public int getStationId() {
@@ -57,30 +97,78 @@ public class StationConfigService {
         saveToDisk(stationId);
     }
 
-    private Integer loadFromDisk() {
-        if (!Files.exists(configPath)) {
+    /**
+     * Configured lanes; empty means a single untagged reader (the contactless one).
+     */
+    public List<Lane> getLanes() {
+        return lanes;
+    }
+
+    /**
+     * The lane a terminal belongs to, or null if it isn't mapped to one.
+     */
+    public Lane laneFor(String terminalName) {
+        for (Lane lane : lanes) {
+            if (lane.matches(terminalName)) {
+                return lane;
+            }
+        }
+        return null;
+    }
+
+    private Integer parseStationId(String raw) {
+        if (raw == null) return null;
+
+        try {
+            return Integer.parseInt(raw.trim());
+        } catch (NumberFormatException e) {
             return null;
         }
+    }
+
+    private List<Lane> parseLanes(String raw) {
+        if (raw == null || raw.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Lane> parsed = new ArrayList<>();
+        for (String entry : raw.split(",")) {
+            String[] parts = entry.trim().split(":", 3);
+            if (parts.length != 3 || parts[0].trim().isEmpty() || parts[2].trim().isEmpty()) {
+                System.err.println("[StationConfigService] Ignoring lane \"" + entry.trim()
+                        + "\" (expected name:IN|OUT:readerMatch)");
+                continue;
+            }
 
+            String direction = parts[1].trim().toUpperCase();
+            if (!"IN".equals(direction) && !"OUT".equals(direction)) {
+                System.err.println("[StationConfigService] Ignoring lane \"" + entry.trim()
+                        + "\" (direction must be IN or OUT)");
+                continue;
+            }
+
+            parsed.add(new Lane(parts[0].trim(), direction, parts[2].trim()));
+        }
+        return Collections.unmodifiableList(parsed);
+    }
+
+    private Properties loadFromDisk() {
         Properties props = new Properties();
+        if (!Files.exists(configPath)) {
+            return props;
+        }
+
         try (InputStream in = Files.newInputStream(configPath)) {
             props.load(in);
-            String raw = props.getProperty("stationId");
-            if (raw == null) return null;
-
-            try {
-                return Integer.parseInt(raw.trim());
-            } catch (NumberFormatException e) {
-                return null;
-            }
         } catch (IOException e) {
             System.err.println("[StationConfigService] Failed to read " + configPath + ": " + e.getMessage());
-            return null;
         }
+        return props;
     }
 
     private void saveToDisk(int stationId) throws IOException {
-        Properties props = new Properties();
+        // keep other keys (lanes) that live in the same file
+        Properties props = loadFromDisk();
         props.setProperty("stationId", Integer.toString(stationId));
 
         Path parent = configPath.getParent();
@@ -1,34 +1,98 @@
 package com.ivisit.helper.controller;
 
+import com.ivisit.helper.service.OcrEnginePool;
 import com.ivisit.helper.utils.ImagePreprocessor;
-import net.sourceforge.tess4j.Tesseract;
+import net.sourceforge.tess4j.ITessAPI;
 import net.sourceforge.tess4j.TesseractException;
+import net.sourceforge.tess4j.Word;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PreDestroy;
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
 
 @RestController
 @RequestMapping("/api/ocr")
 public class OcrController {
 
-    private final Tesseract tesseract;
+    private static final class Variant {
+        final String method;
+        final UnaryOperator<BufferedImage> preprocess;
+
+        Variant(String method, UnaryOperator<BufferedImage> preprocess) {
+            this.method = method;
+            this.preprocess = preprocess;
+        }
+    }
 
-    public OcrController(@Value("${tesseract.datapath}") String dataPath) {
-        this.tesseract = new Tesseract();
-        this.tesseract.setDatapath(dataPath);
-        this.tesseract.setLanguage("eng");
-        // Set DPI for better OCR (prevents "Invalid resolution 0 dpi" warning)
-        this.tesseract.setTessVariable("user_defined_dpi", "300");
-        this.tesseract.setTessVariable(
-                "tessedit_char_whitelist",
-                "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz1234567890- /,.");
+    // Multipass variants; on equal scores the earlier one wins
+    private static final List<Variant> VARIANTS = Arrays.asList(
+            new Variant("standard", ImagePreprocessor::preprocessStandard),
+            new Variant("highContrast", ImagePreprocessor::preprocessHighContrast),
+            new Variant("inverted", ImagePreprocessor::preprocessInverted),
+            new Variant("binarized", ImagePreprocessor::preprocessBinarized),
+            new Variant("adaptiveLocal", ImagePreprocessor::preprocessAdaptiveLocal));
+
+    // National ID (PSN, 4-4-4-4), PhilHealth (2-9-1) and SSS (2-7-1) numbers, as parsed by the frontend
+    private static final String DEFAULT_ID_PATTERN =
+            "\\d{4}[- ]?\\d{3,4}[- ]?\\d{4}[- ]?\\d{1,4}|\\d{2}-?\\d{9}-?\\d|\\d{2}-?\\d{7}-?\\d";
+
+    // How often a variant produced the chosen result; drives the early-exit order
+    private static final class VariantStats {
+        final AtomicLong runs = new AtomicLong();
+        final AtomicLong wins = new AtomicLong();
+        final AtomicLong earlyExits = new AtomicLong();
+
+        // smoothed so an unseen variant starts at 0.5 instead of 0 or 1
+        double winRate() {
+            return (wins.get() + 1.0) / (runs.get() + 2.0);
+        }
+    }
+
+    private final Map<String, VariantStats> stats = new LinkedHashMap<>();
+
+    private final boolean earlyExitDefault;
+    private final int minConfidence;
+    private final Pattern idPattern;
+
+    private final OcrEnginePool engines;
+    // at most one pass thread per pooled engine, so a multipass request never waits on itself
+    private final ExecutorService passExecutor;
+
+    public OcrController(OcrEnginePool engines,
+                         @Value("${ocr.multipass.early-exit:true}") boolean earlyExitDefault,
+                         @Value("${ocr.multipass.min-confidence:80}") int minConfidence,
+                         @Value("${ocr.multipass.id-pattern:}") String idPattern) {
+        this.engines = engines;
+        this.earlyExitDefault = earlyExitDefault;
+        this.minConfidence = minConfidence;
+        this.idPattern = Pattern.compile(idPattern == null || idPattern.trim().isEmpty()
+                ? DEFAULT_ID_PATTERN : idPattern.trim());
+        for (Variant variant : VARIANTS) {
+            stats.put(variant.method, new VariantStats());
+        }
+
+        int threads = Math.min(VARIANTS.size(), engines.getSize());
+        this.passExecutor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, ImagePreprocessor.SCRATCH_THREAD_NAME);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        passExecutor.shutdownNow();
     }
 
     @PostMapping
@@ -52,9 +116,14 @@ public class OcrController {
 
         String result;
         try {
-            result = tesseract.doOCR(processed);
+            result = engines.withEngine(OcrEnginePool.DOCUMENT, engine -> engine.doOCR(processed));
         } catch (TesseractException e) {
             return error(HttpStatus.INTERNAL_SERVER_ERROR, "OCR failed: " + e.getMessage());
+        } catch (TimeoutException e) {
+            return error(HttpStatus.SERVICE_UNAVAILABLE, "OCR busy, try again: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return error(HttpStatus.SERVICE_UNAVAILABLE, "OCR interrupted");
         }
 
         Map<String, Object> response = new HashMap<>();
@@ -66,10 +135,19 @@ public class OcrController {
 
     /**
      * Multi-pass OCR endpoint (Sprint 06)
-     * Tries multiple preprocessing variants and returns the best result
+     * Tries multiple preprocessing variants and returns the best result.
+     *
+     * With earlyExit (default ocr.multipass.early-exit) the variant with the best
+     * win rate runs alone first; a result is accepted as soon as its mean line
+     * confidence reaches ocr.multipass.min-confidence or it contains an ID number.
+     * Otherwise the remaining variants run concurrently and the first accepted one
+     * (or the best score once all are done) is returned. Without earlyExit every
+     * variant runs concurrently and the best score wins.
      */
     @PostMapping("/multipass")
-    public ResponseEntity<Map<String, Object>> extractTextMultipass(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<Map<String, Object>> extractTextMultipass(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "earlyExit", required = false) Boolean earlyExit) {
         if (file.isEmpty()) {
             return error(HttpStatus.BAD_REQUEST, "Empty file");
         }
@@ -85,35 +163,247 @@ public class OcrController {
             return error(HttpStatus.BAD_REQUEST, "Unsupported or corrupt image");
         }
 
-        List<OcrResult> results = new ArrayList<>();
+        boolean early = earlyExit != null ? earlyExit : earlyExitDefault;
+        long started = System.nanoTime();
 
-        results.add(runOcr(ImagePreprocessor.preprocessStandard(original), "standard"));
-        results.add(runOcr(ImagePreprocessor.preprocessHighContrast(original), "highContrast"));
-        results.add(runOcr(ImagePreprocessor.preprocessInverted(original), "inverted"));
-        results.add(runOcr(ImagePreprocessor.preprocessBinarized(original), "binarized"));
-        results.add(runOcr(ImagePreprocessor.preprocessAdaptiveLocal(original), "adaptiveLocal"));
+        List<OcrResult> results;
+        try {
+            results = early ? runEarlyExit(original) : runAll(original);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return error(HttpStatus.SERVICE_UNAVAILABLE, "OCR interrupted");
+        }
 
         OcrResult best = selectBest(results);
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+        recordOutcome(results, best);
+
+        List<Map<String, Object>> variants = new ArrayList<>();
+        for (OcrResult r : results) {
+            Map<String, Object> v = new LinkedHashMap<>();
+            v.put("method", r.method);
+            v.put("score", r.score);
+            if (r.confidence >= 0) {
+                v.put("confidence", r.confidence);
+                v.put("accepted", r.accepted);
+            }
+            v.put("preprocessMs", r.preprocessMs);
+            v.put("waitMs", r.waitMs);
+            v.put("ocrMs", r.ocrMs);
+            variants.add(v);
+        }
 
         Map<String, Object> response = new HashMap<>();
         response.put("extractedText", best.text);
         response.put("method", best.method);
         response.put("score", best.score);
+        response.put("earlyExit", early);
+        response.put("elapsedMs", elapsedMs);
+        response.put("variants", variants);
 
-        System.out.println("Helper OCR (multipass): tried " + results.size() + " methods");
-        System.out.println("  - Best method: " + best.method + ", score: " + best.score);
+        System.out.println("Helper OCR (multipass" + (early ? ", early exit" : "") + "): tried "
+                + results.size() + " of " + VARIANTS.size() + " methods in " + elapsedMs + " ms");
+        System.out.println("  - Best method: " + best.method + ", score: " + best.score
+                + (best.accepted ? " (accepted)" : ""));
         System.out.println("  - Text preview: "
                 + (best.text.length() > 100 ? best.text.substring(0, 100) + "..." : best.text).replace("\n", " "));
         return ResponseEntity.ok(response);
     }
 
-    private OcrResult runOcr(BufferedImage image, String method) {
+    /**
+     * Per-variant win rates behind the early-exit order.
+     */
+    @GetMapping("/multipass/stats")
+    public ResponseEntity<Map<String, Object>> getMultipassStats() {
+        List<String> order = new ArrayList<>();
+        for (Variant variant : orderedByWinRate()) {
+            order.add(variant.method);
+        }
+
+        Map<String, Object> perVariant = new LinkedHashMap<>();
+        for (Map.Entry<String, VariantStats> entry : stats.entrySet()) {
+            VariantStats s = entry.getValue();
+            Map<String, Object> v = new LinkedHashMap<>();
+            v.put("runs", s.runs.get());
+            v.put("wins", s.wins.get());
+            v.put("earlyExits", s.earlyExits.get());
+            v.put("winRate", Math.round(s.winRate() * 1000) / 1000.0);
+            perVariant.put(entry.getKey(), v);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("earlyExitDefault", earlyExitDefault);
+        response.put("minConfidence", minConfidence);
+        response.put("idPattern", idPattern.pattern());
+        response.put("order", order);
+        response.put("variants", perVariant);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Utilization of the shared OCR engine pools.
+     */
+    @GetMapping("/pool")
+    public ResponseEntity<Map<String, Object>> getPoolMetrics() {
+        return ResponseEntity.ok(engines.getMetrics());
+    }
+
+    private List<OcrResult> runAll(BufferedImage original) throws InterruptedException {
+        List<Future<OcrResult>> passes = new ArrayList<>();
+        for (Variant variant : VARIANTS) {
+            passes.add(passExecutor.submit(() -> runVariant(original, variant, false)));
+        }
+
+        List<OcrResult> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < passes.size(); i++) {
+                try {
+                    results.add(passes.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(new OcrResult("", VARIANTS.get(i).method, 0));
+                }
+            }
+        } finally {
+            cancelAll(passes);
+        }
+        return results;
+    }
+
+    private List<OcrResult> runEarlyExit(BufferedImage original) throws InterruptedException {
+        List<Variant> ordered = orderedByWinRate();
+
+        // the usual winner alone first: a clean scan costs one pass
+        OcrResult first = runVariant(original, ordered.get(0), true);
+        if (first.accepted) {
+            return Collections.singletonList(first);
+        }
+
+        CompletionService<OcrResult> completion = new ExecutorCompletionService<>(passExecutor);
+        List<Future<OcrResult>> passes = new ArrayList<>();
+        for (Variant variant : ordered.subList(1, ordered.size())) {
+            passes.add(completion.submit(() -> runVariant(original, variant, true)));
+        }
+
+        // keep the win-rate order in the result list so score ties stay deterministic
+        OcrResult[] byRank = new OcrResult[ordered.size()];
+        byRank[0] = first;
         try {
-            String text = tesseract.doOCR(image);
-            int score = scoreResult(text);
-            return new OcrResult(text, method, score);
+            for (int done = 0; done < passes.size(); done++) {
+                OcrResult r;
+                try {
+                    r = completion.take().get();
+                } catch (ExecutionException e) {
+                    continue;
+                }
+                byRank[ordered.indexOf(variantOf(r.method))] = r;
+                if (r.accepted) {
+                    break;
+                }
+            }
+        } finally {
+            // passes not started yet are dropped; running ones finish and free their engine
+            cancelAll(passes);
+        }
+
+        List<OcrResult> results = new ArrayList<>();
+        for (OcrResult r : byRank) {
+            if (r != null) {
+                results.add(r);
+            }
+        }
+        return results;
+    }
+
+    private OcrResult runVariant(BufferedImage original, Variant variant, boolean withConfidence) {
+        long t0 = System.nanoTime();
+        long[] engineStart = new long[1];
+        try {
+            BufferedImage image = variant.preprocess.apply(original);
+            long t1 = System.nanoTime();
+
+            OcrResult result;
+            if (withConfidence) {
+                // line-level results carry Tesseract's confidence at the cost of no extra pass
+                List<Word> lines = engines.withEngine(OcrEnginePool.DOCUMENT, engine -> {
+                    engineStart[0] = System.nanoTime();
+                    return engine.getWords(image, ITessAPI.TessPageIteratorLevel.RIL_TEXTLINE);
+                });
+                result = fromLines(lines, variant.method);
+            } else {
+                String text = engines.withEngine(OcrEnginePool.DOCUMENT, engine -> {
+                    engineStart[0] = System.nanoTime();
+                    return engine.doOCR(image);
+                });
+                result = new OcrResult(text, variant.method, scoreResult(text));
+            }
+            long t2 = System.nanoTime();
+
+            result.preprocessMs = (t1 - t0) / 1_000_000;
+            result.waitMs = (engineStart[0] - t1) / 1_000_000;
+            result.ocrMs = (t2 - engineStart[0]) / 1_000_000;
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new OcrResult("", variant.method, 0);
         } catch (Exception e) {
-            return new OcrResult("", method, 0);
+            System.err.println("[OCR] " + variant.method + " pass failed: " + e.getMessage());
+            return new OcrResult("", variant.method, 0);
+        }
+    }
+
+    private OcrResult fromLines(List<Word> lines, String method) {
+        StringBuilder text = new StringBuilder();
+        double weighted = 0;
+        int chars = 0;
+        for (Word line : lines) {
+            String lineText = line.getText() != null ? line.getText().trim() : "";
+            if (lineText.isEmpty()) {
+                continue;
+            }
+            text.append(lineText).append('\n');
+            weighted += line.getConfidence() * lineText.length();
+            chars += lineText.length();
+        }
+
+        OcrResult result = new OcrResult(text.toString(), method, scoreResult(text.toString()));
+        result.confidence = chars > 0 ? (int) Math.round(weighted / chars) : 0;
+        result.accepted = result.score > 0
+                && (result.confidence >= minConfidence || idPattern.matcher(result.text).find());
+        return result;
+    }
+
+    private List<Variant> orderedByWinRate() {
+        List<Variant> ordered = new ArrayList<>(VARIANTS);
+        // stable sort: equal rates keep the declaration order
+        ordered.sort((a, b) -> Double.compare(stats.get(b.method).winRate(), stats.get(a.method).winRate()));
+        return ordered;
+    }
+
+    private void recordOutcome(List<OcrResult> results, OcrResult best) {
+        for (OcrResult r : results) {
+            stats.get(r.method).runs.incrementAndGet();
+        }
+        if (best.score > 0) {
+            VariantStats s = stats.get(best.method);
+            s.wins.incrementAndGet();
+            if (best.accepted && results.size() < VARIANTS.size()) {
+                s.earlyExits.incrementAndGet();
+            }
+        }
+    }
+
+    private Variant variantOf(String method) {
+        for (Variant variant : VARIANTS) {
+            if (variant.method.equals(method)) {
+                return variant;
+            }
+        }
+        throw new IllegalArgumentException("Unknown variant " + method);
+    }
+
+    private void cancelAll(List<Future<OcrResult>> passes) {
+        for (Future<OcrResult> pass : passes) {
+            pass.cancel(true);
         }
     }
 
@@ -130,6 +420,12 @@ public class OcrController {
     }
 
     private OcrResult selectBest(List<OcrResult> results) {
+        // an accepted result ends the search, so it is the answer even if an earlier pass scored higher
+        for (OcrResult r : results) {
+            if (r.accepted) {
+                return r;
+            }
+        }
         return results.stream()
                 .max(Comparator.comparingInt(r -> r.score))
                 .orElse(results.get(0));
@@ -145,6 +441,11 @@ public class OcrController {
         final String text;
         final String method;
         final int score;
+        long preprocessMs;
+        long waitMs;
+        long ocrMs;
+        int confidence = -1; // mean line confidence, -1 when not measured
+        boolean accepted;
 
         OcrResult(String text, String method, int score) {
             this.text = text;
@@ -1,5 +1,7 @@
 package com.ivisit.helper.controller;
 
+import com.ivisit.helper.RfidLoopRunner;
+import com.ivisit.helper.sender.RfidSender;
 import com.ivisit.helper.service.RfidService;
 import org.springframework.web.bind.annotation.*;
 import javax.smartcardio.CardTerminal;
@@ -14,9 +16,13 @@ import java.util.stream.Collectors;
 public class RfidController {
 
     private final RfidService service;
+    private final RfidLoopRunner loopRunner;
+    private final RfidSender sender;
 
-    public RfidController(RfidService service) {
+    public RfidController(RfidService service, RfidLoopRunner loopRunner, RfidSender sender) {
         this.service = service;
+        this.loopRunner = loopRunner;
+        this.sender = sender;
     }
 
     @GetMapping("/read-card-uid")
@@ -59,6 +65,7 @@ public class RfidController {
             resp.put("readerNames", terminals.stream()
                     .map(CardTerminal::getName)
                     .collect(Collectors.toList()));
+            resp.put("activeReaders", loopRunner.getActiveReaders());
             return resp;
         } catch (Exception e) {
             resp.put("ok", false);
@@ -66,5 +73,12 @@ public class RfidController {
             return resp;
         }
     }
-}
 
+    /**
+     * Accepted vs. suppressed (duplicate) taps and the unsent backlog.
+     */
+    @GetMapping("/scan-stats")
+    public Map<String, Object> scanStats() {
+        return sender.getStats();
+    }
+}
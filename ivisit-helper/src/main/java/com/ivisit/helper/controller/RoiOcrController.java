@@ -1,39 +1,59 @@
 package com.ivisit.helper.controller;
 
+import com.ivisit.helper.service.OcrEnginePool;
 import com.ivisit.helper.utils.ImagePreprocessor;
 import com.ivisit.helper.utils.RoiTemplate;
-import net.sourceforge.tess4j.Tesseract;
-import net.sourceforge.tess4j.TesseractException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PreDestroy;
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * ROI-based OCR extraction controller.
  * Uses region templates to crop specific fields from ID cards before OCR.
+ *
+ * Fields are cropped, preprocessed and read in parallel on a bounded executor,
+ * each with the OcrEnginePool profile its region names. Fields not done by
+ * ocr.roi.deadline-ms come back empty and are listed in "timedOutFields".
  */
 @RestController
 @RequestMapping("/api/ocr")
 public class RoiOcrController {
 
-    private final Tesseract tesseract;
-
-    public RoiOcrController(@Value("${tesseract.datapath}") String dataPath) {
-        this.tesseract = new Tesseract();
-        this.tesseract.setDatapath(dataPath);
-        this.tesseract.setLanguage("eng");
-        // Page segmentation mode 7: single line of text
-        this.tesseract.setPageSegMode(7);
-        this.tesseract.setTessVariable(
-                "tessedit_char_whitelist",
-                "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-/., ");
+    private final OcrEnginePool engines;
+    private final ExecutorService fieldExecutor;
+    private final long deadlineMs;
+
+    public RoiOcrController(OcrEnginePool engines,
+                            @Value("${ocr.roi.threads:0}") int threads,
+                            @Value("${ocr.roi.queue-capacity:64}") int queueCapacity,
+                            @Value("${ocr.roi.deadline-ms:20000}") long deadlineMs) {
+        this.engines = engines;
+        this.deadlineMs = Math.max(1, deadlineMs);
+
+        int size = threads > 0 ? threads : engines.getSize();
+        this.fieldExecutor = new ThreadPoolExecutor(
+                size, size,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                r -> {
+                    Thread t = new Thread(r, "ocr-roi-field");
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fieldExecutor.shutdownNow();
     }
 
     /**
@@ -64,39 +84,69 @@ public class RoiOcrController {
             return error(HttpStatus.BAD_REQUEST, "Unsupported or corrupt image");
         }
 
-        // Extract each field using its ROI
-        Map<String, String> extractedFields = new HashMap<>();
-
-        for (Map.Entry<String, RoiTemplate.Region> entry : template.entrySet()) {
-            String fieldName = entry.getKey();
-            RoiTemplate.Region region = entry.getValue();
-
-            try {
-                // Crop the region
-                BufferedImage crop = ImagePreprocessor.cropRegion(
-                        original,
-                        region.xPct, region.yPct,
-                        region.widthPct, region.heightPct);
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
 
-                // Preprocess the crop (binarize, upscale)
-                BufferedImage processed = ImagePreprocessor.preprocessCroppedRegion(crop);
+        // Extract each field using its ROI, all fields at once
+        Map<String, Future<String>> pending = new LinkedHashMap<>();
+        Map<String, Long> fieldMs = new ConcurrentHashMap<>();
+        try {
+            for (Map.Entry<String, RoiTemplate.Region> entry : template.entrySet()) {
+                String fieldName = entry.getKey();
+                RoiTemplate.Region region = entry.getValue();
+                pending.put(fieldName, fieldExecutor.submit(() -> {
+                    long t0 = System.nanoTime();
+                    try {
+                        return readField(original, region);
+                    } finally {
+                        fieldMs.put(fieldName, (System.nanoTime() - t0) / 1_000_000);
+                    }
+                }));
+            }
+        } catch (RejectedExecutionException e) {
+            cancelAll(pending.values());
+            return error(HttpStatus.SERVICE_UNAVAILABLE, "OCR busy, try again");
+        }
 
-                // Run OCR on the isolated region
-                String text = tesseract.doOCR(processed).trim();
+        Map<String, String> extractedFields = new HashMap<>();
+        List<String> timedOut = new ArrayList<>();
+        try {
+            for (Map.Entry<String, Future<String>> entry : pending.entrySet()) {
+                String fieldName = entry.getKey();
+                String text = "";
+                try {
+                    long remaining = deadline - System.nanoTime();
+                    text = entry.getValue().get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+                    System.out.println("ROI OCR [" + fieldName + "]: " + text);
+                } catch (TimeoutException e) {
+                    timedOut.add(fieldName);
+                    System.err.println("ROI OCR timed out for " + fieldName);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    System.err.println("ROI OCR error for " + fieldName + ": " + cause.getMessage());
+                }
                 extractedFields.put(fieldName, text);
-
-                System.out.println("ROI OCR [" + fieldName + "]: " + text);
-            } catch (TesseractException e) {
-                extractedFields.put(fieldName, "");
-                System.err.println("ROI OCR error for " + fieldName + ": " + e.getMessage());
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return error(HttpStatus.SERVICE_UNAVAILABLE, "OCR interrupted");
+        } finally {
+            // late fields finish in the background and free their engine; queued ones are dropped
+            cancelAll(pending.values());
         }
 
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
         // Build response
         Map<String, Object> response = new HashMap<>();
         response.put("idType", idType);
         response.put("fields", extractedFields);
         response.put("method", "roi");
+        response.put("elapsedMs", elapsedMs);
+        response.put("fieldTimings", new HashMap<>(fieldMs));
+        if (!timedOut.isEmpty()) {
+            response.put("timedOutFields", timedOut);
+        }
 
         // Also build combined text for backward compatibility
         StringBuilder combined = new StringBuilder();
@@ -106,10 +156,30 @@ public class RoiOcrController {
         response.put("extractedText", combined.toString().trim());
 
         System.out.println("Helper ROI OCR: processed " + idType + " with " +
-                extractedFields.size() + " fields");
+                extractedFields.size() + " fields in " + elapsedMs + " ms");
         return ResponseEntity.ok(response);
     }
 
+    private String readField(BufferedImage original, RoiTemplate.Region region) throws Exception {
+        // Crop the region
+        BufferedImage crop = ImagePreprocessor.cropRegion(
+                original,
+                region.xPct, region.yPct,
+                region.widthPct, region.heightPct);
+
+        // Preprocess the crop (binarize, upscale)
+        BufferedImage processed = ImagePreprocessor.preprocessCroppedRegion(crop);
+
+        // Run OCR on the isolated region with the field's profile
+        return engines.withEngine(region.ocrProfile, engine -> engine.doOCR(processed)).trim();
+    }
+
+    private void cancelAll(Collection<Future<String>> futures) {
+        for (Future<String> future : futures) {
+            future.cancel(true);
+        }
+    }
+
     private ResponseEntity<Map<String, Object>> error(HttpStatus status, String message) {
         Map<String, Object> err = new HashMap<>();
         err.put("error", message);
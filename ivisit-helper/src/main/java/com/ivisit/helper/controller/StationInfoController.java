@@ -6,7 +6,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -23,6 +25,16 @@ public class StationInfoController {
     public Map<String, Object> getStationInfo() {
         Map<String, Object> info = new HashMap<>();
         info.put("stationId", stationConfigService.getStationId());
+
+        List<Map<String, Object>> lanes = new ArrayList<>();
+        for (StationConfigService.Lane lane : stationConfigService.getLanes()) {
+            Map<String, Object> l = new HashMap<>();
+            l.put("name", lane.getName());
+            l.put("direction", lane.getDirection());
+            l.put("readerMatch", lane.getReaderMatch());
+            lanes.add(l);
+        }
+        info.put("lanes", lanes);
         return info;
     }
 
@@ -1,49 +1,283 @@
 package com.ivisit.helper.sender;
 
+import com.ivisit.helper.config.StationConfigService;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * Queues scans in the durable ScanOutbox and drains it to the backend in the
+ * background, so a slow or unreachable backend never holds up the reader.
+ * Batches go to /api/helper/rfid-scans. Scans are acked in order up to the first
+ * one the backend gave no verdict or permanent error for; that one and everything
+ * after it stay queued and are retried (same scanIds) with exponential backoff.
+ * Permanently rejected scans, and scans still unresolved after outbox.max.attempts
+ * answered tries, go to the outbox's dead-letter file instead of blocking the queue.
+ */
 @Component
 public class RfidSender {
 
+    private static final long INITIAL_BACKOFF_MS = 500;
+
     private final RestTemplate restTemplate;
+    private final ScanOutbox outbox;
+    private final ScanDedupFilter dedupFilter;
+    private final StationConfigService stationConfigService;
     private final String backendUrl;
-    private final String stationId;
+    private final int batchSize;
+    private final long maxBackoffMs;
+    private final int maxAttempts;
+
+    // drain thread only
+    private final Map<String, Integer> attempts = new HashMap<>();
+    private boolean isolating;
+
+    private volatile boolean running;
+    private Thread drainThread;
 
     public RfidSender(
             RestTemplate restTemplate,
+            ScanOutbox outbox,
+            ScanDedupFilter dedupFilter,
+            StationConfigService stationConfigService,
             @Value("${backend.url}") String backendUrl,
-            @Value("${station.id}") String stationId
+            @Value("${outbox.batch.size:50}") int batchSize,
+            @Value("${outbox.backoff.max.ms:30000}") long maxBackoffMs,
+            @Value("${outbox.max.attempts:30}") int maxAttempts
     ) {
         this.restTemplate = restTemplate;
+        this.outbox = outbox;
+        this.dedupFilter = dedupFilter;
+        this.stationConfigService = stationConfigService;
         this.backendUrl = backendUrl;
-        this.stationId = stationId;
+        this.batchSize = Math.max(1, Math.min(batchSize, 200)); // backend caps batches at 200
+        this.maxBackoffMs = Math.max(INITIAL_BACKOFF_MS, maxBackoffMs);
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        drainThread = new Thread(this::drainLoop, "rfid-sender");
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (drainThread != null) {
+            drainThread.interrupt();
+        }
     }
 
     public void sendScan(String uid) {
-        String url = backendUrl + "/api/helper/rfid-scan";
+        sendScan(uid, null);
+    }
+
+    /**
+     * Records a tap for delivery. Returns once the scan is in the outbox.
+     * Scans from a lane carry its name and direction, so an exit lane checks the visitor out.
+     * Repeat reads of a card still on the reader are dropped by ScanDedupFilter.
+     */
+    public void sendScan(String uid, StationConfigService.Lane lane) {
+        if (!dedupFilter.accept(uid, lane != null ? lane.getName() : null)) {
+            return;
+        }
 
         Map<String, Object> body = new HashMap<>();
+        body.put("scanId", UUID.randomUUID().toString()); // lets the backend drop resends
         body.put("uid", uid);
-        body.put("stationId", stationId);
+        // the station the card was tapped at; rebinding the helper later does not move queued scans
+        body.put("stationId", String.valueOf(stationConfigService.getStationId()));
         body.put("scannedAt", Instant.now().toString());
+        if (lane != null) {
+            body.put("lane", lane.getName());
+            body.put("direction", lane.getDirection());
+        }
+
+        try {
+            outbox.append(body);
+        } catch (IOException e) {
+            System.err.println("Failed to queue RFID scan " + uid + ": " + e.getMessage());
+        }
+    }
+
+    public int getBacklog() {
+        return outbox.size();
+    }
+
+    /**
+     * Tap counters for the status endpoint.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("accepted", dedupFilter.getAcceptedCount());
+        stats.put("suppressed", dedupFilter.getSuppressedCount());
+        stats.put("dedupWindowMs", dedupFilter.getWindowMs());
+        stats.put("backlog", outbox.size());
+        stats.put("deadLettered", outbox.getDeadLetterCount());
+        return stats;
+    }
+
+    private void drainLoop() {
+        long backoffMs = INITIAL_BACKOFF_MS;
+
+        while (running) {
+            try {
+                if (deliverOnce(1000)) {
+                    backoffMs = INITIAL_BACKOFF_MS;
+                } else {
+                    sleepWithJitter(backoffMs);
+                    backoffMs = Math.min(backoffMs * 2, maxBackoffMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                System.err.println("[RfidSender] Failed to update outbox: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Sends the head of the outbox once and acks what the backend resolved.
+     * After a batch fails as a whole, scans go one at a time until one succeeds, so a
+     * failure can be pinned on a single scan; a scan the backend answered but never
+     * resolved in outbox.max.attempts tries is moved to the dead-letter file.
+     *
+     * @return true when the whole batch is done with (or the outbox was empty)
+     */
+    boolean deliverOnce(long waitMs) throws InterruptedException, IOException {
+        List<Map<String, Object>> batch = outbox.peek(isolating ? 1 : batchSize, waitMs);
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        Delivery delivery = postBatch(batch);
+        if (delivery.done > 0) {
+            for (int i = 0; i < delivery.done; i++) {
+                attempts.remove(scanIdOf(batch.get(i)));
+            }
+            outbox.ack(delivery.done);
+        }
+        if (delivery.done == batch.size()) {
+            isolating = false;
+            return true;
+        }
+        if (!delivery.answered) {
+            // backend unreachable: nothing is wrong with the scans themselves
+            return false;
+        }
+        if (delivery.done == 0 && batch.size() > 1) {
+            isolating = true;
+            return false;
+        }
+
+        Map<String, Object> blocked = batch.get(delivery.done);
+        String scanId = scanIdOf(blocked);
+        int tries = attempts.merge(scanId, 1, Integer::sum);
+        if (tries >= maxAttempts) {
+            attempts.remove(scanId);
+            outbox.deadLetter(blocked, "not accepted after " + tries + " attempts: " + delivery.failure);
+            outbox.ack(1);
+            System.err.println("[RfidSender] Moved RFID scan " + scanId + " to the dead-letter file after "
+                    + tries + " attempts");
+        }
+        return false;
+    }
+
+    private static final class Delivery {
+        final int done; // scans resolved, from the start of the batch
+        final boolean answered; // the backend sent an HTTP response
+        final String failure;
+
+        Delivery(int done, boolean answered, String failure) {
+            this.done = done;
+            this.answered = answered;
+            this.failure = failure;
+        }
+    }
+
+    private Delivery postBatch(List<Map<String, Object>> batch) throws IOException {
+        String url = backendUrl + "/api/helper/rfid-scans";
 
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<List<Map<String, Object>>> entity = new HttpEntity<>(batch, headers);
 
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-
+        ResponseEntity<Map<String, Object>> response;
         try {
-            ResponseEntity<String> response = restTemplate.postForEntity(url, entity, String.class);
-            System.out.println("Sent RFID scan to backend: HTTP " + response.getStatusCodeValue());
-        } catch (Exception e) {
-            System.err.println("Failed to send RFID scan: " + e.getMessage());
+            response = restTemplate.exchange(
+                    url, HttpMethod.POST, entity, new ParameterizedTypeReference<Map<String, Object>>() {});
+        } catch (HttpStatusCodeException e) {
+            // the batch as a whole was refused; keep it rather than lose the taps
+            System.err.println("Backend refused RFID batch of " + batch.size() + " scan(s) with HTTP "
+                    + e.getRawStatusCode() + ", will retry: " + e.getResponseBodyAsString());
+            return new Delivery(0, true, "HTTP " + e.getRawStatusCode() + " " + e.getResponseBodyAsString());
+        } catch (RestClientException e) {
+            System.err.println("Failed to send RFID scans (" + outbox.size() + " queued, will retry): "
+                    + e.getMessage());
+            return new Delivery(0, false, e.getMessage());
+        }
+
+        int done = resolve(batch, response.getBody());
+        System.out.println("Sent " + batch.size() + " RFID scan(s) to backend: HTTP "
+                + response.getStatusCodeValue() + ", " + done + " done (" + outbox.size() + " queued)");
+        return new Delivery(done, true, "no verdict in response");
+    }
+
+    /**
+     * Walks the per-scan results in request order and stops at the first scan that
+     * has neither a verdict nor an error for the same scanId. Scans the backend
+     * rejected for good are copied to the dead-letter file before they are acked.
+     */
+    private int resolve(List<Map<String, Object>> batch, Map<String, Object> body) throws IOException {
+        Object results = body != null ? body.get("results") : null;
+        if (!(results instanceof List)) {
+            return 0;
         }
+        List<?> list = (List<?>) results;
+
+        int done = 0;
+        while (done < batch.size() && done < list.size()) {
+            Object result = list.get(done);
+            if (!(result instanceof Map)) {
+                break;
+            }
+            Map<?, ?> r = (Map<?, ?>) result;
+            if (!Objects.equals(scanIdOf(batch.get(done)), r.get("scanId"))) {
+                break;
+            }
+            if (r.containsKey("error")) {
+                System.err.println("Backend rejected RFID scan " + r.get("scanId") + ": " + r.get("error"));
+                outbox.deadLetter(batch.get(done), String.valueOf(r.get("error")));
+            } else if (r.get("action") == null) {
+                break;
+            }
+            done++;
+        }
+        return done;
+    }
+
+    private static String scanIdOf(Map<String, Object> record) {
+        Object scanId = record.get("scanId");
+        return scanId != null ? scanId.toString() : "";
+    }
+
+    private void sleepWithJitter(long baseMs) throws InterruptedException {
+        long jitter = ThreadLocalRandom.current().nextLong(baseMs / 5 + 1);
+        Thread.sleep(baseMs + jitter);
     }
 }
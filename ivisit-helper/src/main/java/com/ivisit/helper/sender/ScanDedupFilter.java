@@ -0,0 +1,74 @@
+package com.ivisit.helper.sender;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drops repeat reads of the same card on the same lane within scan.dedup.window.ms.
+ * The window slides: a card resting on (or flickering at) the reader keeps being
+ * suppressed until it has been away for a full window.
+ */
+@Component
+public class ScanDedupFilter {
+
+    // sweep stale keys once the map grows past this
+    private static final int SWEEP_THRESHOLD = 1024;
+
+    private final long windowMs;
+
+    // uid|lane -> last time the card was seen there
+    private final Map<String, Long> lastSeen = new ConcurrentHashMap<>();
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    public ScanDedupFilter(@Value("${scan.dedup.window.ms:3000}") long windowMs) {
+        this.windowMs = Math.max(0, windowMs);
+    }
+
+    /**
+     * @return true if this tap should be sent, false if it repeats one inside the window
+     */
+    public boolean accept(String uid, String lane) {
+        long now = System.currentTimeMillis();
+        String key = uid + "|" + (lane != null ? lane : "");
+
+        Long previous = lastSeen.put(key, now);
+        if (previous != null && now - previous < windowMs) {
+            suppressed.incrementAndGet();
+            return false;
+        }
+
+        accepted.incrementAndGet();
+        if (lastSeen.size() > SWEEP_THRESHOLD) {
+            sweep(now);
+        }
+        return true;
+    }
+
+    public long getWindowMs() {
+        return windowMs;
+    }
+
+    public long getAcceptedCount() {
+        return accepted.get();
+    }
+
+    public long getSuppressedCount() {
+        return suppressed.get();
+    }
+
+    private void sweep(long now) {
+        Iterator<Map.Entry<String, Long>> it = lastSeen.entrySet().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().getValue() >= windowMs) {
+                it.remove();
+            }
+        }
+    }
+}
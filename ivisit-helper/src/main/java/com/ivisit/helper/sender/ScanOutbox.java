@@ -0,0 +1,299 @@
+package com.ivisit.helper.sender;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable, append-only queue of scans waiting for the backend.
+ *
+ * Scans are appended as JSON lines to outbox.path and fsync'd in groups every
+ * outbox.fsync.interval.ms, so a burst of taps costs one disk flush instead of one
+ * each. The offset of the first unsent scan lives next to it in "<path>.ack"; on
+ * restart everything after that offset is replayed in order. Once the backlog is
+ * fully sent the file is truncated.
+ *
+ * Scans that can't be delivered are appended, with the reason, to the dead-letter
+ * file (outbox.dead-letter.path, "<path>.dead" by default) for manual follow-up.
+ */
+@Component
+public class ScanOutbox {
+
+    private static final TypeReference<Map<String, Object>> RECORD_TYPE =
+            new TypeReference<Map<String, Object>>() {};
+
+    private static final long COMPACT_THRESHOLD_BYTES = 1024 * 1024;
+    private static final int REPLAY_CHUNK_BYTES = 64 * 1024;
+
+    private static final class Pending {
+        final Map<String, Object> record;
+        final long endOffset; // file offset just past this record's line
+
+        Pending(Map<String, Object> record, long endOffset) {
+            this.record = record;
+            this.endOffset = endOffset;
+        }
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Path logPath;
+    private final Path ackPath;
+    private final Path deadLetterPath;
+    private final long fsyncIntervalMs;
+
+    // guarded by this
+    private final Deque<Pending> pending = new ArrayDeque<>();
+    private FileChannel channel;
+    private long ackedOffset;
+    private boolean dirty;
+    private long deadLetterCount;
+
+    private ScheduledExecutorService flusher;
+
+    public ScanOutbox(
+            @Value("${outbox.path:scan-outbox.jsonl}") String path,
+            @Value("${outbox.fsync.interval.ms:100}") long fsyncIntervalMs,
+            @Value("${outbox.dead-letter.path:}") String deadLetterPath
+    ) {
+        this.logPath = Paths.get(path);
+        this.ackPath = Paths.get(path + ".ack");
+        this.deadLetterPath = Paths.get(deadLetterPath == null || deadLetterPath.trim().isEmpty()
+                ? path + ".dead"
+                : deadLetterPath.trim());
+        this.fsyncIntervalMs = Math.max(10, fsyncIntervalMs);
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        for (Path file : new Path[]{logPath, deadLetterPath}) {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null && !Files.exists(parent)) {
+                Files.createDirectories(parent);
+            }
+        }
+
+        channel = FileChannel.open(logPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ackedOffset = Math.min(readAckOffset(), channel.size());
+        long validEnd = replay();
+
+        // drop a torn tail left by a crash mid-append
+        if (validEnd < channel.size()) {
+            channel.truncate(validEnd);
+        }
+        channel.position(channel.size());
+
+        if (!pending.isEmpty()) {
+            System.out.println("[ScanOutbox] " + pending.size() + " unsent scan(s) recovered from " + logPath);
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "scan-outbox-fsync");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        synchronized (this) {
+            flush();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("[ScanOutbox] Failed to close " + logPath + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Appends a scan. It reaches the disk on the next group fsync.
+     */
+    public synchronized void append(Map<String, Object> record) throws IOException {
+        byte[] line = (mapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(line);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        pending.addLast(new Pending(record, channel.position()));
+        dirty = true;
+        notifyAll();
+    }
+
+    /**
+     * Oldest unsent scans, up to max, without removing them.
+     * Blocks up to waitMs for something to arrive when the queue is empty.
+     */
+    public synchronized List<Map<String, Object>> peek(int max, long waitMs) throws InterruptedException {
+        if (pending.isEmpty() && waitMs > 0) {
+            wait(waitMs);
+        }
+        List<Map<String, Object>> batch = new ArrayList<>(Math.min(max, pending.size()));
+        Iterator<Pending> it = pending.iterator();
+        while (it.hasNext() && batch.size() < max) {
+            batch.add(it.next().record);
+        }
+        return batch;
+    }
+
+    /**
+     * Marks the oldest count scans as delivered and persists the new ack offset.
+     */
+    public synchronized void ack(int count) throws IOException {
+        Pending last = null;
+        for (int i = 0; i < count && !pending.isEmpty(); i++) {
+            last = pending.pollFirst();
+        }
+        if (last == null) {
+            return;
+        }
+
+        // the ack must never get ahead of the data it points past
+        flush();
+        ackedOffset = last.endOffset;
+
+        if (pending.isEmpty() && ackedOffset >= COMPACT_THRESHOLD_BYTES) {
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(true);
+            ackedOffset = 0;
+        }
+        writeAckOffset(ackedOffset);
+    }
+
+    /**
+     * Keeps a copy of a scan that will not be delivered, with the reason, fsync'd
+     * before returning. Removing it from the queue is still up to ack().
+     */
+    public synchronized void deadLetter(Map<String, Object> record, String reason) throws IOException {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("deadLetteredAt", Instant.now().toString());
+        entry.put("reason", reason);
+        entry.put("scan", record);
+        byte[] line = (mapper.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+
+        try (FileChannel out = FileChannel.open(deadLetterPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(false);
+        }
+        deadLetterCount++;
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /** Scans dead-lettered since startup. */
+    public synchronized long getDeadLetterCount() {
+        return deadLetterCount;
+    }
+
+    private synchronized void flush() {
+        if (!dirty || channel == null || !channel.isOpen()) {
+            return;
+        }
+        try {
+            channel.force(false);
+            dirty = false;
+        } catch (IOException e) {
+            System.err.println("[ScanOutbox] fsync failed for " + logPath + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads records after the ack offset; returns the end of the last complete line.
+     * Reads in fixed-size chunks so a large backlog doesn't need one buffer its size.
+     */
+    private long replay() throws IOException {
+        long size = channel.size();
+        long validEnd = ackedOffset;
+        long lineStart = ackedOffset;
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        ByteBuffer chunk = ByteBuffer.allocate(REPLAY_CHUNK_BYTES);
+
+        long position = ackedOffset;
+        while (position < size) {
+            chunk.clear();
+            int read = channel.read(chunk, position);
+            if (read <= 0) {
+                break;
+            }
+            byte[] bytes = chunk.array();
+            int from = 0;
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] != '\n') {
+                    continue;
+                }
+                line.write(bytes, from, i - from);
+                long endOffset = position + i + 1;
+                addReplayed(line.toString(StandardCharsets.UTF_8.name()).trim(), lineStart, endOffset);
+                line.reset();
+                validEnd = endOffset;
+                lineStart = endOffset;
+                from = i + 1;
+            }
+            // the rest continues on the next chunk (or is a torn tail)
+            line.write(bytes, from, read - from);
+            position += read;
+        }
+        return validEnd;
+    }
+
+    private void addReplayed(String line, long startOffset, long endOffset) {
+        if (line.isEmpty()) {
+            return;
+        }
+        try {
+            pending.addLast(new Pending(mapper.readValue(line, RECORD_TYPE), endOffset));
+        } catch (IOException e) {
+            System.err.println("[ScanOutbox] Skipping unreadable record at offset "
+                    + startOffset + ": " + e.getMessage());
+        }
+    }
+
+    private long readAckOffset() {
+        if (!Files.exists(ackPath)) {
+            return 0;
+        }
+        try {
+            String raw = new String(Files.readAllBytes(ackPath), StandardCharsets.UTF_8).trim();
+            return raw.isEmpty() ? 0 : Long.parseLong(raw);
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("[ScanOutbox] Failed to read " + ackPath + ", replaying whole outbox: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private void writeAckOffset(long offset) throws IOException {
+        Path tmp = Paths.get(ackPath + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(ByteBuffer.wrap(Long.toString(offset).getBytes(StandardCharsets.UTF_8)));
+            out.force(true);
+        }
+        Files.move(tmp, ackPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,132 @@
+package com.ivisit.helper.service;
+
+import com.ivisit.helper.utils.TesseractPool;
+import net.sourceforge.tess4j.Tesseract;
+import net.sourceforge.tess4j.TesseractException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Shared Tesseract engines for all OCR endpoints, one pool per use case.
+ *
+ * DOCUMENT engines read a whole card (multipass and single-pass OCR); the
+ * FIELD_* engines read one cropped ROI region, narrowed to what that field can
+ * contain. Each use case has its own page segmentation mode, whitelist and DPI
+ * (ocr.profile.<use case>.psm/whitelist/dpi) and ocr.pool.size engines, so
+ * requests from several kiosks run side by side up to that many per use case
+ * instead of sharing one engine.
+ */
+@Component
+public class OcrEnginePool {
+
+    public static final String DOCUMENT = "document";
+    /** One line of free text (names, license numbers). */
+    public static final String FIELD = "field";
+    /** ID numbers made of digits and dashes. */
+    public static final String FIELD_DIGITS = "field-digits";
+    /** Dates, numeric or with the month spelled out. */
+    public static final String FIELD_DATE = "field-date";
+    /** Several lines of text (addresses). */
+    public static final String FIELD_BLOCK = "field-block";
+
+    private static final String TEXT_WHITELIST =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-/., ";
+
+    private static final class Profile {
+        final int psm;
+        final String whitelist;
+
+        Profile(int psm, String whitelist) {
+            this.psm = psm;
+            this.whitelist = whitelist;
+        }
+    }
+
+    // built-in settings, each overridable through ocr.profile.<use case>.*
+    private static final Map<String, Profile> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put(DOCUMENT, new Profile(-1,
+                "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz1234567890- /,."));
+        DEFAULTS.put(FIELD, new Profile(7, TEXT_WHITELIST));
+        DEFAULTS.put(FIELD_DIGITS, new Profile(7, "0123456789-"));
+        DEFAULTS.put(FIELD_DATE, new Profile(7, "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-/., "));
+        DEFAULTS.put(FIELD_BLOCK, new Profile(6, TEXT_WHITELIST));
+    }
+
+    private final int size;
+    private final Map<String, TesseractPool> pools = new LinkedHashMap<>();
+
+    public OcrEnginePool(
+            Environment env,
+            @Value("${tesseract.datapath}") String dataPath,
+            @Value("${ocr.pool.size:0}") int poolSize,
+            @Value("${ocr.pool.borrow-timeout-ms:15000}") long borrowTimeoutMs,
+            @Value("${ocr.pool.slow-hold-ms:10000}") long slowHoldMs
+    ) {
+        // one engine per core by default; beyond that passes only contend for CPU
+        this.size = poolSize > 0 ? poolSize : Math.max(1, Runtime.getRuntime().availableProcessors());
+
+        for (Map.Entry<String, Profile> entry : DEFAULTS.entrySet()) {
+            String useCase = entry.getKey();
+            String prefix = "ocr.profile." + useCase + ".";
+
+            int psm = env.getProperty(prefix + "psm", Integer.class, entry.getValue().psm);
+            String whitelist = env.getProperty(prefix + "whitelist", "");
+            String effectiveWhitelist = whitelist.isEmpty() ? entry.getValue().whitelist : whitelist;
+            int dpi = env.getProperty(prefix + "dpi", Integer.class, 300);
+
+            pools.put(useCase, new TesseractPool(useCase, size, borrowTimeoutMs, slowHoldMs,
+                    () -> newEngine(dataPath, psm, effectiveWhitelist, dpi)));
+        }
+
+        System.out.println("[OCR] Engine pool ready: " + size + " engine(s) per use case " + pools.keySet());
+    }
+
+    /**
+     * Runs the task on an engine configured for the given use case.
+     *
+     * @throws TimeoutException if every engine stayed busy for ocr.pool.borrow-timeout-ms
+     */
+    public <T> T withEngine(String useCase, TesseractPool.EngineTask<T> task)
+            throws TesseractException, InterruptedException, TimeoutException {
+        TesseractPool pool = pools.get(useCase);
+        if (pool == null) {
+            throw new IllegalArgumentException("Unknown OCR use case: " + useCase);
+        }
+        return pool.withEngine(task);
+    }
+
+    /** Engines per use case. */
+    public int getSize() {
+        return size;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        for (Map.Entry<String, TesseractPool> entry : pools.entrySet()) {
+            metrics.put(entry.getKey(), entry.getValue().getMetrics());
+        }
+        return metrics;
+    }
+
+    private static Tesseract newEngine(String dataPath, int psm, String whitelist, int dpi) {
+        Tesseract tesseract = new Tesseract();
+        tesseract.setDatapath(dataPath);
+        tesseract.setLanguage("eng");
+        if (psm >= 0) {
+            tesseract.setPageSegMode(psm);
+        }
+        if (dpi > 0) {
+            // prevents "Invalid resolution 0 dpi" warning
+            tesseract.setTessVariable("user_defined_dpi", String.valueOf(dpi));
+        }
+        tesseract.setTessVariable("tessedit_char_whitelist", whitelist);
+        return tesseract;
+    }
+}
@@ -3,81 +3,155 @@ package com.ivisit.helper.service;
 import org.springframework.stereotype.Service;
 
 import javax.smartcardio.*;
+import java.security.NoSuchAlgorithmException;
 import java.util.List;
 
+/**
+ * PC/SC access for the helper. The shared terminal context and the selected reader are
+ * kept between reads; they are only rebuilt (resetContext) after a reader-level failure,
+ * e.g. when the reader is unplugged. Reader workers get their own context (newTerminals).
+ */
 @Service
 public class RfidService {
 
+    private static final byte[] GET_UID_CMD = new byte[] {(byte)0xFF,(byte)0xCA,0x00,0x00,0x00};
+
+    // guarded by this
+    private CardTerminals terminals;
+    private CardTerminal terminal;
+
     public java.util.List<CardTerminal> listTerminals() throws CardException {
-        TerminalFactory factory = TerminalFactory.getDefault();
-        return factory.terminals().list();
+        return terminals().list();
     }
 
-    public String readCardUID(int timeoutMs) throws Exception {
-        // System.out.println("[RfidService] readCardUID called with timeoutMs=" + timeoutMs);
-
-        TerminalFactory factory = TerminalFactory.getDefault();
-        List<CardTerminal> terminals = factory.terminals().list();
+    /**
+     * The shared terminal set; waitForChange() on it is how the reader loop sleeps.
+     */
+    public synchronized CardTerminals terminals() {
+        if (terminals == null) {
+            terminals = newTerminalFactory().terminals();
+        }
+        return terminals;
+    }
 
-        //System.out.println("[RfidService] terminals found = " + terminals.size());
-        //for (int i = 0; i < terminals.size(); i++) {
-        //    System.out.println("  [" + i + "] " + terminals.get(i).getName());
-        //}
+    /**
+     * A terminal set on its own PC/SC context, for a reader worker that blocks in
+     * waitForChange independently of the other readers.
+     */
+    public CardTerminals newTerminals() {
+        return newTerminalFactory().terminals();
+    }
 
-        if (terminals.isEmpty()) {
-            throw new IllegalStateException("No card terminals found");
+    /**
+     * The contactless reader to scan with, selected once and then reused.
+     */
+    public synchronized CardTerminal selectTerminal() throws CardException {
+        if (terminal == null) {
+            List<CardTerminal> list = terminals().list();
+            if (list.isEmpty()) {
+                throw new IllegalStateException("No card terminals found");
+            }
+            terminal = selectContactlessTerminal(list);
         }
+        return terminal;
+    }
 
-        // Prefer the CL (contactless) reader
-        CardTerminal terminal = selectContactlessTerminal(terminals);
+    /**
+     * Drops the cached PC/SC context and reader. After the last reader is unplugged the
+     * old context stays dead on some platforms, so a fresh one is needed to see it again.
+     */
+    public synchronized void resetContext() {
+        terminals = null;
+        terminal = null;
+    }
 
-        //System.out.println("[RfidService] using terminal: " + terminal.getName());
+    /**
+     * On-demand read (used by /api/read-card-uid): waits up to timeoutMs for a card.
+     */
+    public String readCardUID(int timeoutMs) throws Exception {
+        CardTerminal terminal;
+        try {
+            terminal = selectTerminal();
+        } catch (CardException e) {
+            resetContext();
+            throw e;
+        }
 
         boolean present = terminal.waitForCardPresent(timeoutMs);
-        //System.out.println("[RfidService] waitForCardPresent -> " + present);
-
         if (!present) {
             return null; // timeout, no card
         }
 
+        try {
+            return readUid(terminal);
+        } finally {
+            terminal.waitForCardAbsent(500);
+        }
+    }
+
+    /**
+     * Reads the UID of the card currently on the terminal, or null if the card
+     * doesn't support GET UID.
+     */
+    public String readUid(CardTerminal terminal) throws CardException {
         Card card = terminal.connect("*");
         try {
             CardChannel channel = card.getBasicChannel();
 
-            byte[] getUidCmd = new byte[] {(byte)0xFF,(byte)0xCA,0x00,0x00,0x00};
-            ResponseAPDU resp = channel.transmit(new CommandAPDU(getUidCmd));
+            ResponseAPDU resp = channel.transmit(new CommandAPDU(GET_UID_CMD));
             int sw = resp.getSW();
-            System.out.println("[RfidService] response SW=" + Integer.toHexString(sw));
 
             if (sw == 0x9000) {
-                byte[] uidBytes = resp.getData();
-                String uidHex = bytesToHex(uidBytes);
+                String uidHex = bytesToHex(resp.getData());
                 System.out.println("[RfidService] UID hex = " + uidHex);
                 return uidHex;
             } else {
-                System.out.println("[RfidService] GET UID not supported or failed.");
+                System.out.println("[RfidService] GET UID not supported or failed (SW=" + Integer.toHexString(sw) + ").");
                 return null;
             }
         } finally {
             card.disconnect(false);
-            terminal.waitForCardAbsent(500);
         }
     }
 
     private CardTerminal selectContactlessTerminal(List<CardTerminal> terminals) {
-        // Try to find a reader whose name suggests "contactless"
+        CardTerminal t = preferredTerminal(terminals);
+        if (isContactless(t)) {
+            System.out.println("[RfidService] selected contactless terminal: " + t.getName());
+        } else {
+            System.out.println("[RfidService] no explicit CL terminal found, falling back to index 0");
+        }
+        return t;
+    }
+
+    /**
+     * The reader to use when no lanes are configured: the first contactless one,
+     * else the first one (better than crashing).
+     */
+    public CardTerminal preferredTerminal(List<CardTerminal> terminals) {
         for (CardTerminal t : terminals) {
-            String name = t.getName().toLowerCase();
-            if (name.contains("cl") || name.contains("5422cl") || name.contains("contactless")) {
-                System.out.println("[RfidService] selected contactless terminal: " + t.getName());
+            if (isContactless(t)) {
                 return t;
             }
         }
-        // If none matched, just use the first one (better than crashing)
-        System.out.println("[RfidService] no explicit CL terminal found, falling back to index 0");
         return terminals.get(0);
     }
 
+    private boolean isContactless(CardTerminal t) {
+        // Try to find a reader whose name suggests "contactless"
+        String name = t.getName().toLowerCase();
+        return name.contains("cl") || name.contains("5422cl") || name.contains("contactless");
+    }
+
+    private TerminalFactory newTerminalFactory() {
+        // getDefault() is cached for the JVM's lifetime, which is exactly what goes stale
+        try {
+            return TerminalFactory.getInstance("PC/SC", null);
+        } catch (NoSuchAlgorithmException e) {
+            return TerminalFactory.getDefault();
+        }
+    }
+
     private static String bytesToHex(byte[] bytes) {
         StringBuilder sb = new StringBuilder();
         for (byte b : bytes) sb.append(String.format("%02X", b));
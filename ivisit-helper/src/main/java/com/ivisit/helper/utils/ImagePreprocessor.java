@@ -1,10 +1,9 @@
 package com.ivisit.helper.utils;
 
-import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.awt.image.ConvolveOp;
-import java.awt.image.Kernel;
-import java.awt.image.RescaleOp;
+import java.awt.image.DataBufferByte;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
 
 /**
  * Image preprocessing for OCR accuracy improvement.
@@ -12,111 +11,374 @@ import java.awt.image.RescaleOp;
  *
  * Pipeline: Denoise → Grayscale → Sharpen → Adaptive Contrast → Binarize →
  * Resize
+ *
+ * Grayscale, denoise and sharpen run as one pass over the source (see
+ * filterToGray); the later stages work in place on the gray byte[] raster.
+ * Row buffers are reused per thread, so a call allocates little beyond the
+ * images it returns. The adaptive variant's summed-area table is the exception:
+ * it is only reused on SCRATCH_THREAD_NAME threads.
  */
 public class ImagePreprocessor {
 
     // Target resolution for OCR (higher = better accuracy but slower)
     private static final int TARGET_WIDTH = 1600;
 
+    /**
+     * Threads with this name keep the summed-area table between calls (OcrController's
+     * pass pool, the only caller of the adaptive variant). Other threads allocate it
+     * per call, so request threads don't each pin one.
+     */
+    public static final String SCRATCH_THREAD_NAME = "ocr-pass";
+
+    // About one 1600px-wide ID card's table (~1010 rows, capped at 2:3): at most ~7 MB
+    // per pass thread. Larger tables are never kept.
+    private static final int MAX_RETAINED_INTEGRAL = (TARGET_WIDTH + 1) * (TARGET_WIDTH * 2 / 3 + 1);
+
+    private static final class Scratch {
+        final int[][] grayRows = new int[3][0];
+        final int[][] denoisedRows = new int[3][0];
+        final int[] histogram = new int[256];
+        int[] pixels = new int[0];
+        byte[] bytes = new byte[0];
+        int[] integral = new int[0];
+
+        void ensureRows(int width) {
+            if (grayRows[0].length < width) {
+                for (int i = 0; i < 3; i++) {
+                    grayRows[i] = new int[width];
+                    denoisedRows[i] = new int[width];
+                }
+                pixels = new int[width];
+                bytes = new byte[width * 4];
+            }
+        }
+
+        int[] integral(int size) {
+            if (integral.length >= size) {
+                return integral;
+            }
+            int[] buffer = new int[size];
+            if (size <= MAX_RETAINED_INTEGRAL
+                    && SCRATCH_THREAD_NAME.equals(Thread.currentThread().getName())) {
+                integral = buffer;
+            }
+            return buffer;
+        }
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
     public static BufferedImage preprocess(BufferedImage input) {
-        BufferedImage upscaled = upscaleIfNeeded(input, TARGET_WIDTH);
-        BufferedImage denoised = denoise(upscaled);
-        BufferedImage gray = toGrayscale(denoised);
-        BufferedImage sharpened = sharpen(gray);
-        BufferedImage contrasted = adaptiveContrast(sharpened);
-        return resize(contrasted, TARGET_WIDTH);
+        BufferedImage filtered = filterToGray(input, TARGET_WIDTH, true, true, false);
+        adaptiveContrast(filtered);
+        return resize(filtered, TARGET_WIDTH);
     }
 
-    private static BufferedImage upscaleIfNeeded(BufferedImage input, int targetWidth) {
-        if (input.getWidth() >= targetWidth) {
-            return input;
+    /** Gray values of one output row at a time, top to bottom. */
+    private interface GrayRows {
+        void read(int y, int[] row);
+    }
+
+    /**
+     * Bicubic (Catmull-Rom) upscale of the source's gray values, produced row
+     * by row. Rows are resampled horizontally once and kept in a ring of four,
+     * which is all the vertical pass needs; weights are 12-bit fixed point.
+     * Gray is taken before scaling (luma is linear, so this matches scaling the
+     * color image first up to rounding) and the scaled color image is never built.
+     */
+    private static final class BicubicRows implements GrayRows {
+        private static final int BITS = 12;
+        private static final int ONE = 1 << BITS;
+        // horizontal results keep 8 fractional bits so the vertical sum fits an int
+        private static final int H_SHIFT = BITS - 8;
+        private static final int V_SHIFT = BITS + 8;
+
+        private final BufferedImage src;
+        private final Scratch scratch;
+        private final int srcHeight;
+        private final int[] xIndex;
+        private final int[] xWeight;
+        private final double yScale;
+        private final int[] srcRow;
+        private final int[][] slots = new int[4][];
+        private final int[] slotRow = {-1, -1, -1, -1};
+        private final int[] yWeight = new int[4];
+
+        BicubicRows(BufferedImage src, int width, int height, Scratch scratch) {
+            this.src = src;
+            this.scratch = scratch;
+            this.srcHeight = src.getHeight();
+            this.yScale = (double) srcHeight / height;
+            this.srcRow = new int[src.getWidth()];
+            for (int i = 0; i < 4; i++) {
+                slots[i] = new int[width];
+            }
+
+            // four taps per output column
+            int srcWidth = src.getWidth();
+            double xScale = (double) srcWidth / width;
+            xIndex = new int[width * 4];
+            xWeight = new int[width * 4];
+            int[] w = new int[4];
+            for (int x = 0; x < width; x++) {
+                double sx = (x + 0.5) * xScale - 0.5;
+                int x0 = (int) Math.floor(sx);
+                weights(sx - x0, w);
+                for (int k = 0; k < 4; k++) {
+                    xIndex[x * 4 + k] = Math.max(0, Math.min(srcWidth - 1, x0 - 1 + k));
+                    xWeight[x * 4 + k] = w[k];
+                }
+            }
         }
 
-        double scale = (double) targetWidth / input.getWidth();
-        int newWidth = targetWidth;
-        int newHeight = (int) (input.getHeight() * scale);
+        @Override
+        public void read(int y, int[] row) {
+            double sy = (y + 0.5) * yScale - 0.5;
+            int y0 = (int) Math.floor(sy);
+            int[] w = yWeight;
+            weights(sy - y0, w);
+
+            int[] r0 = resampled(y0 - 1);
+            int[] r1 = resampled(y0);
+            int[] r2 = resampled(y0 + 1);
+            int[] r3 = resampled(y0 + 2);
+            int half = 1 << (V_SHIFT - 1);
+            for (int x = 0; x < row.length && x < r0.length; x++) {
+                int v = w[0] * r0[x] + w[1] * r1[x] + w[2] * r2[x] + w[3] * r3[x];
+                row[x] = clamp((v + half) >> V_SHIFT);
+            }
+        }
 
-        BufferedImage upscaled = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2 = upscaled.createGraphics();
-        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-        g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2.drawImage(input, 0, 0, newWidth, newHeight, null);
-        g2.dispose();
+        private int[] resampled(int sy) {
+            int r = Math.max(0, Math.min(srcHeight - 1, sy));
+            int slot = r & 3;
+            int[] out = slots[slot];
+            if (slotRow[slot] != r) {
+                readGrayRow(src, r, srcRow, scratch);
+                int half = 1 << (H_SHIFT - 1);
+                for (int x = 0, t = 0; x < out.length; x++, t += 4) {
+                    int v = xWeight[t] * srcRow[xIndex[t]]
+                            + xWeight[t + 1] * srcRow[xIndex[t + 1]]
+                            + xWeight[t + 2] * srcRow[xIndex[t + 2]]
+                            + xWeight[t + 3] * srcRow[xIndex[t + 3]];
+                    out[x] = (v + half) >> H_SHIFT;
+                }
+                slotRow[slot] = r;
+            }
+            return out;
+        }
+
+        // Catmull-Rom weights for taps at -1, 0, 1, 2 around fraction f, summing to ONE
+        private static void weights(double f, int[] w) {
+            double w0 = cubic(1 + f);
+            double w1 = cubic(f);
+            double w2 = cubic(1 - f);
+            w[0] = (int) Math.round(w0 * ONE);
+            w[1] = (int) Math.round(w1 * ONE);
+            w[2] = (int) Math.round(w2 * ONE);
+            w[3] = ONE - w[0] - w[1] - w[2];
+        }
 
-        return upscaled;
+        private static double cubic(double t) {
+            t = Math.abs(t);
+            if (t < 1) {
+                return (1.5 * t - 2.5) * t * t + 1;
+            }
+            if (t < 2) {
+                return ((-0.5 * t + 2.5) * t - 4) * t + 2;
+            }
+            return 0;
+        }
     }
 
-    private static BufferedImage denoise(BufferedImage input) {
-        // Light 3x3 averaging kernel (less aggressive to preserve edges)
-        float weight = 1.0f / 9.0f;
-        float[] kernel = {
-                weight, weight, weight,
-                weight, weight, weight,
-                weight, weight, weight
-        };
-        Kernel blurKernel = new Kernel(3, 3, kernel);
+    /**
+     * Grayscale → upscale to minWidth if narrower → optional 3x3 box denoise →
+     * optional sharpen → optional invert, fused into one pass. Each row is
+     * converted once, and the two 3x3 stages each keep a ring of three rows, so
+     * output row y is written as soon as row y+2 has been read. Border pixels
+     * pass through unfiltered, as with ConvolveOp.EDGE_NO_OP.
+     */
+    private static BufferedImage filterToGray(BufferedImage src, int minWidth,
+                                              boolean denoise, boolean sharpen, boolean invert) {
+        Scratch scratch = SCRATCH.get();
+        scratch.ensureRows(Math.max(src.getWidth(), minWidth));
+
+        int width;
+        int height;
+        GrayRows rows;
+        if (src.getWidth() < minWidth) {
+            width = minWidth;
+            height = Math.max(1, (int) (src.getHeight() * ((double) minWidth / src.getWidth())));
+            rows = new BicubicRows(src, width, height, scratch);
+        } else {
+            width = src.getWidth();
+            height = src.getHeight();
+            rows = (y, row) -> readGrayRow(src, y, row, scratch);
+        }
 
-        BufferedImage rgb = toRGB(input);
-        ConvolveOp op = new ConvolveOp(blurKernel, ConvolveOp.EDGE_NO_OP, null);
+        BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] dst = grayData(out);
+        int[][] gray = scratch.grayRows;
+        int[][] denoised = scratch.denoisedRows;
 
-        return op.filter(rgb, null);
-    }
+        for (int y = 0; y < height + 2; y++) {
+            if (y < height) {
+                rows.read(y, gray[y % 3]);
+            }
+
+            int dy = y - 1;
+            if (dy >= 0 && dy < height) {
+                if (denoise) {
+                    boxBlurRow(gray, dy, width, height, denoised[dy % 3]);
+                } else {
+                    System.arraycopy(gray[dy % 3], 0, denoised[dy % 3], 0, width);
+                }
+            }
 
-    private static BufferedImage toRGB(BufferedImage input) {
-        if (input.getType() == BufferedImage.TYPE_INT_RGB) {
-            return input;
+            int sy = y - 2;
+            if (sy >= 0 && sy < height) {
+                int offset = sy * width;
+                if (sharpen) {
+                    sharpenRow(denoised, sy, width, height, dst, offset);
+                } else {
+                    int[] row = denoised[sy % 3];
+                    for (int x = 0; x < width; x++) {
+                        dst[offset + x] = (byte) row[x];
+                    }
+                }
+                if (invert) {
+                    for (int x = 0; x < width; x++) {
+                        dst[offset + x] = (byte) (255 - (dst[offset + x] & 0xff));
+                    }
+                }
+            }
         }
-        BufferedImage rgb = new BufferedImage(input.getWidth(), input.getHeight(), BufferedImage.TYPE_INT_RGB);
-        Graphics g = rgb.getGraphics();
-        g.drawImage(input, 0, 0, null);
-        g.dispose();
-        return rgb;
+        return out;
     }
 
-    private static BufferedImage toGrayscale(BufferedImage input) {
-        BufferedImage gray = new BufferedImage(
-                input.getWidth(), input.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
-        Graphics g = gray.getGraphics();
-        g.drawImage(input, 0, 0, null);
-        g.dispose();
-        return gray;
+    /**
+     * One row of the source as 0-255 luma, using the same weights Java2D uses
+     * when drawing RGB into a TYPE_BYTE_GRAY image.
+     */
+    private static void readGrayRow(BufferedImage src, int y, int[] row, Scratch scratch) {
+        int width = src.getWidth();
+        WritableRaster raster = src.getRaster();
+
+        switch (src.getType()) {
+            case BufferedImage.TYPE_INT_RGB: {
+                int[] px = (int[]) raster.getDataElements(0, y, width, 1, scratch.pixels);
+                for (int x = 0; x < width; x++) {
+                    int p = px[x];
+                    row[x] = luma((p >> 16) & 0xff, (p >> 8) & 0xff, p & 0xff);
+                }
+                return;
+            }
+            case BufferedImage.TYPE_3BYTE_BGR: {
+                // data elements come back in band order: R, G, B
+                byte[] px = (byte[]) raster.getDataElements(0, y, width, 1, scratch.bytes);
+                for (int x = 0, i = 0; x < width; x++, i += 3) {
+                    row[x] = luma(px[i] & 0xff, px[i + 1] & 0xff, px[i + 2] & 0xff);
+                }
+                return;
+            }
+            case BufferedImage.TYPE_BYTE_GRAY: {
+                byte[] px = (byte[]) raster.getDataElements(0, y, width, 1, scratch.bytes);
+                for (int x = 0; x < width; x++) {
+                    row[x] = px[x] & 0xff;
+                }
+                return;
+            }
+            default: {
+                // anything else: ARGB via the color model, composited onto black
+                int[] px = src.getRGB(0, y, width, 1, scratch.pixels, 0, width);
+                for (int x = 0; x < width; x++) {
+                    int p = px[x];
+                    int a = (p >>> 24) & 0xff;
+                    int r = (p >> 16) & 0xff;
+                    int g = (p >> 8) & 0xff;
+                    int b = p & 0xff;
+                    if (a != 0xff) {
+                        r = (r * a + 127) / 255;
+                        g = (g * a + 127) / 255;
+                        b = (b * a + 127) / 255;
+                    }
+                    row[x] = luma(r, g, b);
+                }
+            }
+        }
     }
 
-    private static BufferedImage sharpen(BufferedImage image) {
-        // 3x3 Laplacian sharpening kernel (stronger)
-        float[] kernel = {
-                -0.5f, -1, -0.5f,
-                -1, 7, -1,
-                -0.5f, -1, -0.5f
-        };
-        Kernel sharpenKernel = new Kernel(3, 3, kernel);
-
-        BufferedImage rgb = new BufferedImage(
-                image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
-        Graphics2D gRgb = rgb.createGraphics();
-        gRgb.drawImage(image, 0, 0, null);
-        gRgb.dispose();
-
-        ConvolveOp op = new ConvolveOp(sharpenKernel, ConvolveOp.EDGE_NO_OP, null);
-        BufferedImage sharpened = op.filter(rgb, null);
-
-        return toGrayscale(sharpened);
+    private static int luma(int r, int g, int b) {
+        return (77 * r + 150 * g + 29 * b + 128) >> 8;
     }
 
-    private static int calculateOtsuThreshold(BufferedImage gray) {
-        int width = gray.getWidth();
-        int height = gray.getHeight();
-        int[] histogram = new int[256];
+    // Light 3x3 averaging kernel (less aggressive to preserve edges)
+    private static void boxBlurRow(int[][] gray, int y, int width, int height, int[] out) {
+        int[] mid = gray[y % 3];
+        if (y == 0 || y == height - 1 || width < 3) {
+            System.arraycopy(mid, 0, out, 0, width);
+            return;
+        }
+        int[] up = gray[(y + 2) % 3];
+        int[] down = gray[(y + 1) % 3];
+
+        out[0] = mid[0];
+        out[width - 1] = mid[width - 1];
+        // running column sums: slide the 3-wide window one column at a time
+        int left = up[0] + mid[0] + down[0];
+        int center = up[1] + mid[1] + down[1];
+        for (int x = 1; x < width - 1; x++) {
+            int right = up[x + 1] + mid[x + 1] + down[x + 1];
+            out[x] = (left + center + right) / 9;
+            left = center;
+            center = right;
+        }
+    }
 
-        for (int y = 0; y < height; y++) {
+    // 3x3 Laplacian sharpening kernel (stronger):
+    //   -0.5 -1 -0.5
+    //   -1    7 -1
+    //   -0.5 -1 -0.5
+    // evaluated at twice the scale to stay in integers
+    private static void sharpenRow(int[][] rows, int y, int width, int height, byte[] dst, int offset) {
+        int[] mid = rows[y % 3];
+        if (y == 0 || y == height - 1 || width < 3) {
             for (int x = 0; x < width; x++) {
-                int pixel = gray.getRaster().getSample(x, y, 0);
-                histogram[pixel]++;
+                dst[offset + x] = (byte) mid[x];
             }
+            return;
+        }
+        int[] up = rows[(y + 2) % 3];
+        int[] down = rows[(y + 1) % 3];
+
+        dst[offset] = (byte) mid[0];
+        dst[offset + width - 1] = (byte) mid[width - 1];
+        for (int x = 1; x < width - 1; x++) {
+            int twice = 14 * mid[x]
+                    - 2 * (up[x] + down[x] + mid[x - 1] + mid[x + 1])
+                    - (up[x - 1] + up[x + 1] + down[x - 1] + down[x + 1]);
+            dst[offset + x] = (byte) clamp(twice >> 1);
+        }
+    }
+
+    private static int clamp(int v) {
+        return v < 0 ? 0 : (v > 255 ? 255 : v);
+    }
+
+    private static byte[] grayData(BufferedImage gray) {
+        return ((DataBufferByte) gray.getRaster().getDataBuffer()).getData();
+    }
+
+    private static int calculateOtsuThreshold(BufferedImage gray) {
+        byte[] data = grayData(gray);
+        int[] histogram = SCRATCH.get().histogram;
+        Arrays.fill(histogram, 0);
+
+        for (byte b : data) {
+            histogram[b & 0xff]++;
         }
 
-        int total = width * height;
+        int total = data.length;
         float sum = 0;
         for (int i = 0; i < 256; i++) {
             sum += i * histogram[i];
@@ -151,7 +413,7 @@ public class ImagePreprocessor {
         return threshold;
     }
 
-    private static BufferedImage adaptiveContrast(BufferedImage gray) {
+    private static void adaptiveContrast(BufferedImage gray) {
         int threshold = calculateOtsuThreshold(gray);
 
         float scaleFactor = 1.3f + (128f - threshold) / 200f;
@@ -164,23 +426,51 @@ public class ImagePreprocessor {
 
         float offset = (threshold < 80) ? 20 : 0;
 
-        RescaleOp rescale = new RescaleOp(scaleFactor, offset, null);
-        BufferedImage result = new BufferedImage(
-                gray.getWidth(), gray.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
-        return rescale.filter(gray, result);
+        rescale(gray, scaleFactor, offset);
     }
 
+    /**
+     * In-place v * scale + offset, clamped; the same lookup table RescaleOp
+     * builds for byte images.
+     */
+    private static void rescale(BufferedImage gray, float scale, float offset) {
+        byte[] lut = new byte[256];
+        for (int i = 0; i < 256; i++) {
+            lut[i] = (byte) clamp((int) (i * scale + offset));
+        }
+        byte[] data = grayData(gray);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = lut[data[i] & 0xff];
+        }
+    }
+
+    /**
+     * Bicubic resize to at least minWidth, keeping the aspect ratio. The height
+     * is derived in floating point and can come out one row short, so this
+     * usually resamples even when the width already matches.
+     */
     private static BufferedImage resize(BufferedImage image, int minWidth) {
         int targetWidth = Math.max(image.getWidth(), minWidth);
         int targetHeight = (int) ((double) image.getHeight() / image.getWidth() * targetWidth);
 
-        BufferedImage resized = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_BYTE_GRAY);
-        Graphics2D g2 = resized.createGraphics();
-        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-        g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g2.drawImage(image, 0, 0, targetWidth, targetHeight, null);
-        g2.dispose();
+        if (targetWidth == image.getWidth() && targetHeight == image.getHeight()) {
+            return image;
+        }
+
+        Scratch scratch = SCRATCH.get();
+        scratch.ensureRows(Math.max(image.getWidth(), targetWidth));
+        GrayRows rows = new BicubicRows(image, targetWidth, targetHeight, scratch);
 
+        BufferedImage resized = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] dst = grayData(resized);
+        int[] row = scratch.grayRows[0];
+        for (int y = 0; y < targetHeight; y++) {
+            rows.read(y, row);
+            int offset = y * targetWidth;
+            for (int x = 0; x < targetWidth; x++) {
+                dst[offset + x] = (byte) row[x];
+            }
+        }
         return resized;
     }
 
@@ -208,11 +498,9 @@ public class ImagePreprocessor {
     }
 
     public static BufferedImage preprocessCroppedRegion(BufferedImage crop) {
-        BufferedImage upscaled = upscaleIfNeeded(crop, 600);
-        BufferedImage gray = toGrayscale(upscaled);
-        BufferedImage sharpened = sharpen(gray);
-        BufferedImage binary = binarize(sharpened);
-        return binary;
+        BufferedImage sharpened = filterToGray(crop, 600, false, true, false);
+        binarize(sharpened);
+        return sharpened;
     }
 
     public static BufferedImage preprocessStandard(BufferedImage input) {
@@ -220,118 +508,98 @@ public class ImagePreprocessor {
     }
 
     public static BufferedImage preprocessHighContrast(BufferedImage input) {
-        BufferedImage upscaled = upscaleIfNeeded(input, TARGET_WIDTH);
-        BufferedImage gray = toGrayscale(upscaled);
-        BufferedImage sharpened = sharpen(gray);
-
-        RescaleOp rescale = new RescaleOp(2.2f, -30, null);
-        BufferedImage contrasted = rescale.filter(sharpened, null);
-
-        return resize(contrasted, TARGET_WIDTH);
+        BufferedImage sharpened = filterToGray(input, TARGET_WIDTH, false, true, false);
+        rescale(sharpened, 2.2f, -30);
+        return resize(sharpened, TARGET_WIDTH);
     }
 
     public static BufferedImage preprocessInverted(BufferedImage input) {
-        BufferedImage upscaled = upscaleIfNeeded(input, TARGET_WIDTH);
-        BufferedImage gray = toGrayscale(upscaled);
-        BufferedImage inverted = invert(gray);
-        BufferedImage contrasted = adaptiveContrast(inverted);
-
-        return resize(contrasted, TARGET_WIDTH);
+        BufferedImage inverted = filterToGray(input, TARGET_WIDTH, false, false, true);
+        adaptiveContrast(inverted);
+        return resize(inverted, TARGET_WIDTH);
     }
 
-    private static BufferedImage invert(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        BufferedImage inverted = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int pixel = image.getRaster().getSample(x, y, 0);
-                inverted.getRaster().setSample(x, y, 0, 255 - pixel);
-            }
+    private static void invert(BufferedImage image) {
+        byte[] data = grayData(image);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (255 - (data[i] & 0xff));
         }
-
-        return inverted;
     }
 
-    private static BufferedImage binarize(BufferedImage gray) {
+    private static void binarize(BufferedImage gray) {
         int threshold = calculateOtsuThreshold(gray);
-        int width = gray.getWidth();
-        int height = gray.getHeight();
-        BufferedImage binary = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int pixel = gray.getRaster().getSample(x, y, 0);
-                int value = (pixel > threshold) ? 255 : 0;
-                binary.getRaster().setSample(x, y, 0, value);
-            }
+        byte[] data = grayData(gray);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ((data[i] & 0xff) > threshold ? 255 : 0);
         }
-
-        return binary;
     }
 
     public static BufferedImage preprocessBinarized(BufferedImage input) {
-        BufferedImage upscaled = upscaleIfNeeded(input, TARGET_WIDTH);
-        BufferedImage gray = toGrayscale(upscaled);
-        BufferedImage sharpened = sharpen(gray);
-        BufferedImage binary = binarize(sharpened);
-
-        return resize(binary, TARGET_WIDTH);
+        BufferedImage sharpened = filterToGray(input, TARGET_WIDTH, false, true, false);
+        binarize(sharpened);
+        return resize(sharpened, TARGET_WIDTH);
     }
 
     public static BufferedImage preprocessBinarizedInverted(BufferedImage input) {
-        BufferedImage upscaled = upscaleIfNeeded(input, TARGET_WIDTH);
-        BufferedImage gray = toGrayscale(upscaled);
-        BufferedImage sharpened = sharpen(gray);
-        BufferedImage binary = binarize(sharpened);
-        BufferedImage inverted = invert(binary);
-
-        return resize(inverted, TARGET_WIDTH);
+        BufferedImage sharpened = filterToGray(input, TARGET_WIDTH, false, true, false);
+        binarize(sharpened);
+        invert(sharpened);
+        return resize(sharpened, TARGET_WIDTH);
     }
 
     public static BufferedImage preprocessAdaptiveLocal(BufferedImage input) {
-        BufferedImage upscaled = upscaleIfNeeded(input, TARGET_WIDTH);
-        BufferedImage gray = toGrayscale(upscaled);
-        BufferedImage sharpened = sharpen(gray);
-        BufferedImage adaptive = adaptiveLocalThreshold(sharpened, 15);
-
-        return resize(adaptive, TARGET_WIDTH);
+        BufferedImage sharpened = filterToGray(input, TARGET_WIDTH, false, true, false);
+        adaptiveLocalThreshold(sharpened, 15);
+        return resize(sharpened, TARGET_WIDTH);
     }
 
-    private static BufferedImage adaptiveLocalThreshold(BufferedImage gray, int blockSize) {
+    /**
+     * In-place local mean threshold over a blockSize x blockSize window (clipped
+     * at the borders). Window sums come from a summed-area table, so the cost
+     * per pixel does not depend on blockSize. The table may overflow int on very
+     * large images; window sums are still exact because they are differences
+     * that fit in an int.
+     */
+    static void adaptiveLocalThreshold(BufferedImage gray, int blockSize) {
         int width = gray.getWidth();
         int height = gray.getHeight();
-        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] data = grayData(gray);
 
         int halfBlock = blockSize / 2;
         int offset = 10;
 
+        // integral[(y + 1) * stride + (x + 1)] = sum of pixels above and left of (x, y), inclusive
+        int stride = width + 1;
+        int[] integral = SCRATCH.get().integral(stride * (height + 1));
+        Arrays.fill(integral, 0, stride, 0);
         for (int y = 0; y < height; y++) {
+            int rowSum = 0;
+            int base = (y + 1) * stride;
+            integral[base] = 0;
             for (int x = 0; x < width; x++) {
-                int sum = 0;
-                int count = 0;
-
-                for (int dy = -halfBlock; dy <= halfBlock; dy++) {
-                    for (int dx = -halfBlock; dx <= halfBlock; dx++) {
-                        int nx = x + dx;
-                        int ny = y + dy;
-                        if (nx >= 0 && nx < width && ny >= 0 && ny < height) {
-                            sum += gray.getRaster().getSample(nx, ny, 0);
-                            count++;
-                        }
-                    }
-                }
+                rowSum += data[y * width + x] & 0xff;
+                integral[base + x + 1] = integral[base - stride + x + 1] + rowSum;
+            }
+        }
+
+        for (int y = 0; y < height; y++) {
+            int y0 = Math.max(0, y - halfBlock);
+            int y1 = Math.min(height - 1, y + halfBlock) + 1;
+            for (int x = 0; x < width; x++) {
+                int x0 = Math.max(0, x - halfBlock);
+                int x1 = Math.min(width - 1, x + halfBlock) + 1;
+
+                int sum = integral[y1 * stride + x1] - integral[y0 * stride + x1]
+                        - integral[y1 * stride + x0] + integral[y0 * stride + x0];
+                int count = (x1 - x0) * (y1 - y0);
 
                 int localMean = sum / count;
                 int threshold = localMean - offset;
 
-                int pixel = gray.getRaster().getSample(x, y, 0);
-                int value = (pixel > threshold) ? 255 : 0;
-                result.getRaster().setSample(x, y, 0, value);
+                int i = y * width + x;
+                int pixel = data[i] & 0xff;
+                data[i] = (byte) (pixel > threshold ? 255 : 0);
             }
         }
-
-        return result;
     }
 }
@@ -1,5 +1,7 @@
 package com.ivisit.helper.utils;
 
+import com.ivisit.helper.service.OcrEnginePool;
+
 import java.awt.Rectangle;
 import java.util.HashMap;
 import java.util.Map;
@@ -18,12 +20,19 @@ public class RoiTemplate {
         public final double yPct;
         public final double widthPct;
         public final double heightPct;
+        // OcrEnginePool use case the crop is read with
+        public final String ocrProfile;
 
         public Region(double xPct, double yPct, double widthPct, double heightPct) {
+            this(xPct, yPct, widthPct, heightPct, OcrEnginePool.FIELD);
+        }
+
+        public Region(double xPct, double yPct, double widthPct, double heightPct, String ocrProfile) {
             this.xPct = xPct;
             this.yPct = yPct;
             this.widthPct = widthPct;
             this.heightPct = heightPct;
+            this.ocrProfile = ocrProfile;
         }
 
         /**
@@ -47,12 +56,12 @@ public class RoiTemplate {
         Map<String, Region> regions = new HashMap<>();
         // Name: Upper right area (35% from left, 23% from top)
         regions.put("name", new Region(0.35, 0.23, 0.55, 0.08));
-        // License Number: Middle left area
+        // License Number: Middle left area (starts with a letter, so free-text profile)
         regions.put("idNumber", new Region(0.20, 0.48, 0.30, 0.08));
         // DOB: Middle area
-        regions.put("dob", new Region(0.50, 0.28, 0.18, 0.06));
+        regions.put("dob", new Region(0.50, 0.28, 0.18, 0.06, OcrEnginePool.FIELD_DATE));
         // Address: Below name
-        regions.put("address", new Region(0.35, 0.35, 0.55, 0.12));
+        regions.put("address", new Region(0.35, 0.35, 0.55, 0.12, OcrEnginePool.FIELD_BLOCK));
         return regions;
     }
 
@@ -64,7 +73,7 @@ public class RoiTemplate {
         // Name: Center area
         regions.put("name", new Region(0.25, 0.35, 0.55, 0.12));
         // SSS Number: Below name
-        regions.put("idNumber", new Region(0.25, 0.50, 0.40, 0.12));
+        regions.put("idNumber", new Region(0.25, 0.50, 0.40, 0.12, OcrEnginePool.FIELD_DIGITS));
         return regions;
     }
 
@@ -76,9 +85,9 @@ public class RoiTemplate {
         // Full Name: Middle right
         regions.put("name", new Region(0.35, 0.55, 0.60, 0.10));
         // PSN (ID Number): Upper middle
-        regions.put("idNumber", new Region(0.35, 0.35, 0.60, 0.08));
+        regions.put("idNumber", new Region(0.35, 0.35, 0.60, 0.08, OcrEnginePool.FIELD_DIGITS));
         // DOB: Lower area
-        regions.put("dob", new Region(0.35, 0.70, 0.30, 0.08));
+        regions.put("dob", new Region(0.35, 0.70, 0.30, 0.08, OcrEnginePool.FIELD_DATE));
         return regions;
     }
 
@@ -90,11 +99,11 @@ public class RoiTemplate {
         // Surname, Given Name, Middle Name
         regions.put("name", new Region(0.40, 0.30, 0.55, 0.20));
         // CRN Number
-        regions.put("idNumber", new Region(0.40, 0.20, 0.40, 0.08));
+        regions.put("idNumber", new Region(0.40, 0.20, 0.40, 0.08, OcrEnginePool.FIELD_DIGITS));
         // DOB
-        regions.put("dob", new Region(0.40, 0.55, 0.25, 0.06));
+        regions.put("dob", new Region(0.40, 0.55, 0.25, 0.06, OcrEnginePool.FIELD_DATE));
         // Address
-        regions.put("address", new Region(0.40, 0.62, 0.55, 0.15));
+        regions.put("address", new Region(0.40, 0.62, 0.55, 0.15, OcrEnginePool.FIELD_BLOCK));
         return regions;
     }
 
@@ -0,0 +1,115 @@
+package com.ivisit.helper.utils;
+
+import net.sourceforge.tess4j.Tesseract;
+import net.sourceforge.tess4j.TesseractException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Fixed set of identically configured Tesseract engines, each used by one
+ * thread at a time.
+ *
+ * A Tesseract instance keeps its native handle in fields, so it must never run
+ * two doOCR calls at once. Callers borrow an engine, run on it and hand it back;
+ * when all engines are busy the caller waits up to borrowTimeoutMs for one.
+ */
+public class TesseractPool {
+
+    public interface EngineTask<T> {
+        T run(Tesseract engine) throws TesseractException;
+    }
+
+    private final String name;
+    private final int size;
+    private final long borrowTimeoutMs;
+    private final long slowHoldMs;
+    private final BlockingQueue<Tesseract> idle;
+
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger peakInUse = new AtomicInteger();
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong slowHolds = new AtomicLong();
+    private final AtomicLong totalWaitMs = new AtomicLong();
+    private final AtomicLong maxWaitMs = new AtomicLong();
+    private final AtomicLong totalHoldMs = new AtomicLong();
+
+    public TesseractPool(String name, int size, long borrowTimeoutMs, long slowHoldMs,
+                         Supplier<Tesseract> factory) {
+        this.name = name;
+        this.size = Math.max(1, size);
+        this.borrowTimeoutMs = Math.max(0, borrowTimeoutMs);
+        this.slowHoldMs = slowHoldMs;
+        this.idle = new ArrayBlockingQueue<>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            idle.add(factory.get());
+        }
+    }
+
+    /**
+     * Runs the task on a borrowed engine.
+     *
+     * @throws TimeoutException if no engine became free within borrowTimeoutMs
+     */
+    public <T> T withEngine(EngineTask<T> task)
+            throws TesseractException, InterruptedException, TimeoutException {
+        long waitStart = System.nanoTime();
+        Tesseract engine = idle.poll(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+        long waitedMs = (System.nanoTime() - waitStart) / 1_000_000;
+        if (engine == null) {
+            timeouts.incrementAndGet();
+            throw new TimeoutException("No " + name + " OCR engine free after " + borrowTimeoutMs + " ms");
+        }
+
+        borrows.incrementAndGet();
+        totalWaitMs.addAndGet(waitedMs);
+        maxWaitMs.accumulateAndGet(waitedMs, Math::max);
+        peakInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+
+        long holdStart = System.nanoTime();
+        try {
+            return task.run(engine);
+        } finally {
+            long heldMs = (System.nanoTime() - holdStart) / 1_000_000;
+            totalHoldMs.addAndGet(heldMs);
+            if (slowHoldMs > 0 && heldMs > slowHoldMs) {
+                slowHolds.incrementAndGet();
+                System.out.println("[OCR] " + name + " engine held for " + heldMs + " ms");
+            }
+            inUse.decrementAndGet();
+            idle.add(engine);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public Map<String, Object> getMetrics() {
+        long borrowed = borrows.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", size);
+        metrics.put("inUse", inUse.get());
+        metrics.put("idle", idle.size());
+        metrics.put("peakInUse", peakInUse.get());
+        metrics.put("borrows", borrowed);
+        metrics.put("timeouts", timeouts.get());
+        metrics.put("slowHolds", slowHolds.get());
+        metrics.put("avgWaitMs", borrowed > 0 ? totalWaitMs.get() / borrowed : 0);
+        metrics.put("maxWaitMs", maxWaitMs.get());
+        metrics.put("avgHoldMs", borrowed > 0 ? totalHoldMs.get() / borrowed : 0);
+        return metrics;
+    }
+}
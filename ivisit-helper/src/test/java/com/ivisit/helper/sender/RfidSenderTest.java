@@ -0,0 +1,121 @@
+package com.ivisit.helper.sender;
+
+import com.ivisit.helper.config.StationConfigService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.ivisit.helper.sender.ScanOutboxTest.scan;
+import static com.ivisit.helper.sender.ScanOutboxTest.scanIds;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.client.ExpectedCount.times;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class RfidSenderTest {
+
+    private static final String URL = "http://backend/api/helper/rfid-scans";
+
+    @TempDir
+    Path dir;
+
+    private ScanOutbox outbox;
+    private MockRestServiceServer backend;
+    private RfidSender sender;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        outbox = new ScanOutbox(dir.resolve("outbox.jsonl").toString(), 1000, "");
+        outbox.open();
+
+        RestTemplate restTemplate = new RestTemplate();
+        backend = MockRestServiceServer.bindTo(restTemplate).build();
+        sender = new RfidSender(restTemplate, outbox, new ScanDedupFilter(0),
+                new StationConfigService(1, dir.resolve("station.properties").toString(), ""),
+                "http://backend", 50, 1000, 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        outbox.close();
+    }
+
+    @Test
+    void acksOnlyUpToTheFirstUnresolvedScan() throws Exception {
+        for (String id : Arrays.asList("a", "b", "c", "d")) {
+            outbox.append(scan(id, ""));
+        }
+        // a verdict, a permanent error, then a result for the wrong scan
+        backend.expect(requestTo(URL)).andExpect(method(HttpMethod.POST)).andRespond(withSuccess(
+                "{\"results\":[" +
+                        "{\"scanId\":\"a\",\"action\":\"ENTRY_RECORDED\"}," +
+                        "{\"scanId\":\"b\",\"error\":\"Station not found\"}," +
+                        "{\"scanId\":\"d\",\"action\":\"ENTRY_RECORDED\"}]}",
+                MediaType.APPLICATION_JSON));
+
+        assertFalse(sender.deliverOnce(0));
+
+        backend.verify();
+        assertEquals(Arrays.asList("c", "d"), scanIds(outbox.peek(10, 0)));
+        assertEquals(1, outbox.getDeadLetterCount());
+        assertTrue(deadLetters().contains("Station not found"));
+    }
+
+    @Test
+    void scanThatKeepsFailingIsDeadLetteredAndTheRestFlow() throws Exception {
+        for (String id : Arrays.asList("poison", "ok1", "ok2")) {
+            outbox.append(scan(id, ""));
+        }
+        // whole batch fails, then the poison scan alone fails up to the cap (3)
+        backend.expect(times(4), requestTo(URL)).andRespond(withStatus(HttpStatus.INTERNAL_SERVER_ERROR));
+        backend.expect(requestTo(URL)).andRespond(withSuccess(
+                "{\"results\":[{\"scanId\":\"ok1\",\"action\":\"ENTRY_RECORDED\"}]}", MediaType.APPLICATION_JSON));
+        backend.expect(requestTo(URL)).andRespond(withSuccess(
+                "{\"results\":[{\"scanId\":\"ok2\",\"action\":\"ENTRY_RECORDED\"}]}", MediaType.APPLICATION_JSON));
+
+        for (int i = 0; i < 4; i++) {
+            assertFalse(sender.deliverOnce(0));
+        }
+        assertEquals(Arrays.asList("ok1", "ok2"), scanIds(outbox.peek(10, 0)));
+        assertTrue(deadLetters().contains("\"scanId\":\"poison\""));
+
+        // back to full batches once a scan goes through
+        assertTrue(sender.deliverOnce(0));
+        assertTrue(sender.deliverOnce(0));
+        backend.verify();
+        assertEquals(Collections.emptyList(), outbox.peek(10, 0));
+    }
+
+    @Test
+    void unreachableBackendNeverDeadLetters() throws Exception {
+        outbox.append(scan("a", ""));
+        RfidSender offline = new RfidSender(new RestTemplate(), outbox, new ScanDedupFilter(0),
+                new StationConfigService(1, dir.resolve("station.properties").toString(), ""),
+                "http://127.0.0.1:1", 50, 1000, 1);
+
+        for (int i = 0; i < 3; i++) {
+            assertFalse(offline.deliverOnce(0));
+        }
+
+        assertEquals(1, outbox.size());
+        assertEquals(0, outbox.getDeadLetterCount());
+    }
+
+    private String deadLetters() throws Exception {
+        return new String(Files.readAllBytes(dir.resolve("outbox.jsonl.dead")), StandardCharsets.UTF_8);
+    }
+}
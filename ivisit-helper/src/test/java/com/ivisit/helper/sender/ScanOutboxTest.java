@@ -0,0 +1,169 @@
+package com.ivisit.helper.sender;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScanOutboxTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<ScanOutbox> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeAll() {
+        for (ScanOutbox outbox : opened) {
+            outbox.close();
+        }
+    }
+
+    @Test
+    void unackedScansAreReplayedInOrderAfterRestart() throws Exception {
+        ScanOutbox outbox = open();
+        for (int i = 0; i < 5; i++) {
+            outbox.append(scan("s" + i, ""));
+        }
+        outbox.ack(2);
+        outbox.close();
+
+        ScanOutbox reopened = open();
+
+        assertEquals(3, reopened.size());
+        assertEquals(ids("s2", "s3", "s4"), scanIds(reopened.peek(10, 0)));
+    }
+
+    @Test
+    void replaySpansManyReadChunks() throws Exception {
+        ScanOutbox outbox = open();
+        // records larger than a replay chunk, so lines straddle chunk boundaries
+        String padding = repeat('x', 100 * 1024);
+        for (int i = 0; i < 4; i++) {
+            outbox.append(scan("big" + i, padding));
+        }
+        outbox.close();
+
+        ScanOutbox reopened = open();
+
+        assertEquals(ids("big0", "big1", "big2", "big3"), scanIds(reopened.peek(10, 0)));
+        assertEquals(padding, reopened.peek(1, 0).get(0).get("padding"));
+    }
+
+    @Test
+    void tornTailIsDroppedOnReplay() throws Exception {
+        ScanOutbox outbox = open();
+        outbox.append(scan("s0", ""));
+        outbox.append(scan("s1", ""));
+        outbox.close();
+
+        // a crash in the middle of the next append
+        Files.write(log(), "{\"scanId\":\"s2\",\"ui".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        long tornSize = Files.size(log());
+
+        ScanOutbox reopened = open();
+
+        assertEquals(ids("s0", "s1"), scanIds(reopened.peek(10, 0)));
+        assertTrue(Files.size(log()) < tornSize);
+
+        // appends after recovery start on a clean line
+        reopened.append(scan("s3", ""));
+        reopened.close();
+        assertEquals(ids("s0", "s1", "s3"), scanIds(open().peek(10, 0)));
+    }
+
+    @Test
+    void fullyAckedLargeOutboxIsCompacted() throws Exception {
+        ScanOutbox outbox = open();
+        String padding = repeat('x', 16 * 1024);
+        int count = 80; // past the 1 MB compaction threshold
+        for (int i = 0; i < count; i++) {
+            outbox.append(scan("s" + i, padding));
+        }
+        outbox.ack(count - 1);
+        assertTrue(Files.size(log()) > 1024 * 1024, "not compacted while a scan is pending");
+
+        outbox.ack(1);
+
+        assertEquals(0, outbox.size());
+        assertEquals(0, Files.size(log()));
+        assertEquals("0", new String(Files.readAllBytes(dir.resolve("outbox.jsonl.ack")), StandardCharsets.UTF_8));
+
+        outbox.append(scan("after", ""));
+        outbox.close();
+        assertEquals(ids("after"), scanIds(open().peek(10, 0)));
+    }
+
+    @Test
+    void deadLetteredScansKeepTheirReason() throws Exception {
+        ScanOutbox outbox = open();
+        Map<String, Object> poison = scan("bad", "");
+        outbox.append(poison);
+
+        outbox.deadLetter(poison, "uid must be at most 255 characters");
+        outbox.ack(1);
+
+        List<String> lines = Files.readAllLines(dir.resolve("outbox.jsonl.dead"), StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).contains("\"scanId\":\"bad\""));
+        assertTrue(lines.get(0).contains("uid must be at most 255 characters"));
+        assertEquals(1, outbox.getDeadLetterCount());
+        assertEquals(0, outbox.size());
+    }
+
+    private ScanOutbox open() throws Exception {
+        ScanOutbox outbox = new ScanOutbox(log().toString(), 1000, "");
+        outbox.open();
+        opened.add(outbox);
+        return outbox;
+    }
+
+    private Path log() {
+        return dir.resolve("outbox.jsonl");
+    }
+
+    static Map<String, Object> scan(String scanId, String padding) {
+        Map<String, Object> scan = new HashMap<>();
+        scan.put("scanId", scanId);
+        scan.put("uid", "865A4BA6");
+        scan.put("stationId", "1");
+        if (!padding.isEmpty()) {
+            scan.put("padding", padding);
+        }
+        return scan;
+    }
+
+    static List<String> scanIds(List<Map<String, Object>> scans) {
+        List<String> ids = new ArrayList<>();
+        for (Map<String, Object> scan : scans) {
+            ids.add(String.valueOf(scan.get("scanId")));
+        }
+        return ids;
+    }
+
+    private static List<String> ids(String... ids) {
+        List<String> list = new ArrayList<>();
+        for (String id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    private static String repeat(char c, int n) {
+        StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
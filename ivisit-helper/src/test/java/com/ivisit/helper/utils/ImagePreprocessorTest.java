@@ -0,0 +1,343 @@
+package com.ivisit.helper.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Kernel;
+import java.awt.image.Raster;
+import java.awt.image.RescaleOp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImagePreprocessorTest {
+
+    @Test
+    void sourceImageTypesGiveTheSameResult() {
+        BufferedImage bgr = ImagePreprocessorBenchmark.syntheticCard(640, 405);
+        BufferedImage rgb = copy(bgr, BufferedImage.TYPE_INT_RGB);
+        BufferedImage argb = copy(bgr, BufferedImage.TYPE_INT_ARGB);
+
+        byte[] expected = pixels(ImagePreprocessor.preprocessStandard(bgr));
+        assertArrayEquals(expected, pixels(ImagePreprocessor.preprocessStandard(rgb)));
+        assertArrayEquals(expected, pixels(ImagePreprocessor.preprocessStandard(argb)));
+    }
+
+    @Test
+    void variantsUpscaleToOcrWidth() {
+        BufferedImage card = ImagePreprocessorBenchmark.syntheticCard(640, 405);
+
+        for (BufferedImage out : new BufferedImage[]{
+                ImagePreprocessor.preprocessStandard(card),
+                ImagePreprocessor.preprocessHighContrast(card),
+                ImagePreprocessor.preprocessInverted(card),
+                ImagePreprocessor.preprocessBinarized(card),
+                ImagePreprocessor.preprocessBinarizedInverted(card),
+                ImagePreprocessor.preprocessAdaptiveLocal(card)}) {
+            assertEquals(BufferedImage.TYPE_BYTE_GRAY, out.getType());
+            assertEquals(1600, out.getWidth());
+            assertTrue(Math.abs(out.getHeight() - 1012) <= 1);
+        }
+    }
+
+    @Test
+    void croppedRegionIsBinary() {
+        BufferedImage card = ImagePreprocessorBenchmark.syntheticCard(1280, 810);
+        BufferedImage crop = ImagePreprocessor.cropRegion(card, 0.35, 0.35, 0.30, 0.08);
+
+        BufferedImage out = ImagePreprocessor.preprocessCroppedRegion(crop);
+
+        assertEquals(600, out.getWidth());
+        for (byte b : pixels(out)) {
+            int v = b & 0xff;
+            assertTrue(v == 0 || v == 255, "non-binary pixel " + v);
+        }
+    }
+
+    @Test
+    void adaptiveLocalThresholdMatchesWindowedMean() {
+        int width = 37;
+        int height = 23;
+        int blockSize = 15;
+        BufferedImage gray = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] data = pixels(gray);
+        new Random(7).nextBytes(data);
+        int[] original = new int[data.length];
+        for (int i = 0; i < data.length; i++) {
+            original[i] = data[i] & 0xff;
+        }
+
+        ImagePreprocessor.adaptiveLocalThreshold(gray, blockSize);
+
+        int half = blockSize / 2;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int sum = 0;
+                int count = 0;
+                for (int ny = Math.max(0, y - half); ny <= Math.min(height - 1, y + half); ny++) {
+                    for (int nx = Math.max(0, x - half); nx <= Math.min(width - 1, x + half); nx++) {
+                        sum += original[ny * width + nx];
+                        count++;
+                    }
+                }
+                int expected = original[y * width + x] > sum / count - 10 ? 255 : 0;
+                assertEquals(expected, data[y * width + x] & 0xff, "pixel " + x + "," + y);
+            }
+        }
+    }
+
+    /**
+     * The single-pass kernels against the ConvolveOp / RescaleOp / Graphics2D chain
+     * they replaced (Reference below). Up to the last resize both agree exactly;
+     * the final bicubic resample is a fixed-point Catmull-Rom instead of Java2D's,
+     * so outputs may differ by a few gray levels along edges, and a thresholded
+     * pixel may flip where the local mean sits right at the cut-off. Tolerance:
+     * mean absolute difference under 1 gray level and under 0.5% of pixels off
+     * by more than 64 (measured: at most 0.74 and 0.35%, both adaptiveLocal).
+     */
+    @Test
+    void variantsMatchTheJava2dReferencePipeline() {
+        BufferedImage card = ImagePreprocessorBenchmark.syntheticCard(1280, 810);
+
+        Map<String, UnaryOperator<BufferedImage>[]> variants = new LinkedHashMap<>();
+        variants.put("standard", pair(ImagePreprocessor::preprocessStandard, Reference::standard));
+        variants.put("inverted", pair(ImagePreprocessor::preprocessInverted, Reference::inverted));
+        variants.put("binarized", pair(ImagePreprocessor::preprocessBinarized, Reference::binarized));
+        variants.put("highContrast", pair(ImagePreprocessor::preprocessHighContrast, Reference::highContrast));
+        variants.put("adaptiveLocal", pair(ImagePreprocessor::preprocessAdaptiveLocal, Reference::adaptiveLocal));
+
+        for (Map.Entry<String, UnaryOperator<BufferedImage>[]> v : variants.entrySet()) {
+            BufferedImage actual = v.getValue()[0].apply(card);
+            BufferedImage expected = v.getValue()[1].apply(card);
+            assertEquals(expected.getWidth(), actual.getWidth(), v.getKey());
+            assertEquals(expected.getHeight(), actual.getHeight(), v.getKey());
+
+            Raster e = expected.getRaster();
+            Raster a = actual.getRaster();
+            long sumDiff = 0;
+            long farOff = 0;
+            for (int y = 0; y < expected.getHeight(); y++) {
+                for (int x = 0; x < expected.getWidth(); x++) {
+                    int d = Math.abs(e.getSample(x, y, 0) - a.getSample(x, y, 0));
+                    sumDiff += d;
+                    if (d > 64) {
+                        farOff++;
+                    }
+                }
+            }
+            double pixels = (double) expected.getWidth() * expected.getHeight();
+            assertTrue(sumDiff / pixels < 1.0, v.getKey() + " mean abs diff " + sumDiff / pixels);
+            assertTrue(farOff / pixels < 0.005, v.getKey() + " pixels off by > 64: " + farOff);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static UnaryOperator<BufferedImage>[] pair(UnaryOperator<BufferedImage> actual,
+                                                       UnaryOperator<BufferedImage> reference) {
+        return new UnaryOperator[]{actual, reference};
+    }
+
+    private static BufferedImage copy(BufferedImage src, int type) {
+        BufferedImage dst = new BufferedImage(src.getWidth(), src.getHeight(), type);
+        dst.getGraphics().drawImage(src, 0, 0, null);
+        return dst;
+    }
+
+    private static byte[] pixels(BufferedImage gray) {
+        return ((DataBufferByte) gray.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * The preprocessing chain as it was before the raster kernels: Graphics2D for
+     * scaling and gray conversion, ConvolveOp for blur and sharpen, RescaleOp for contrast.
+     */
+    private static final class Reference {
+
+        private static final int TARGET_WIDTH = 1600;
+
+        static BufferedImage standard(BufferedImage input) {
+            BufferedImage upscaled = upscaleIfNeeded(input, TARGET_WIDTH);
+            BufferedImage denoised = convolve(toRgb(upscaled), new float[]{
+                    1 / 9f, 1 / 9f, 1 / 9f,
+                    1 / 9f, 1 / 9f, 1 / 9f,
+                    1 / 9f, 1 / 9f, 1 / 9f});
+            BufferedImage sharpened = sharpen(toGray(denoised));
+            return resize(adaptiveContrast(sharpened), TARGET_WIDTH);
+        }
+
+        static BufferedImage highContrast(BufferedImage input) {
+            BufferedImage sharpened = sharpen(toGray(upscaleIfNeeded(input, TARGET_WIDTH)));
+            BufferedImage contrasted = new RescaleOp(2.2f, -30, null).filter(sharpened, null);
+            return resize(contrasted, TARGET_WIDTH);
+        }
+
+        static BufferedImage inverted(BufferedImage input) {
+            BufferedImage gray = toGray(upscaleIfNeeded(input, TARGET_WIDTH));
+            return resize(adaptiveContrast(invert(gray)), TARGET_WIDTH);
+        }
+
+        static BufferedImage binarized(BufferedImage input) {
+            BufferedImage sharpened = sharpen(toGray(upscaleIfNeeded(input, TARGET_WIDTH)));
+            return resize(binarize(sharpened), TARGET_WIDTH);
+        }
+
+        static BufferedImage adaptiveLocal(BufferedImage input) {
+            BufferedImage sharpened = sharpen(toGray(upscaleIfNeeded(input, TARGET_WIDTH)));
+            return resize(adaptiveThreshold(sharpened, 15), TARGET_WIDTH);
+        }
+
+        private static BufferedImage upscaleIfNeeded(BufferedImage input, int targetWidth) {
+            if (input.getWidth() >= targetWidth) {
+                return input;
+            }
+            int newHeight = (int) (input.getHeight() * ((double) targetWidth / input.getWidth()));
+            BufferedImage upscaled = new BufferedImage(targetWidth, newHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = upscaled.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.drawImage(input, 0, 0, targetWidth, newHeight, null);
+            g.dispose();
+            return upscaled;
+        }
+
+        private static BufferedImage resize(BufferedImage image, int minWidth) {
+            int width = Math.max(image.getWidth(), minWidth);
+            int height = (int) ((double) image.getHeight() / image.getWidth() * width);
+            BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+            Graphics2D g = resized.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, width, height, null);
+            g.dispose();
+            return resized;
+        }
+
+        private static BufferedImage toRgb(BufferedImage input) {
+            if (input.getType() == BufferedImage.TYPE_INT_RGB) {
+                return input;
+            }
+            return redraw(input, BufferedImage.TYPE_INT_RGB);
+        }
+
+        private static BufferedImage toGray(BufferedImage input) {
+            return redraw(input, BufferedImage.TYPE_BYTE_GRAY);
+        }
+
+        private static BufferedImage redraw(BufferedImage input, int type) {
+            BufferedImage out = new BufferedImage(input.getWidth(), input.getHeight(), type);
+            Graphics g = out.getGraphics();
+            g.drawImage(input, 0, 0, null);
+            g.dispose();
+            return out;
+        }
+
+        private static BufferedImage convolve(BufferedImage rgb, float[] kernel) {
+            return new ConvolveOp(new Kernel(3, 3, kernel), ConvolveOp.EDGE_NO_OP, null).filter(rgb, null);
+        }
+
+        private static BufferedImage sharpen(BufferedImage gray) {
+            return toGray(convolve(toRgb(gray), new float[]{
+                    -0.5f, -1, -0.5f,
+                    -1, 7, -1,
+                    -0.5f, -1, -0.5f}));
+        }
+
+        private static BufferedImage invert(BufferedImage gray) {
+            BufferedImage out = new BufferedImage(gray.getWidth(), gray.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+            for (int y = 0; y < gray.getHeight(); y++) {
+                for (int x = 0; x < gray.getWidth(); x++) {
+                    out.getRaster().setSample(x, y, 0, 255 - gray.getRaster().getSample(x, y, 0));
+                }
+            }
+            return out;
+        }
+
+        private static BufferedImage adaptiveContrast(BufferedImage gray) {
+            int threshold = otsu(gray);
+            float scale = Math.max(1.2f, Math.min(2.5f, 1.3f + (128f - threshold) / 200f));
+            if (threshold < 30 || threshold > 220) {
+                scale = 1.8f;
+            }
+            float offset = threshold < 80 ? 20 : 0;
+            BufferedImage out = new BufferedImage(gray.getWidth(), gray.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+            return new RescaleOp(scale, offset, null).filter(gray, out);
+        }
+
+        private static BufferedImage binarize(BufferedImage gray) {
+            int threshold = otsu(gray);
+            BufferedImage out = new BufferedImage(gray.getWidth(), gray.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+            for (int y = 0; y < gray.getHeight(); y++) {
+                for (int x = 0; x < gray.getWidth(); x++) {
+                    out.getRaster().setSample(x, y, 0, gray.getRaster().getSample(x, y, 0) > threshold ? 255 : 0);
+                }
+            }
+            return out;
+        }
+
+        private static BufferedImage adaptiveThreshold(BufferedImage gray, int blockSize) {
+            int width = gray.getWidth();
+            int height = gray.getHeight();
+            Raster in = gray.getRaster();
+            BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+            int half = blockSize / 2;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int sum = 0;
+                    int count = 0;
+                    for (int ny = Math.max(0, y - half); ny <= Math.min(height - 1, y + half); ny++) {
+                        for (int nx = Math.max(0, x - half); nx <= Math.min(width - 1, x + half); nx++) {
+                            sum += in.getSample(nx, ny, 0);
+                            count++;
+                        }
+                    }
+                    out.getRaster().setSample(x, y, 0, in.getSample(x, y, 0) > sum / count - 10 ? 255 : 0);
+                }
+            }
+            return out;
+        }
+
+        private static int otsu(BufferedImage gray) {
+            int[] histogram = new int[256];
+            for (int y = 0; y < gray.getHeight(); y++) {
+                for (int x = 0; x < gray.getWidth(); x++) {
+                    histogram[gray.getRaster().getSample(x, y, 0)]++;
+                }
+            }
+            int total = gray.getWidth() * gray.getHeight();
+            float sum = 0;
+            for (int i = 0; i < 256; i++) {
+                sum += i * histogram[i];
+            }
+            float sumB = 0;
+            int wB = 0;
+            float maxVariance = 0;
+            int threshold = 128;
+            for (int t = 0; t < 256; t++) {
+                wB += histogram[t];
+                if (wB == 0) {
+                    continue;
+                }
+                int wF = total - wB;
+                if (wF == 0) {
+                    break;
+                }
+                sumB += t * histogram[t];
+                float mB = sumB / wB;
+                float mF = (sum - sumB) / wF;
+                float variance = (float) wB * wF * (mB - mF) * (mB - mF);
+                if (variance > maxVariance) {
+                    maxVariance = variance;
+                    threshold = t;
+                }
+            }
+            return threshold;
+        }
+    }
+}